@@ -7,6 +7,10 @@
  */
 package io.takari.incrementalbuild.maven.internal;
 
+import io.takari.builder.internal.cache.DirectoryOutputCacheStore;
+import io.takari.builder.internal.cache.OutputCacheStore;
+import io.takari.builder.internal.metrics.ExecutionMetrics;
+import io.takari.builder.internal.metrics.MetricsRegistry;
 import io.takari.incrementalbuild.maven.internal.digest.MojoConfigurationDigester;
 import io.takari.incrementalbuild.spi.BuildContextEnvironment;
 import io.takari.incrementalbuild.spi.BuildContextFinalizer;
@@ -14,9 +18,11 @@ import io.takari.incrementalbuild.workspace.Workspace;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Paths;
 import java.util.Map;
 import javax.inject.Inject;
 import javax.inject.Named;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.execution.scope.MojoExecutionScoped;
 
 // TODO merge with MavenIncrementalConventions, not sure we need both
@@ -25,22 +31,44 @@ import org.apache.maven.execution.scope.MojoExecutionScoped;
 @MojoExecutionScoped
 public class MavenBuildContextConfiguration implements BuildContextEnvironment {
 
+    /**
+     * Local directory of the opt-in cache of outputs associated with individual inputs.
+     */
+    public static final String PROPERTY_CACHE = "takari.incremental.cache";
+
     private final ProjectWorkspace workspace;
     private final File stateFile;
     private final Map<String, Serializable> parameters;
     private final MavenBuildContextFinalizer finalizer;
+    private final String metricsSession;
+    private final OutputCacheStore outputCache;
 
     @Inject
     public MavenBuildContextConfiguration(
             ProjectWorkspace workspace,
             MavenIncrementalConventions conventions,
             MojoConfigurationDigester digester,
-            MavenBuildContextFinalizer finalizer)
+            MavenBuildContextFinalizer finalizer,
+            MavenSession session)
             throws IOException {
         this.workspace = workspace;
         this.finalizer = finalizer;
         this.stateFile = conventions.getExecutionStateLocation();
         this.parameters = digester.digest();
+        this.metricsSession = MetricsRegistry.getSession(
+                session.getUserProperties(),
+                session.getSystemProperties(),
+                session.getRequest().getStartTime(),
+                session);
+        this.outputCache = getOutputCache(session);
+    }
+
+    private static OutputCacheStore getOutputCache(MavenSession session) {
+        String location = session.getUserProperties().getProperty(PROPERTY_CACHE);
+        if (location == null) {
+            location = session.getSystemProperties().getProperty(PROPERTY_CACHE);
+        }
+        return location != null ? new DirectoryOutputCacheStore(Paths.get(location)) : null;
     }
 
     @Override
@@ -62,4 +90,17 @@ public class MavenBuildContextConfiguration implements BuildContextEnvironment {
     public BuildContextFinalizer getFinalizer() {
         return finalizer;
     }
+
+    @Override
+    public ExecutionMetrics getMetrics() {
+        if (metricsSession == null) {
+            return ExecutionMetrics.DISABLED;
+        }
+        return ExecutionMetrics.create(stateFile.getParentFile().toPath(), stateFile.getName(), metricsSession);
+    }
+
+    @Override
+    public OutputCacheStore getOutputCache() {
+        return outputCache;
+    }
 }
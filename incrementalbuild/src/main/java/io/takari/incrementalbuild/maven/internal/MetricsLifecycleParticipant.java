@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.incrementalbuild.maven.internal;
+
+import io.takari.builder.internal.metrics.MetricsRegistry;
+import java.io.IOException;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.execution.MavenSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes execution metrics reports of the build session once the session ends.
+ */
+@Named
+@Singleton
+public class MetricsLifecycleParticipant extends AbstractMavenLifecycleParticipant {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    @Override
+    public void afterSessionEnd(MavenSession session) {
+        try {
+            MetricsRegistry.get()
+                    .flush(MetricsRegistry.getSession(
+                            session.getUserProperties(),
+                            session.getSystemProperties(),
+                            session.getRequest().getStartTime(),
+                            session));
+        } catch (IOException e) {
+            // metrics are diagnostic only and must not fail the build
+            log.warn("Could not write incremental build metrics report", e);
+        }
+    }
+}
@@ -7,6 +7,10 @@
  */
 package io.takari.incrementalbuild.spi;
 
+import io.takari.builder.internal.metrics.ExecutionMetrics;
+import io.takari.builder.internal.metrics.ExecutionMetrics.Counter;
+import io.takari.builder.internal.metrics.ExecutionMetrics.Timer;
+import io.takari.builder.internal.metrics.MetricsRegistry;
 import io.takari.builder.internal.pathmatcher.FileMatcher;
 import io.takari.incrementalbuild.MessageSeverity;
 import io.takari.incrementalbuild.ResourceMetadata;
@@ -75,8 +79,16 @@ public abstract class AbstractBuildContext {
      */
     private boolean failOnError = true;
 
+    private final ExecutionMetrics metrics;
+
+    /**
+     * Start of the build context client execution, i.e. time between this context creation and
+     * commit.
+     */
+    private final long executionStart;
+
     protected AbstractBuildContext(BuildContextEnvironment env) {
-        this(env.getWorkspace(), env.getStateFile(), env.getParameters(), env.getFinalizer());
+        this(env.getWorkspace(), env.getStateFile(), env.getParameters(), env.getFinalizer(), env.getMetrics());
     }
 
     protected AbstractBuildContext(
@@ -84,6 +96,15 @@ public abstract class AbstractBuildContext {
             File stateFile,
             Map<String, Serializable> configuration,
             BuildContextFinalizer finalizer) {
+        this(workspace, stateFile, configuration, finalizer, ExecutionMetrics.DISABLED);
+    }
+
+    protected AbstractBuildContext(
+            Workspace workspace,
+            File stateFile,
+            Map<String, Serializable> configuration,
+            BuildContextFinalizer finalizer,
+            ExecutionMetrics metrics) {
 
         // preconditions
         if (workspace == null) {
@@ -94,22 +115,34 @@ public abstract class AbstractBuildContext {
         }
 
         this.stateFile = stateFile;
+        this.metrics = metrics;
         this.state = DefaultBuildContextState.withConfiguration(configuration);
+        final long start = metrics.start();
         this.oldState = DefaultBuildContextState.loadFrom(stateFile);
+        metrics.stop(Timer.STATE_LOAD, start);
 
         final boolean configurationChanged = getConfigurationChanged();
         if (workspace.getMode() == Mode.ESCALATED) {
             this.escalated = true;
             this.workspace = workspace;
+            metrics.setOutcome("escalated: workspace");
         } else if (workspace.getMode() == Mode.SUPPRESSED) {
             this.escalated = false;
             this.workspace = workspace;
+            metrics.setOutcome("suppressed workspace");
         } else if (configurationChanged || !isPresent(oldState.getOutputs())) {
             this.escalated = true;
             this.workspace = workspace.escalate();
+            if (oldState.configuration.isEmpty()) {
+                metrics.setOutcome("escalated: no previous state");
+            } else {
+                metrics.setOutcome(
+                        configurationChanged ? "escalated: configuration changed" : "escalated: outputs missing");
+            }
         } else {
             this.escalated = false;
             this.workspace = workspace;
+            metrics.setOutcome("incremental");
         }
 
         if (escalated && stateFile != null) {
@@ -125,6 +158,8 @@ public abstract class AbstractBuildContext {
         if (finalizer != null) {
             finalizer.registerContext(this);
         }
+
+        this.executionStart = metrics.start();
     }
 
     private boolean isPresent(Collection<File> outputs) {
@@ -191,6 +226,7 @@ public abstract class AbstractBuildContext {
             File basedir, Collection<String> includes, Collection<String> excludes) throws IOException {
         basedir = normalize(basedir);
         final List<DefaultResourceMetadata<File>> result = new ArrayList<>();
+        final long start = metrics.start();
         for (Map.Entry<Path, FileMatcher> subdir :
                 FileMatcher.createMatchers(basedir.toPath(), includes, excludes).entrySet()) {
             workspace.walk(subdir.getKey().toFile(), new FileVisitor() {
@@ -212,6 +248,7 @@ public abstract class AbstractBuildContext {
                 }
             });
         }
+        metrics.stop(Timer.WALK, start);
         if (workspace.getMode() == Mode.DELTA) {
             // only NEW, MODIFIED and REMOVED resources are reported in DELTA mode
             // need to find any UNMODIFIED
@@ -234,6 +271,7 @@ public abstract class AbstractBuildContext {
             File basedir, Collection<String> includes, Collection<String> excludes) throws IOException {
         basedir = normalize(basedir);
         final List<DefaultResource<File>> result = new ArrayList<>();
+        final long start = metrics.start();
         for (Map.Entry<Path, FileMatcher> subdir :
                 FileMatcher.createMatchers(basedir.toPath(), includes, excludes).entrySet()) {
             workspace.walk(subdir.getKey().toFile(), new FileVisitor() {
@@ -260,6 +298,7 @@ public abstract class AbstractBuildContext {
                 }
             });
         }
+        metrics.stop(Timer.WALK, start);
         if (workspace.getMode() == Mode.DELTA) {
             // only NEW, MODIFIED and REMOVED resources are reported in DELTA mode
             // need to find any UNMODIFIED
@@ -499,6 +538,8 @@ public abstract class AbstractBuildContext {
         }
         this.closed = true;
 
+        metrics.stop(Timer.EXECUTION, executionStart);
+
         // messages recorded during this build
         Map<Object, Collection<Message>> newMessages = new HashMap<>(state.getResourceMessages());
 
@@ -522,12 +563,19 @@ public abstract class AbstractBuildContext {
 
         if (stateFile != null) {
             final long start = System.currentTimeMillis();
+            final long metricsStart = metrics.start();
             try (OutputStream os = workspace.newOutputStream(stateFile)) {
                 state.storeTo(os);
             }
+            metrics.stop(Timer.STATE_STORE, metricsStart);
             log.debug("Stored incremental build state {} ({} ms)", stateFile, System.currentTimeMillis() - start);
         }
 
+        int outputs = state.getOutputs().size();
+        metrics.add(Counter.INPUTS, state.getResources().size() - outputs);
+        metrics.add(Counter.OUTPUTS, outputs);
+        MetricsRegistry.get().record(metrics);
+
         // new messages are logged as soon as they are reported during the build
         // replay old messages so the user can still see them
         Map<Object, Collection<Message>> allMessages = new HashMap<>(state.getResourceMessages());
@@ -612,6 +660,10 @@ public abstract class AbstractBuildContext {
         }
 
         closed = true;
+
+        metrics.stop(Timer.EXECUTION, executionStart);
+        metrics.setOutcome("skipped");
+        MetricsRegistry.get().record(metrics);
     }
 
     protected boolean isProcessedResource(Object resource) {
@@ -7,6 +7,8 @@
  */
 package io.takari.incrementalbuild.spi;
 
+import io.takari.builder.internal.cache.OutputCacheStore;
+import io.takari.builder.internal.metrics.ExecutionMetrics;
 import io.takari.incrementalbuild.workspace.Workspace;
 import java.io.File;
 import java.io.Serializable;
@@ -26,4 +28,19 @@ public interface BuildContextEnvironment {
      * Optional context finalizer.
      */
     public BuildContextFinalizer getFinalizer();
+
+    /**
+     * Optional build context execution metrics.
+     */
+    public default ExecutionMetrics getMetrics() {
+        return ExecutionMetrics.DISABLED;
+    }
+
+    /**
+     * Optional store of outputs associated with individual inputs, see
+     * {@link DefaultBuildContext#registerAndProcessInputs(File, java.util.Collection, java.util.Collection)}.
+     */
+    public default OutputCacheStore getOutputCache() {
+        return null;
+    }
 }
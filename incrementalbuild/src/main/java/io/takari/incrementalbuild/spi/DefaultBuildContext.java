@@ -7,20 +7,40 @@
  */
 package io.takari.incrementalbuild.spi;
 
+import io.takari.builder.internal.cache.OutputCacheStore;
 import io.takari.incrementalbuild.BuildContext;
+import io.takari.incrementalbuild.MessageSeverity;
+import io.takari.incrementalbuild.spi.ResourceOutputCache.CachedOutput;
 import io.takari.incrementalbuild.workspace.Workspace;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class DefaultBuildContext extends AbstractBuildContext implements BuildContext {
 
+    /**
+     * Optional cache of outputs associated with individual inputs.
+     */
+    private final ResourceOutputCache outputCache;
+
+    /**
+     * Output cache keys of inputs processed during this build and not restored from the cache.
+     */
+    private final Map<File, String> outputCacheKeys = new LinkedHashMap<>();
+
     public DefaultBuildContext(BuildContextEnvironment configuration) {
         super(configuration);
+        this.outputCache = newOutputCache(configuration.getOutputCache());
     }
 
     protected DefaultBuildContext(
@@ -29,12 +49,119 @@ public class DefaultBuildContext extends AbstractBuildContext implements BuildCo
             Map<String, Serializable> configuration,
             BuildContextFinalizer finalizer) {
         super(workspace, stateFile, configuration, finalizer);
+        this.outputCache = null;
     }
 
+    private ResourceOutputCache newOutputCache(OutputCacheStore store) {
+        if (store == null) {
+            return null;
+        }
+        try {
+            return new ResourceOutputCache(store, state.configuration);
+        } catch (IOException e) {
+            // configuration is not serializable, should not happen with MojoConfigurationDigester
+            log.warn("Could not digest build configuration, output cache is disabled", e);
+            return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * If the output cache is configured, outputs, attributes and messages associated with inputs
+     * processed during previous builds with the same configuration and input contents are restored
+     * from the cache and such inputs are not returned.
+     */
     @Override
     public Collection<DefaultResource<File>> registerAndProcessInputs(
             File basedir, Collection<String> includes, Collection<String> excludes) throws IOException {
-        return super.registerAndProcessInputs(basedir, includes, excludes);
+        Collection<DefaultResource<File>> resources = super.registerAndProcessInputs(basedir, includes, excludes);
+        if (outputCache == null) {
+            return resources;
+        }
+        List<DefaultResource<File>> result = new ArrayList<>();
+        for (DefaultResource<File> resource : resources) {
+            if (!restoreCachedOutputs(resource)) {
+                result.add(resource);
+            }
+        }
+        return result;
+    }
+
+    private boolean restoreCachedOutputs(DefaultResource<File> resource) throws IOException {
+        File input = resource.getResource();
+        String key;
+        ResourceOutputCache.Entry entry;
+        try {
+            key = outputCache.getKey(input);
+            entry = outputCache.get(key);
+        } catch (IOException e) {
+            log.warn("Could not read output cache {}", outputCache, e);
+            return false;
+        }
+        if (entry == null) {
+            outputCacheKeys.put(input, key);
+            return false;
+        }
+        for (CachedOutput cached : entry.outputs) {
+            DefaultOutput output = associate(resource, cached.file);
+            try (OutputStream os = newOutputStream(output)) {
+                os.write(cached.contents);
+            }
+            restoreMetadata(cached.file, cached.attributes, cached.messages);
+        }
+        restoreMetadata(input, entry.attributes, entry.messages);
+        log.debug("Restored outputs of {} from output cache", input);
+        return true;
+    }
+
+    private void restoreMetadata(File resource, Map<String, Serializable> attributes, Collection<Message> messages) {
+        for (Map.Entry<String, Serializable> attribute : attributes.entrySet()) {
+            setResourceAttribute(resource, attribute.getKey(), attribute.getValue());
+        }
+        for (Message message : messages) {
+            addMessage(resource, message.line, message.column, message.message, message.severity, message.cause);
+        }
+    }
+
+    private void storeCachedOutputs(File input, String key) {
+        if (!isProcessedResource(input) || !state.isResource(input) || hasErrors(input)) {
+            return;
+        }
+        List<CachedOutput> outputs = new ArrayList<>();
+        try {
+            Collection<File> outputFiles = state.getResourceOutputs(input);
+            for (File output : outputFiles != null ? outputFiles : Collections.<File>emptyList()) {
+                if (!output.isFile() || hasErrors(output)) {
+                    return;
+                }
+                outputs.add(new CachedOutput(
+                        output, Files.readAllBytes(output.toPath()), getAttributes(output), getMessages(output)));
+            }
+            outputCache.put(key, new ResourceOutputCache.Entry(getAttributes(input), getMessages(input), outputs));
+        } catch (IOException e) {
+            log.warn("Could not update output cache {}", outputCache, e);
+        }
+    }
+
+    private boolean hasErrors(Object resource) {
+        for (Message message : getMessages(resource)) {
+            if (message.severity == MessageSeverity.ERROR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<String, Serializable> getAttributes(Object resource) {
+        Map<String, Serializable> attributes = state.getResourceAttributes(resource);
+        return attributes != null ? new LinkedHashMap<>(attributes) : Collections.<String, Serializable>emptyMap();
+    }
+
+    private List<Message> getMessages(Object resource) {
+        Collection<Message> messages = state.getResourceMessages(resource);
+        return messages != null ? new ArrayList<>(messages) : Collections.<Message>emptyList();
     }
 
     @Override
@@ -106,6 +233,10 @@ public class DefaultBuildContext extends AbstractBuildContext implements BuildCo
                 deleteOutput(output);
             }
         }
+
+        for (Map.Entry<File, String> entry : outputCacheKeys.entrySet()) {
+            storeCachedOutputs(entry.getKey(), entry.getValue());
+        }
     }
 
     @Override
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.incrementalbuild.spi;
+
+import io.takari.builder.internal.cache.OutputCacheStore;
+import io.takari.builder.internal.digest.BytesHash;
+import io.takari.builder.internal.digest.SHA1Digester;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Content-addressed cache of outputs associated with individual input files. Entries are keyed by
+ * the build context configuration digest, input file path and input file contents and hold
+ * associated output files, their attributes and messages and input attributes and messages.
+ */
+class ResourceOutputCache {
+
+    // bump to invalidate all existing cache entries when entry format changes
+    private static final String FORMAT = "1";
+
+    private static final OutputStream NULL = new OutputStream() {
+        @Override
+        public void write(int b) {}
+
+        @Override
+        public void write(byte[] b, int off, int len) {}
+    };
+
+    @SuppressWarnings("serial")
+    static class Entry implements Serializable {
+        // no serialVersionUID, want deserialization to fail if entry format changes
+
+        final Map<String, Serializable> attributes;
+
+        final Collection<Message> messages;
+
+        final List<CachedOutput> outputs;
+
+        Entry(Map<String, Serializable> attributes, Collection<Message> messages, List<CachedOutput> outputs) {
+            this.attributes = attributes;
+            this.messages = messages;
+            this.outputs = outputs;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static class CachedOutput implements Serializable {
+        // no serialVersionUID, want deserialization to fail if entry format changes
+
+        final File file;
+
+        final byte[] contents;
+
+        final Map<String, Serializable> attributes;
+
+        final Collection<Message> messages;
+
+        CachedOutput(File file, byte[] contents, Map<String, Serializable> attributes, Collection<Message> messages) {
+            this.file = file;
+            this.contents = contents;
+            this.attributes = attributes;
+            this.messages = messages;
+        }
+    }
+
+    private final OutputCacheStore store;
+
+    private final BytesHash configurationDigest;
+
+    ResourceOutputCache(OutputCacheStore store, Map<String, Serializable> configuration) throws IOException {
+        this.store = store;
+        this.configurationDigest = digest(configuration);
+    }
+
+    private static BytesHash digest(Map<String, Serializable> configuration) throws IOException {
+        MessageDigest digester = SHA1Digester.newInstance();
+        // sorted, configuration map iteration order is not stable
+        for (Map.Entry<String, Serializable> entry : new TreeMap<>(configuration).entrySet()) {
+            digester.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            ObjectOutputStream oos = new ObjectOutputStream(new DigestOutputStream(NULL, digester));
+            oos.writeObject(entry.getValue());
+            oos.flush();
+        }
+        return new BytesHash(digester.digest());
+    }
+
+    public String getKey(File input) throws IOException {
+        MessageDigest digester = SHA1Digester.newInstance();
+        for (Object part : new Object[] {FORMAT, configurationDigest, input}) {
+            digester.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            digester.update((byte) 0);
+        }
+        try (InputStream is = Files.newInputStream(input.toPath())) {
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len = is.read(buf)) >= 0) {
+                digester.update(buf, 0, len);
+            }
+        }
+        return new BytesHash(digester.digest()).toString();
+    }
+
+    /**
+     * Returns entry stored under the key or {@code null} if there is no such entry.
+     */
+    public Entry get(String key) throws IOException {
+        InputStream is = store.get(key);
+        if (is == null) {
+            return null;
+        }
+        try (InputStream bis = new BufferedInputStream(is);
+                ObjectInputStream ois = new ObjectInputStream(bis) {
+                    @Override
+                    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                        // resource attributes are likely loaded by mojo classloader
+                        try {
+                            return Thread.currentThread()
+                                    .getContextClassLoader()
+                                    .loadClass(desc.getName());
+                        } catch (ClassNotFoundException e) {
+                            return super.resolveClass(desc);
+                        }
+                    }
+                }) {
+            return (Entry) ois.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Corrupted output cache entry " + key, e);
+        }
+    }
+
+    public void put(String key, Entry entry) throws IOException {
+        store.put(key, os -> {
+            ObjectOutputStream oos = new ObjectOutputStream(os);
+            oos.writeObject(entry);
+            oos.flush();
+        });
+    }
+
+    @Override
+    public String toString() {
+        return store.toString();
+    }
+}
@@ -6,13 +6,23 @@ import static io.takari.incrementalbuild.ResourceStatus.UNMODIFIED;
 
 import com.google.common.base.Charsets;
 import com.google.common.io.Files;
+import io.takari.builder.internal.cache.DirectoryOutputCacheStore;
+import io.takari.builder.internal.cache.OutputCacheStore;
+import io.takari.builder.internal.metrics.ExecutionMetrics;
+import io.takari.builder.internal.metrics.ExecutionMetrics.Counter;
+import io.takari.builder.internal.metrics.ExecutionMetrics.Timer;
+import io.takari.builder.internal.metrics.MetricsRegistry;
+import io.takari.incrementalbuild.MessageSeverity;
 import io.takari.incrementalbuild.ResourceMetadata;
 import io.takari.incrementalbuild.ResourceStatus;
+import io.takari.incrementalbuild.workspace.Workspace;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -550,4 +560,123 @@ public class DefaultBuildContextTest extends AbstractBuildContextTest {
         context = newBuildContext();
         Assert.assertTrue(context.isEscalated());
     }
+
+    @Test
+    public void testExecutionMetrics() throws Exception {
+        File inputFile = temp.newFile("inputFile");
+        File outputFile = temp.newFile("outputFile");
+        File stateFile = new File(temp.newFolder("incremental"), "buildstate.ctx");
+        Path directory = stateFile.getParentFile().toPath();
+
+        DefaultBuildContext context = new DefaultBuildContext(newEnvironment(stateFile, "1"));
+        context.registerInput(inputFile).process().associateOutput(outputFile);
+        context.commit(null);
+
+        context = new DefaultBuildContext(newEnvironment(stateFile, "1"));
+        context.registerInput(inputFile);
+        context.markSkipExecution();
+
+        List<ExecutionMetrics> metrics = MetricsRegistry.get().getMetrics(directory);
+        Assert.assertEquals(2, metrics.size());
+        Assert.assertEquals("escalated: no previous state", metrics.get(0).getOutcome());
+        Assert.assertEquals(1, metrics.get(0).getCount(Counter.INPUTS));
+        Assert.assertEquals(1, metrics.get(0).getCount(Counter.OUTPUTS));
+        Assert.assertTrue(metrics.get(0).getNanos(Timer.STATE_STORE) > 0);
+        Assert.assertEquals("skipped", metrics.get(1).getOutcome());
+        MetricsRegistry.get().flush("1");
+        Assert.assertTrue(new File(directory.toFile(), MetricsRegistry.REPORT_CSV).canRead());
+    }
+
+    @Test
+    public void testOutputCache() throws Exception {
+        File basedir = temp.newFolder("src");
+        File inputFile = new File(basedir, "input.txt");
+        File outputFile = new File(temp.newFolder("target"), "output.txt");
+        File stateFile = new File(temp.newFolder("incremental"), "buildstate.ctx");
+        OutputCacheStore cache =
+                new DirectoryOutputCacheStore(temp.newFolder("cache").toPath());
+
+        // new input is processed and its outputs are stored in the cache
+        Files.write("a", inputFile, Charsets.UTF_8);
+        DefaultBuildContext context = new DefaultBuildContext(newEnvironment(stateFile, "1", cache));
+        Assert.assertEquals(1, processInputs(context, basedir, outputFile));
+        context.commit(null);
+
+        // changed input is processed
+        Files.write("bb", inputFile, Charsets.UTF_8);
+        context = new DefaultBuildContext(newEnvironment(stateFile, "1", cache));
+        Assert.assertEquals(1, processInputs(context, basedir, outputFile));
+        context.commit(null);
+        Assert.assertEquals("bb", Files.toString(outputFile, Charsets.UTF_8));
+
+        // input changed back, outputs, attributes and messages are restored from the cache
+        Files.write("a", inputFile, Charsets.UTF_8);
+        context = new DefaultBuildContext(newEnvironment(stateFile, "1", cache));
+        Assert.assertEquals(0, processInputs(context, basedir, outputFile));
+        context.commit(null);
+        Assert.assertEquals("a", Files.toString(outputFile, Charsets.UTF_8));
+        DefaultBuildContextState state = context.getState();
+        Assert.assertEquals(
+                Collections.singletonList(outputFile), new ArrayList<>(state.getResourceOutputs(inputFile)));
+        Assert.assertEquals("a", state.getResourceAttribute(inputFile, "content"));
+        Assert.assertEquals(1, state.getResourceMessages(inputFile).size());
+
+        // restored outputs are carried over by the following incremental build
+        context = new DefaultBuildContext(newEnvironment(stateFile, "1", cache));
+        Assert.assertEquals(0, processInputs(context, basedir, outputFile));
+        context.commit(null);
+        Assert.assertTrue(outputFile.canRead());
+    }
+
+    private static int processInputs(DefaultBuildContext context, File basedir, File outputFile) throws IOException {
+        int count = 0;
+        for (DefaultResource<File> input : context.registerAndProcessInputs(basedir, null, null)) {
+            String content = Files.toString(input.getResource(), Charsets.UTF_8);
+            try (OutputStream os = input.associateOutput(outputFile).newOutputStream()) {
+                os.write(content.getBytes(Charsets.UTF_8));
+            }
+            context.setResourceAttribute(input.getResource(), "content", content);
+            input.addMessage(1, 1, "processed " + content, MessageSeverity.WARNING, null);
+            count++;
+        }
+        return count;
+    }
+
+    private static BuildContextEnvironment newEnvironment(File stateFile, String session) {
+        return newEnvironment(stateFile, session, null);
+    }
+
+    private static BuildContextEnvironment newEnvironment(File stateFile, String session, OutputCacheStore cache) {
+        return new BuildContextEnvironment() {
+            @Override
+            public File getStateFile() {
+                return stateFile;
+            }
+
+            @Override
+            public Workspace getWorkspace() {
+                return new FilesystemWorkspace();
+            }
+
+            @Override
+            public Map<String, Serializable> getParameters() {
+                return Collections.<String, Serializable>emptyMap();
+            }
+
+            @Override
+            public BuildContextFinalizer getFinalizer() {
+                return null;
+            }
+
+            @Override
+            public ExecutionMetrics getMetrics() {
+                return ExecutionMetrics.create(stateFile.getParentFile().toPath(), stateFile.getName(), session);
+            }
+
+            @Override
+            public OutputCacheStore getOutputCache() {
+                return cache;
+            }
+        };
+    }
 }
@@ -31,6 +31,8 @@ public class BuilderMojoGenerator extends AbstractProcessor {
 
     private APT apt;
 
+    private InjectorGenerator injectorGenerator;
+
     private class APTValidationVisitor extends BuilderValidationVisitor {
         public boolean errorRaised;
 
@@ -61,6 +63,7 @@ public class BuilderMojoGenerator extends AbstractProcessor {
         this.filer = env.getFiler();
         this.messager = env.getMessager();
         this.apt = new APT(env.getElementUtils(), env.getTypeUtils());
+        this.injectorGenerator = new InjectorGenerator(filer, env.getElementUtils(), env.getTypeUtils());
     }
 
     @Override
@@ -86,6 +89,7 @@ public class BuilderMojoGenerator extends AbstractProcessor {
         metadata.accept(validator);
         if (!validator.errorRaised) {
             metadata.accept(new MojoGenerationVisitor(filer, messager));
+            injectorGenerator.generate(type, metadata);
         }
     }
 }
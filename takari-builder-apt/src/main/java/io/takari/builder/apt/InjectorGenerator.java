@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.apt;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import io.takari.builder.apt.APT.APTMember;
+import io.takari.builder.internal.BuilderInjector;
+import io.takari.builder.internal.model.AbstractParameter;
+import io.takari.builder.internal.model.BuilderClass;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Generates {@link BuilderInjector} implementation for a builder class. The generated injector
+ * creates builder instances and assigns builder parameter fields without reflection. Builder
+ * classes that cannot be instantiated from their package, for example private nested classes, do
+ * not get an injector. Parameter fields that cannot be assigned from the builder package, for
+ * example private or final fields, are left to reflective injection at runtime.
+ */
+class InjectorGenerator {
+
+    private final Filer filer;
+    private final Elements elements;
+    private final Types types;
+
+    public InjectorGenerator(Filer filer, Elements elements, Types types) {
+        this.filer = filer;
+        this.elements = elements;
+        this.types = types;
+    }
+
+    public void generate(TypeElement type, BuilderClass metadata) {
+        PackageElement pkg = elements.getPackageOf(type);
+        if (!isAccessible(type, pkg) || !hasAccessibleConstructor(type, pkg)) {
+            return;
+        }
+
+        String binaryName = elements.getBinaryName(type).toString();
+        String pkgname = pkg.getQualifiedName().toString();
+        String classname = (pkgname.isEmpty() ? binaryName : binaryName.substring(pkgname.length() + 1))
+                + BuilderInjector.CLASSNAME_SUFFIX;
+
+        MethodSpec newInstance = MethodSpec.methodBuilder("newInstance") //
+                .addAnnotation(Override.class) //
+                .addModifiers(Modifier.PUBLIC) //
+                .returns(Object.class) //
+                .addStatement("return new $T()", type) //
+                .build();
+
+        MethodSpec.Builder setField = MethodSpec.methodBuilder("setField") //
+                .addAnnotation(Override.class) //
+                .addModifiers(Modifier.PUBLIC) //
+                .returns(boolean.class) //
+                .addParameter(Object.class, "builder") //
+                .addParameter(String.class, "field") //
+                .addParameter(Object.class, "value") //
+                .beginControlFlow("switch (field)");
+        Set<String> fieldIds = new LinkedHashSet<>();
+        for (AbstractParameter parameter : metadata.parameters()) {
+            Element element = ((APTMember) parameter.originatingElement()).adaptee();
+            if (element.getKind() != ElementKind.FIELD || !isAssignable((VariableElement) element, pkg)) {
+                continue;
+            }
+            TypeElement declaringType = (TypeElement) element.getEnclosingElement();
+            String fieldId = BuilderInjector.fieldId(
+                    elements.getBinaryName(declaringType).toString(),
+                    element.getSimpleName().toString());
+            if (!fieldIds.add(fieldId)) {
+                continue;
+            }
+            TypeMirror fieldType = element.asType();
+            TypeName valueType = fieldType.getKind().isPrimitive()
+                    ? TypeName.get(fieldType).box()
+                    : TypeName.get(types.erasure(fieldType));
+            setField.addCode("case $S:\n", fieldId) //
+                    .addStatement(
+                            "$>(($T) builder).$N = ($T) value",
+                            types.erasure(declaringType.asType()),
+                            element.getSimpleName().toString(),
+                            valueType) //
+                    .addStatement("return true$<");
+        }
+        setField.addCode("default:\n") //
+                .addStatement("$>return false$<") //
+                .endControlFlow();
+
+        TypeSpec injector = TypeSpec.classBuilder(classname) //
+                .addModifiers(Modifier.PUBLIC) //
+                .addSuperinterface(BuilderInjector.class) //
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class) //
+                        .addMember("value", "{$S, $S}", "unchecked", "rawtypes")
+                        .build()) //
+                .addOriginatingElement(type) //
+                .addMethod(newInstance) //
+                .addMethod(setField.build()) //
+                .build();
+
+        try {
+            JavaFile.builder(pkgname, injector).build().writeTo(filer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean hasAccessibleConstructor(TypeElement type, PackageElement pkg) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)
+                || (type.getEnclosingElement() instanceof TypeElement
+                        && !type.getModifiers().contains(Modifier.STATIC))) {
+            return false;
+        }
+        return ElementFilter.constructorsIn(type.getEnclosedElements()).stream() //
+                .anyMatch(c -> c.getParameters().isEmpty() && isAccessible(c, pkg));
+    }
+
+    private boolean isAssignable(VariableElement field, PackageElement pkg) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.STATIC)) {
+            return false;
+        }
+        return isAccessible(field, pkg)
+                && isAccessible((TypeElement) field.getEnclosingElement(), pkg)
+                && isAccessible(types.erasure(field.asType()), pkg);
+    }
+
+    private boolean isAccessible(TypeMirror type, PackageElement pkg) {
+        if (type instanceof ArrayType) {
+            return isAccessible(((ArrayType) type).getComponentType(), pkg);
+        }
+        if (type instanceof DeclaredType) {
+            return isAccessible((TypeElement) ((DeclaredType) type).asElement(), pkg);
+        }
+        return true; // primitive
+    }
+
+    private boolean isAccessible(TypeElement type, PackageElement pkg) {
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            if (!isAccessible(element, pkg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if the element is accessible from a top-level class in the package.
+     * Protected members of other packages are treated as inaccessible.
+     */
+    private boolean isAccessible(Element element, PackageElement pkg) {
+        Set<Modifier> modifiers = element.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        return !modifiers.contains(Modifier.PRIVATE) && pkg.equals(elements.getPackageOf(element));
+    }
+}
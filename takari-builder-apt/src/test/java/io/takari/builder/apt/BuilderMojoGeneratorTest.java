@@ -592,4 +592,79 @@ public class BuilderMojoGeneratorTest {
                 .and()
                 .generatesSources(generatedClass);
     }
+
+    @Test
+    public void testGeneratedInjector() throws Exception {
+        JavaFileObject definitionClass = JavaFileObjects.forSourceLines(
+                "test.TestClass",
+                "package test;",
+                "",
+                "import io.takari.builder.*;",
+                "",
+                "import java.io.File;",
+                "import java.util.List;",
+                "",
+                "  public class TestClass {",
+                "",
+                "  @Parameter",
+                "  String myString;",
+                "",
+                "  @Parameter",
+                "  int myInt;",
+                "",
+                "  @InputDirectoryFiles(defaultValue=\"src\", includes=\"**/*\")",
+                "  protected List<File> myFiles;",
+                "",
+                "  @Parameter",
+                "  private String myPrivate;",
+                "",
+                "  @Builder(name=\"test-builder\")",
+                "  public void execute() {}",
+                "",
+                "}");
+
+        JavaFileObject generatedClass = JavaFileObjects.forSourceLines(
+                "test.TestClass$GeneratedInjector",
+                "package test;",
+                "",
+                "import io.takari.builder.internal.BuilderInjector;",
+                "import java.lang.Integer;",
+                "import java.lang.Object;",
+                "import java.lang.Override;",
+                "import java.lang.String;",
+                "import java.lang.SuppressWarnings;",
+                "import java.util.List;",
+                "",
+                "@SuppressWarnings({\"unchecked\", \"rawtypes\"})",
+                "public class TestClass$GeneratedInjector implements BuilderInjector {",
+                "  @Override",
+                "  public Object newInstance() {",
+                "    return new TestClass();",
+                "  }",
+                "",
+                "  @Override",
+                "  public boolean setField(Object builder, String field, Object value) {",
+                "    switch (field) {",
+                "      case \"test.TestClass#myString\":",
+                "        ((TestClass) builder).myString = (String) value;",
+                "        return true;",
+                "      case \"test.TestClass#myInt\":",
+                "        ((TestClass) builder).myInt = (Integer) value;",
+                "        return true;",
+                "      case \"test.TestClass#myFiles\":",
+                "        ((TestClass) builder).myFiles = (List) value;",
+                "        return true;",
+                "      default:",
+                "        return false;",
+                "    }",
+                "  }",
+                "}");
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(definitionClass))
+                .processedWith(newMojoGenerator())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(generatedClass);
+    }
 }
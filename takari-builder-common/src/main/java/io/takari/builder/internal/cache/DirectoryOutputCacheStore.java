@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.internal.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Output cache store backed by a local, possibly shared, filesystem directory. Entries are stored as
+ * {@code <directory>/<key[0..2]>/<key>} files. New entries are written to a temporary file first and
+ * then atomically moved in place, so concurrent readers never observe partially written entries.
+ */
+public class DirectoryOutputCacheStore implements OutputCacheStore {
+
+    private final Path directory;
+
+    public DirectoryOutputCacheStore(Path directory) {
+        this.directory = directory.toAbsolutePath();
+    }
+
+    private Path getEntryFile(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        try {
+            return Files.newInputStream(getEntryFile(key));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, EntryWriter writer) throws IOException {
+        Path file = getEntryFile(key);
+        if (Files.exists(file)) {
+            return; // entries are immutable
+        }
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+        try {
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                writer.write(os);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return directory.toString();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.internal.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Output cache store backed by a remote HTTP server. Entries are read with {@code GET <url>/<key>}
+ * and written with {@code PUT <url>/<key>}, which is supported by most generic HTTP build cache
+ * servers and WebDAV servers. Response status {@code 404} denotes missing entry. Entries larger than
+ * {@value #MAX_ENTRY_SIZE} bytes are rejected.
+ */
+public class HttpOutputCacheStore implements OutputCacheStore {
+
+    private static final int TIMEOUT = 10_000; // milliseconds
+
+    // upper bound of entry size, guards against runaway or misbehaving servers
+    static final long MAX_ENTRY_SIZE = 512L * 1024 * 1024;
+
+    private final URI url;
+
+    private final long maxEntrySize;
+
+    public HttpOutputCacheStore(URI url) {
+        this(url, MAX_ENTRY_SIZE);
+    }
+
+    HttpOutputCacheStore(URI url, long maxEntrySize) {
+        String str = url.toString();
+        this.url = str.endsWith("/") ? url : URI.create(str + "/");
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    private HttpURLConnection open(String key, String method) throws IOException {
+        HttpURLConnection connection =
+                (HttpURLConnection) url.resolve(key).toURL().openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        HttpURLConnection connection = open(key, "GET");
+        try {
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                connection.disconnect();
+                return null;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response " + status + " " + connection.getResponseMessage());
+            }
+            long length = connection.getContentLengthLong();
+            if (length > maxEntrySize) {
+                throw new IOException("Output cache entry " + key + " is too large " + length);
+            }
+            return new LimitedInputStream(connection, key);
+        } catch (IOException | RuntimeException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * Response stream that fails once more than {@link #maxEntrySize} bytes are read, for responses
+     * without or with wrong content length.
+     */
+    private class LimitedInputStream extends FilterInputStream {
+        private final HttpURLConnection connection;
+
+        private final String key;
+
+        private long remaining = maxEntrySize;
+
+        LimitedInputStream(HttpURLConnection connection, String key) throws IOException {
+            super(connection.getInputStream());
+            this.connection = connection;
+            this.key = key;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                consumed(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                consumed(n);
+            }
+            return n;
+        }
+
+        private void consumed(int n) throws IOException {
+            remaining -= n;
+            if (remaining < 0) {
+                throw new IOException("Output cache entry " + key + " is larger than " + maxEntrySize);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+
+    @Override
+    public void put(String key, EntryWriter writer) throws IOException {
+        // spooled to a temporary file to send the entry with known length, which is supported by all
+        // servers, without holding the entry in memory
+        Path tmp = Files.createTempFile("output-cache", ".tmp");
+        try {
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                writer.write(os);
+            }
+            int status;
+            try {
+                status = put(key, tmp);
+            } catch (IOException e) {
+                // unlike buffered requests, streamed requests are not retried on stale keep-alive
+                // connections by HttpURLConnection itself
+                status = put(key, tmp);
+            }
+            if (status / 100 != 2) {
+                throw new IOException("Unexpected response " + status);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private int put(String key, Path entry) throws IOException {
+        HttpURLConnection connection = open(key, "PUT");
+        try {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(Files.size(entry));
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            try (OutputStream os = connection.getOutputStream()) {
+                Files.copy(entry, os);
+            }
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return url.toString();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.internal.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Paths;
+
+/**
+ * Content-addressed store of cached build outputs. Entries are opaque byte streams keyed by
+ * hexadecimal digest of the build inputs. Entries are never updated, an entry stored under a key is
+ * expected to be equivalent to any other entry stored under the same key.
+ *
+ * @see DirectoryOutputCacheStore
+ * @see HttpOutputCacheStore
+ */
+public interface OutputCacheStore {
+
+    /** Output cache location, see {@link #create(String)}. */
+    public static final String PROPERTY_LOCATION = "takari.builder.cache";
+
+    /** Whether to store outputs of builder executions in the cache, {@code true} by default. */
+    public static final String PROPERTY_PUSH = "takari.builder.cache.push";
+
+    /**
+     * Writes entry contents to the provided stream.
+     */
+    @FunctionalInterface
+    public static interface EntryWriter {
+        void write(OutputStream os) throws IOException;
+    }
+
+    /**
+     * Returns stream of the entry stored under the key or {@code null} if there is no such entry. The
+     * caller is responsible for closing the stream.
+     */
+    InputStream get(String key) throws IOException;
+
+    /**
+     * Stores the entry written by the writer under the key. The writer is not called if the store
+     * already has the entry.
+     */
+    void put(String key, EntryWriter writer) throws IOException;
+
+    /**
+     * Creates store for the location, which is either {@code http://} or {@code https://} URL of a
+     * remote store or local filesystem directory path or {@code file:} URL.
+     */
+    public static OutputCacheStore create(String location) {
+        if (location.startsWith("http://") || location.startsWith("https://")) {
+            return new HttpOutputCacheStore(URI.create(location));
+        }
+        if (location.startsWith("file:")) {
+            return new DirectoryOutputCacheStore(Paths.get(URI.create(location)));
+        }
+        return new DirectoryOutputCacheStore(Paths.get(location));
+    }
+}
@@ -21,7 +21,37 @@ public class BytesHash implements Serializable {
         this.bytes = bytes;
     }
 
-    // TODO toString
+    /** Returns lowercase hexadecimal representation of the hash bytes. */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses hexadecimal representation of hash bytes as returned by {@link #toString()}.
+     *
+     * @throws IllegalArgumentException if the string is not valid hexadecimal representation
+     */
+    public static BytesHash fromString(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Invalid hash " + hex);
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int hi = Character.digit(hex.charAt(i * 2), 16);
+            int lo = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException("Invalid hash " + hex);
+            }
+            bytes[i] = (byte) ((hi << 4) | lo);
+        }
+        return new BytesHash(bytes);
+    }
 
     @Override
     public boolean equals(Object obj) {
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.internal.metrics;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and counters of a single builder or build context execution. Collected metrics are
+ * reported through {@link MetricsRegistry}.
+ *
+ * {@link #DISABLED} metrics are used when metrics collection is not enabled. Disabled metrics do not
+ * read the clock and do not allocate, so instrumented code does not need to check if metrics are
+ * enabled.
+ */
+public class ExecutionMetrics {
+
+    public static enum Timer {
+        STATE_LOAD,
+        INPUTS,
+        WALK,
+        DIGEST,
+        CLASSPATH_DIGEST,
+        ENFORCEMENT,
+        EXECUTION,
+        STATE_STORE,
+        TOTAL
+    }
+
+    public static enum Counter {
+        INPUTS,
+        OUTPUTS,
+        ENFORCEMENT_CHECKS
+    }
+
+    public static final ExecutionMetrics DISABLED = new ExecutionMetrics(null, null, null);
+
+    private final Path directory;
+
+    private final String id;
+
+    private final String session;
+
+    private final long created;
+
+    // adders, the builder can be checked by the enforcer on multiple threads
+    private final LongAdder[] nanos;
+
+    private final LongAdder[] counts;
+
+    private volatile String outcome;
+
+    private ExecutionMetrics(Path directory, String id, String session) {
+        this.directory = directory;
+        this.id = id;
+        this.session = session;
+        if (id != null) {
+            this.created = System.nanoTime();
+            this.nanos = newAdders(Timer.values().length);
+            this.counts = newAdders(Counter.values().length);
+        } else {
+            this.created = 0;
+            this.nanos = null;
+            this.counts = null;
+        }
+    }
+
+    private static LongAdder[] newAdders(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Creates enabled metrics of the execution.
+     *
+     * @param directory the report directory, normally the incremental build state directory
+     * @param id the execution id, normally the incremental build state file name
+     * @param session the build session id, reports of previous sessions are discarded
+     */
+    public static ExecutionMetrics create(Path directory, String id, String session) {
+        if (directory == null || id == null || session == null) {
+            throw new IllegalArgumentException();
+        }
+        return new ExecutionMetrics(directory, id, session);
+    }
+
+    public boolean isEnabled() {
+        return id != null;
+    }
+
+    /**
+     * Returns the timer start time to be passed to {@link #stop(Timer, long)}.
+     */
+    public long start() {
+        return id != null ? System.nanoTime() : 0L;
+    }
+
+    public void stop(Timer timer, long start) {
+        if (id != null) {
+            nanos[timer.ordinal()].add(System.nanoTime() - start);
+        }
+    }
+
+    public void add(Counter counter, long value) {
+        if (id != null) {
+            counts[counter.ordinal()].add(value);
+        }
+    }
+
+    public void increment(Counter counter) {
+        if (id != null) {
+            counts[counter.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Sets the reason the execution was skipped, escalated or performed incrementally.
+     */
+    public void setOutcome(String outcome) {
+        this.outcome = outcome;
+    }
+
+    /** Stops {@link Timer#TOTAL} timer started when the metrics were created. */
+    void finish() {
+        stop(Timer.TOTAL, created);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getSession() {
+        return session;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    public long getNanos(Timer timer) {
+        return id != null ? nanos[timer.ordinal()].sum() : 0L;
+    }
+
+    public long getCount(Counter counter) {
+        return id != null ? counts[counter.ordinal()].sum() : 0L;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.internal.metrics;
+
+import io.takari.builder.internal.metrics.ExecutionMetrics.Counter;
+import io.takari.builder.internal.metrics.ExecutionMetrics.Timer;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * In-memory registry of execution metrics. Metrics of all executions recorded in the same directory
+ * during the same build session are reported as {@value #REPORT_JSON} and {@value #REPORT_CSV} files
+ * in the directory, normally {@code target/incremental/}. Reports are written once, when the build
+ * session ends, see {@link #flush(String)}. Enabled with {@code -Dtakari.incremental.metrics=true}.
+ */
+public class MetricsRegistry {
+
+    public static final String PROPERTY_METRICS = "takari.incremental.metrics";
+
+    public static final String REPORT_JSON = "metrics.json";
+
+    public static final String REPORT_CSV = "metrics.csv";
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private static class Report {
+        final String session;
+
+        final List<ExecutionMetrics> executions = new ArrayList<>();
+
+        Report(String session) {
+            this.session = session;
+        }
+    }
+
+    // report directory -> report of the current session
+    private final Map<Path, Report> reports = new HashMap<>();
+
+    MetricsRegistry() {}
+
+    public static MetricsRegistry get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns {@code true} if metrics collection is enabled by the user or system properties.
+     */
+    public static boolean isEnabled(Properties userProperties, Properties systemProperties) {
+        String enabled = userProperties.getProperty(PROPERTY_METRICS);
+        if (enabled == null) {
+            enabled = systemProperties.getProperty(PROPERTY_METRICS);
+        }
+        return Boolean.parseBoolean(enabled);
+    }
+
+    /**
+     * Returns metrics session identifier of the build session with the given properties, or
+     * {@code null} if metrics collection is disabled. The identifier is derived from the build start
+     * time, or from the session object identity if the start time is not known.
+     */
+    public static String getSession(
+            Properties userProperties, Properties systemProperties, Date startTime, Object session) {
+        if (!isEnabled(userProperties, systemProperties)) {
+            return null;
+        }
+        return startTime != null
+                ? Long.toString(startTime.getTime())
+                : Integer.toHexString(System.identityHashCode(session));
+    }
+
+    /**
+     * Records the execution metrics. Disabled metrics are ignored.
+     */
+    public void record(ExecutionMetrics metrics) {
+        if (!metrics.isEnabled()) {
+            return;
+        }
+        metrics.finish();
+        synchronized (reports) {
+            Report report = reports.get(metrics.getDirectory());
+            if (report == null || !report.session.equals(metrics.getSession())) {
+                // executions of a session that was never flushed are discarded
+                report = new Report(metrics.getSession());
+                reports.put(metrics.getDirectory(), report);
+            }
+            report.executions.add(metrics);
+        }
+    }
+
+    /**
+     * Writes reports of all executions recorded during the session and discards the executions. Does
+     * nothing if the session is {@code null}, i.e. metrics collection is disabled.
+     */
+    public void flush(String session) throws IOException {
+        if (session == null) {
+            return;
+        }
+        Map<Path, Report> flushed = new HashMap<>();
+        synchronized (reports) {
+            Iterator<Map.Entry<Path, Report>> iterator = reports.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, Report> entry = iterator.next();
+                if (session.equals(entry.getValue().session)) {
+                    flushed.put(entry.getKey(), entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+        for (Map.Entry<Path, Report> entry : flushed.entrySet()) {
+            Path directory = entry.getKey();
+            Files.createDirectories(directory);
+            try (Writer w = newWriter(directory.resolve(REPORT_JSON))) {
+                writeJson(w, entry.getValue().executions);
+            }
+            try (Writer w = newWriter(directory.resolve(REPORT_CSV))) {
+                writeCsv(w, entry.getValue().executions);
+            }
+        }
+    }
+
+    private static Writer newWriter(Path file) throws IOException {
+        return Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns metrics recorded in the directory during the current build session and not flushed yet.
+     */
+    public List<ExecutionMetrics> getMetrics(Path directory) {
+        synchronized (reports) {
+            Report report = reports.get(directory);
+            return report != null ? new ArrayList<>(report.executions) : Collections.emptyList();
+        }
+    }
+
+    static void writeJson(Writer w, List<ExecutionMetrics> executions) throws IOException {
+        w.write("[");
+        String separator = "\n";
+        for (ExecutionMetrics metrics : executions) {
+            w.write(separator);
+            w.write("  {\"id\": ");
+            writeJsonString(w, metrics.getId());
+            w.write(", \"outcome\": ");
+            writeJsonString(w, metrics.getOutcome());
+            for (Timer timer : Timer.values()) {
+                w.write(", \"" + name(timer) + "_ms\": " + millis(metrics.getNanos(timer)));
+            }
+            for (Counter counter : Counter.values()) {
+                w.write(", \"" + name(counter) + "\": " + metrics.getCount(counter));
+            }
+            w.write("}");
+            separator = ",\n";
+        }
+        w.write("\n]\n");
+    }
+
+    private static void writeJsonString(Writer w, String value) throws IOException {
+        if (value == null) {
+            w.write("null");
+            return;
+        }
+        w.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                w.write('\\');
+                w.write(c);
+            } else if (c < 0x20) {
+                w.write(String.format("\\u%04x", (int) c));
+            } else {
+                w.write(c);
+            }
+        }
+        w.write('"');
+    }
+
+    static void writeCsv(Writer w, List<ExecutionMetrics> executions) throws IOException {
+        w.write("id,outcome");
+        for (Timer timer : Timer.values()) {
+            w.write("," + name(timer) + "_ms");
+        }
+        for (Counter counter : Counter.values()) {
+            w.write("," + name(counter));
+        }
+        w.write("\n");
+        for (ExecutionMetrics metrics : executions) {
+            writeCsvString(w, metrics.getId());
+            w.write(",");
+            writeCsvString(w, metrics.getOutcome());
+            for (Timer timer : Timer.values()) {
+                w.write("," + millis(metrics.getNanos(timer)));
+            }
+            for (Counter counter : Counter.values()) {
+                w.write("," + metrics.getCount(counter));
+            }
+            w.write("\n");
+        }
+    }
+
+    private static void writeCsvString(Writer w, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+            w.write('"' + value.replace("\"", "\"\"") + '"');
+        } else {
+            w.write(value);
+        }
+    }
+
+    private static String name(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000d);
+    }
+}
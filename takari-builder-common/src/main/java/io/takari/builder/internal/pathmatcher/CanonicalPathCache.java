@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.internal.pathmatcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Bounded cache of canonical directory paths. Canonical path of a file is computed by appending the
+ * file name to the cached canonical path of the file's parent directory, which avoids
+ * {@link File#getCanonicalPath()} filesystem calls for all but the first file in each directory.
+ *
+ * Only directories under explicitly registered "immutable" roots, like {@code java.home} and Maven
+ * local repository, are cached. A directory is only cached if canonical path of the file used to
+ * populate the cache entry is consistent with the directory canonical path, and if none of the
+ * directory entries is a symbolic link.
+ *
+ * Roots and cached directories are kept for the duration of a build session, {@link #reset()} must
+ * be called when the session ends.
+ *
+ * Output files are not expected under immutable roots, but if a write under one of the roots is
+ * allowed (for example, by enforcer configuration), {@link #invalidate(Path)} must be called to
+ * evict the written path and all directories nested under it. This guarantees that symbolic links
+ * created by builders are resolved correctly.
+ */
+public class CanonicalPathCache {
+
+    private static final int MAX_SIZE = 8 * 1024;
+
+    private static volatile CanonicalPathCache instance = newInstance();
+
+    // both as-provided and canonical root paths, to allow cheap checks of non-canonical paths
+    private final Set<String> roots = new CopyOnWriteArraySet<>();
+
+    // directory path -> canonical directory path
+    private final Map<String, String> directories = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+
+    CanonicalPathCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    private static CanonicalPathCache newInstance() {
+        CanonicalPathCache cache = new CanonicalPathCache(MAX_SIZE);
+        String javaHome = System.getProperty("java.home");
+        if (javaHome != null && !javaHome.isEmpty()) {
+            cache.addRoot(Paths.get(javaHome));
+        }
+        return cache;
+    }
+
+    public static CanonicalPathCache get() {
+        return instance;
+    }
+
+    /**
+     * Discards all registered roots and cached directories. Called at the end of each build session.
+     */
+    public static void reset() {
+        instance = newInstance();
+    }
+
+    /**
+     * Registers directory tree that is not expected to change during the build session.
+     */
+    public void addRoot(Path root) {
+        if (!roots.add(root.toAbsolutePath().toString())) {
+            return; // already registered
+        }
+        try {
+            roots.add(canonicalize(root));
+        } catch (IOException e) {
+            // root canonical path can't be determined, the root will only match as-provided paths
+        }
+    }
+
+    /**
+     * Returns canonical path of the provided file, see {@link File#getCanonicalPath()}.
+     */
+    public String toCanonicalPath(Path file) throws IOException {
+        Path parent = file.getParent();
+        Path name = file.getFileName();
+        if (parent == null || name == null || !file.isAbsolute()) {
+            return canonicalize(file);
+        }
+        String filename = name.toString();
+        if (".".equals(filename) || "..".equals(filename)) {
+            return canonicalize(file);
+        }
+
+        String directory = parent.toString();
+        String canonicalDirectory = directories.get(directory);
+        if (canonicalDirectory != null) {
+            return child(canonicalDirectory, filename);
+        }
+
+        String canonical = canonicalize(file);
+        if (isUnderRoot(directory)) {
+            canonicalDirectory = canonicalize(parent);
+            if (isUnderRoot(canonicalDirectory)
+                    && canonical.equals(child(canonicalDirectory, filename))
+                    && !hasSymbolicLinks(parent)) {
+                if (directories.size() >= maxSize) {
+                    // simple bulk eviction is good enough, the cache is repopulated from few hot directories
+                    directories.clear();
+                }
+                directories.put(directory, canonicalDirectory);
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * Evicts the provided path and all directories nested under the path from the cache. Must be
+     * called before the path is created or modified, if the path can be under one of the roots.
+     */
+    public void invalidate(Path path) {
+        if (directories.isEmpty()) {
+            return;
+        }
+        String evicted = path.toString();
+        if (roots.stream().noneMatch(root -> isSameOrNested(evicted, root) || isSameOrNested(root, evicted))) {
+            return; // fast path, the cache only includes directories under the roots
+        }
+        directories
+                .entrySet()
+                .removeIf(e -> isSameOrNested(e.getKey(), evicted) //
+                        || isSameOrNested(e.getValue(), evicted));
+    }
+
+    public void clear() {
+        directories.clear();
+    }
+
+    int size() {
+        return directories.size();
+    }
+
+    private boolean isUnderRoot(String path) {
+        for (String root : roots) {
+            if (isSameOrNested(path, root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSameOrNested(String path, String parent) {
+        if (!path.startsWith(parent)) {
+            return false;
+        }
+        return path.length() == parent.length()
+                || path.charAt(parent.length()) == File.separatorChar
+                || parent.endsWith(File.separator);
+    }
+
+    private static String child(String directory, String filename) {
+        return directory.endsWith(File.separator) ? directory + filename : directory + File.separatorChar + filename;
+    }
+
+    /**
+     * Returns {@code true} if the directory has symbolic link entries or the entries can't be read.
+     * Canonical path of a symbolic link can't be computed from the directory canonical path.
+     */
+    private static boolean hasSymbolicLinks(Path directory) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (Files.isSymbolicLink(entry)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException | DirectoryIteratorException e) {
+            return true;
+        }
+    }
+
+    private static String canonicalize(Path file) throws IOException {
+        // note that Path#toRealPath() only works for existing files
+        return file.toFile().getCanonicalPath();
+    }
+}
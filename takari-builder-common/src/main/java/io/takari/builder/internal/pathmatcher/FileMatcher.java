@@ -16,6 +16,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.Locale;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.function.Function;
@@ -103,6 +104,86 @@ public class FileMatcher {
         }
     }
 
+    /**
+     * Matches absolute path globs. Globs are indexed by their literal leading path segments, each
+     * path is only matched against the globs that share its leading path segments. Like all other
+     * globs, the segments are matched case-insensitively.
+     */
+    static class IndexedMatcher implements Matcher {
+        private final Map<String, IndexedMatcher> children = new HashMap<>();
+        private Collection<String> globs;
+        private Plexus_MatchPatterns patterns;
+        private boolean everything;
+
+        void addGlob(String glob) {
+            if ("*".equals(glob) || "**".equals(glob) || "**/*".equals(glob)) {
+                everything = true;
+                return;
+            }
+            StringBuilder gb = new StringBuilder("/");
+            gb.append(glob.startsWith("/") ? glob.substring(1) : glob);
+            // ant shorthand syntax
+            if (glob.endsWith("/")) {
+                gb.append("**");
+            }
+            String normalized = gb.toString().replace(File.separatorChar, PathNormalizer.SEPARATOR_CHAR);
+
+            IndexedMatcher node = this;
+            StringTokenizer st = new StringTokenizer(normalized, PathNormalizer.SEPARATOR);
+            while (st.hasMoreTokens()) {
+                String name = st.nextToken();
+                if (name.contains("*") || name.contains("?")) {
+                    break;
+                }
+                node = node.children.computeIfAbsent(name.toLowerCase(Locale.ROOT), n -> new IndexedMatcher());
+            }
+            if (node.globs == null) {
+                node.globs = new ArrayList<>();
+            }
+            node.globs.add(normalized);
+        }
+
+        IndexedMatcher compile() {
+            if (globs != null) {
+                patterns = Plexus_MatchPatterns.from(globs);
+                globs = null;
+            }
+            children.values().forEach(IndexedMatcher::compile);
+            return this;
+        }
+
+        @Override
+        public boolean matches(String path) {
+            if (everything) {
+                return true;
+            }
+            String key = path.toLowerCase(Locale.ROOT);
+            int length = key.length();
+            int start = 0;
+            IndexedMatcher node = this;
+            while (true) {
+                if (node.patterns != null && node.patterns.matches(path, false)) {
+                    return true;
+                }
+                while (start < length && key.charAt(start) == PathNormalizer.SEPARATOR_CHAR) {
+                    start++;
+                }
+                if (start >= length) {
+                    return false;
+                }
+                int end = key.indexOf(PathNormalizer.SEPARATOR_CHAR, start);
+                if (end < 0) {
+                    end = length;
+                }
+                node = node.children.get(key.substring(start, end));
+                if (node == null) {
+                    return false;
+                }
+                start = end;
+            }
+        }
+    }
+
     final Matcher includesMatcher;
     final Matcher excludesMatcher;
 
@@ -273,6 +354,22 @@ public class FileMatcher {
         return new FileMatcher(toDirectoryPath(basepath), includesMatcher, excludesMatcher);
     }
 
+    /**
+     * Creates and returns new matcher for absolute paths that satisfy any of the specified includes
+     * patterns. Unlike {@link #createMatcher(Collection, Collection)}, the matcher does not match any
+     * paths if no includes patterns are specified.
+     *
+     * The patterns are compiled into a prefix tree of their literal leading path segments, which
+     * makes the matcher suitable for large number of patterns under unrelated directories.
+     */
+    public static FileMatcher createIndexedMatcher(Collection<String> includes) {
+        IndexedMatcher matcher = new IndexedMatcher();
+        if (includes != null) {
+            includes.forEach(matcher::addGlob);
+        }
+        return new FileMatcher(null, matcher.compile(), null);
+    }
+
     protected static String toDirectoryPath(final String basepath) {
         return basepath.endsWith("/") ? basepath : basepath + "/";
     }
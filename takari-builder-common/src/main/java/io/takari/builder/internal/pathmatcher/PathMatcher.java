@@ -118,8 +118,23 @@ public class PathMatcher {
             throw new IllegalArgumentException("Path is not absolute " + path);
         }
 
+        if (path.indexOf("..") >= 0) {
+            // rare, paths are normally normalized by PathNormalizer
+            path = SEPARATOR + String.join(SEPARATOR, split(path));
+        }
+
+        // walks path elements in place, only element names used for child lookup are allocated
         Node node = root, inherited = root;
-        for (String element : split(path)) {
+        int length = path.length();
+        for (int start = 1, end; start < length; start = end + 1) {
+            end = path.indexOf(SEPARATOR_CHAR, start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end == start || (end == start + 1 && path.charAt(start) == '.')) {
+                continue; // empty or "." element
+            }
+            String element = path.substring(start, end);
             node = node.children.get(element);
             if (node == null) {
                 return inherited;
@@ -136,7 +151,6 @@ public class PathMatcher {
         return node != null ? node : inherited;
     }
 
-    // TODO inline, this creates unnecessary temporary objects
     static Iterable<String> split(String path) {
         ArrayList<String> split = new ArrayList<>();
         for (String element : path.split(SEPARATOR)) {
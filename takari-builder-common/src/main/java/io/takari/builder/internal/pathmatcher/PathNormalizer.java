@@ -149,8 +149,7 @@ public class PathNormalizer {
      */
     private static String toCanonicalPath(Path file) {
         try {
-            // note that Path#toRealPath() only works for existing files
-            return file.toFile().getCanonicalPath();
+            return CanonicalPathCache.get().toCanonicalPath(file);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -158,8 +157,7 @@ public class PathNormalizer {
 
     public static Path getCanonicalPath(Path file) {
         try {
-            // note that Path#toRealPath() only works for existing files
-            return file.toFile().getCanonicalFile().toPath();
+            return Paths.get(CanonicalPathCache.get().toCanonicalPath(file));
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -0,0 +1,141 @@
+package io.takari.builder.internal.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OutputCacheStoreTest {
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    private static void assertGetPut(OutputCacheStore store) throws IOException {
+        byte[] entry = "entry".getBytes(StandardCharsets.UTF_8);
+        assertNull(store.get("0123456789abcdef"));
+        store.put("0123456789abcdef", os -> os.write(entry));
+        assertArrayEquals(entry, get(store, "0123456789abcdef"));
+        assertNull(store.get("fedcba9876543210"));
+    }
+
+    private static byte[] get(OutputCacheStore store, String key) throws IOException {
+        try (InputStream is = store.get(key)) {
+            return is != null ? readAll(is) : null;
+        }
+    }
+
+    @Test
+    public void testDirectoryStore() throws Exception {
+        Path directory = temp.newFolder().toPath();
+        assertGetPut(new DirectoryOutputCacheStore(directory));
+
+        // entries are shared by stores using the same directory
+        assertThat(get(new DirectoryOutputCacheStore(directory), "0123456789abcdef"))
+                .isNotNull();
+
+        // existing entries are not rewritten
+        new DirectoryOutputCacheStore(directory).put("0123456789abcdef", os -> fail());
+    }
+
+    @Test
+    public void testHttpStore() throws Exception {
+        Map<String, byte[]> entries = new ConcurrentHashMap<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/cache/", exchange -> handle(exchange, entries));
+        server.start();
+        try {
+            InetSocketAddress address = server.getAddress();
+            String url = "http://" + address.getHostString() + ":" + address.getPort() + "/cache";
+            assertGetPut(OutputCacheStore.create(url));
+            assertThat(entries).containsOnlyKeys("/cache/0123456789abcdef");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testHttpStoreMaxEntrySize() throws Exception {
+        Map<String, byte[]> entries = new ConcurrentHashMap<>();
+        entries.put("/cache/0123456789abcdef", "entry".getBytes(StandardCharsets.UTF_8));
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/cache/", exchange -> handle(exchange, entries));
+        server.createContext("/chunked/", exchange -> {
+            exchange.sendResponseHeaders(200, 0); // unknown length
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write("entry".getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.close();
+        });
+        server.start();
+        try {
+            InetSocketAddress address = server.getAddress();
+            String url = "http://" + address.getHostString() + ":" + address.getPort();
+            HttpOutputCacheStore store = new HttpOutputCacheStore(URI.create(url + "/cache"), 4);
+            assertThatThrownBy(() -> store.get("0123456789abcdef"))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("too large");
+            HttpOutputCacheStore chunked = new HttpOutputCacheStore(URI.create(url + "/chunked"), 4);
+            assertThatThrownBy(() -> get(chunked, "0123456789abcdef"))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("larger than 4");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void handle(HttpExchange exchange, Map<String, byte[]> entries) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if ("PUT".equals(exchange.getRequestMethod())) {
+            entries.put(path, readAll(exchange.getRequestBody()));
+            exchange.sendResponseHeaders(201, -1);
+        } else {
+            byte[] entry = entries.get(path);
+            if (entry == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                exchange.sendResponseHeaders(200, entry.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(entry);
+                }
+            }
+        }
+        exchange.close();
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        byte[] b = new byte[8192];
+        int len;
+        while ((len = is.read(b)) >= 0) {
+            buf.write(b, 0, len);
+        }
+        return buf.toByteArray();
+    }
+
+    @Test
+    public void testCreate() throws Exception {
+        Path directory = temp.newFolder().toPath();
+        assertThat(OutputCacheStore.create(directory.toString())).isInstanceOf(DirectoryOutputCacheStore.class);
+        assertThat(OutputCacheStore.create(directory.toUri().toString())).isInstanceOf(DirectoryOutputCacheStore.class);
+        assertThat(OutputCacheStore.create("https://cache.example.com/builder"))
+                .isInstanceOf(HttpOutputCacheStore.class);
+    }
+}
@@ -0,0 +1,108 @@
+package io.takari.builder.internal.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.takari.builder.internal.metrics.ExecutionMetrics.Counter;
+import io.takari.builder.internal.metrics.ExecutionMetrics.Timer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MetricsRegistryTest {
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testDisabled() throws Exception {
+        ExecutionMetrics metrics = ExecutionMetrics.DISABLED;
+        assertFalse(metrics.isEnabled());
+        assertEquals(0L, metrics.start());
+        metrics.stop(Timer.INPUTS, 0L);
+        metrics.increment(Counter.INPUTS);
+        assertEquals(0L, metrics.getNanos(Timer.INPUTS));
+        assertEquals(0L, metrics.getCount(Counter.INPUTS));
+
+        new MetricsRegistry().record(metrics); // ignored
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        Path directory = temp.newFolder().toPath().resolve("incremental");
+        MetricsRegistry testee = new MetricsRegistry();
+
+        ExecutionMetrics a = ExecutionMetrics.create(directory, "a", "1");
+        a.stop(Timer.INPUTS, a.start());
+        a.add(Counter.INPUTS, 3);
+        a.setOutcome("skipped, \"up-to-date\"");
+        testee.record(a);
+        testee.record(ExecutionMetrics.create(directory, "b", "1"));
+
+        assertThat(testee.getMetrics(directory))
+                .extracting(ExecutionMetrics::getId)
+                .containsExactly("a", "b");
+        assertTrue(a.getNanos(Timer.TOTAL) > 0);
+        assertFalse(Files.exists(directory.resolve(MetricsRegistry.REPORT_CSV)));
+
+        testee.flush("1");
+        assertThat(testee.getMetrics(directory)).isEmpty();
+
+        List<String> csv = Files.readAllLines(directory.resolve(MetricsRegistry.REPORT_CSV), StandardCharsets.UTF_8);
+        assertThat(csv).hasSize(3);
+        assertThat(csv.get(0)).startsWith("id,outcome,state_load_ms,inputs_ms,");
+        assertThat(csv.get(1)).startsWith("a,\"skipped, \"\"up-to-date\"\"\",").endsWith(",3,0,0");
+        assertThat(csv.get(2)).startsWith("b,,");
+
+        String json =
+                new String(Files.readAllBytes(directory.resolve(MetricsRegistry.REPORT_JSON)), StandardCharsets.UTF_8);
+        assertThat(json)
+                .contains("{\"id\": \"a\", \"outcome\": \"skipped, \\\"up-to-date\\\"\", \"state_load_ms\": 0.000");
+        assertThat(json).contains("\"inputs\": 3, \"outputs\": 0, \"enforcement_checks\": 0}");
+        assertThat(json).contains("{\"id\": \"b\", \"outcome\": null,");
+
+        // new session discards executions of a session that was never flushed
+        testee.record(ExecutionMetrics.create(directory, "c", "2"));
+        testee.record(ExecutionMetrics.create(directory, "d", "3"));
+        testee.flush("2");
+        assertThat(testee.getMetrics(directory))
+                .extracting(ExecutionMetrics::getId)
+                .containsExactly("d");
+        testee.flush("3");
+        assertThat(Files.readAllLines(directory.resolve(MetricsRegistry.REPORT_CSV)))
+                .hasSize(2);
+        assertThat(testee.getMetrics(directory)).isEmpty();
+    }
+
+    @Test
+    public void testGetSession() {
+        Properties user = new Properties();
+        Properties system = new Properties();
+        assertNull(MetricsRegistry.getSession(user, system, new Date(123), this));
+        user.setProperty(MetricsRegistry.PROPERTY_METRICS, "true");
+        assertEquals("123", MetricsRegistry.getSession(user, system, new Date(123), this));
+        assertEquals(
+                Integer.toHexString(System.identityHashCode(this)),
+                MetricsRegistry.getSession(user, system, null, this));
+    }
+
+    @Test
+    public void testIsEnabled() {
+        Properties user = new Properties();
+        Properties system = new Properties();
+        assertFalse(MetricsRegistry.isEnabled(user, system));
+        system.setProperty(MetricsRegistry.PROPERTY_METRICS, "true");
+        assertTrue(MetricsRegistry.isEnabled(user, system));
+        user.setProperty(MetricsRegistry.PROPERTY_METRICS, "false");
+        assertFalse(MetricsRegistry.isEnabled(user, system));
+    }
+}
@@ -0,0 +1,141 @@
+package io.takari.builder.internal.pathmatcher;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CanonicalPathCacheTest {
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testCachedDirectory() throws Exception {
+        File root = temp.newFolder("root");
+        File dir = new File(root, "dir");
+        dir.mkdirs();
+
+        CanonicalPathCache testee = new CanonicalPathCache(10);
+        testee.addRoot(root.toPath());
+
+        Path a = dir.toPath().resolve("a");
+        Path b = dir.toPath().resolve("b");
+        assertEquals(a.toFile().getCanonicalPath(), testee.toCanonicalPath(a));
+        assertEquals(1, testee.size());
+        assertEquals(b.toFile().getCanonicalPath(), testee.toCanonicalPath(b));
+        assertEquals(1, testee.size());
+    }
+
+    @Test
+    public void testOutsideRoots() throws Exception {
+        File root = temp.newFolder("root");
+        File other = temp.newFolder("other");
+
+        CanonicalPathCache testee = new CanonicalPathCache(10);
+        testee.addRoot(root.toPath());
+
+        Path a = other.toPath().resolve("a");
+        assertEquals(a.toFile().getCanonicalPath(), testee.toCanonicalPath(a));
+        assertEquals(0, testee.size());
+    }
+
+    @Test
+    public void testDotNames() throws Exception {
+        File root = temp.newFolder("root");
+        new File(root, "dir").mkdirs();
+
+        CanonicalPathCache testee = new CanonicalPathCache(10);
+        testee.addRoot(root.toPath());
+
+        Path dotdot = root.toPath().resolve("dir/..");
+        assertEquals(root.getCanonicalPath(), testee.toCanonicalPath(dotdot));
+        assertEquals(0, testee.size());
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        File root = temp.newFolder("root");
+
+        CanonicalPathCache testee = new CanonicalPathCache(2);
+        testee.addRoot(root.toPath());
+
+        for (int i = 0; i < 5; i++) {
+            Path dir = Files.createDirectories(root.toPath().resolve("dir" + i));
+            testee.toCanonicalPath(dir.resolve("file"));
+        }
+        assertEquals(1, testee.size());
+    }
+
+    @Test
+    public void testSymlinkFile() throws Exception {
+        File root = temp.newFolder("root");
+        File dir = temp.newFolder("root", "dir");
+        File target = temp.newFile("target");
+        Path link = Files.createSymbolicLink(dir.toPath().resolve("link"), target.toPath());
+
+        CanonicalPathCache testee = new CanonicalPathCache(10);
+        testee.addRoot(root.toPath());
+
+        // directories with symbolic link entries are not cached
+        Path file = dir.toPath().resolve("file");
+        assertEquals(file.toFile().getCanonicalPath(), testee.toCanonicalPath(file));
+        assertEquals(0, testee.size());
+        assertEquals(target.getCanonicalPath(), testee.toCanonicalPath(link));
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        File root = temp.newFolder("root");
+        Path file = temp.newFolder("root", "dir").toPath().resolve("file");
+
+        CanonicalPathCache.get().addRoot(root.toPath());
+        CanonicalPathCache.get().toCanonicalPath(file);
+        assertEquals(1, CanonicalPathCache.get().size());
+
+        CanonicalPathCache.reset();
+        CanonicalPathCache.get().toCanonicalPath(file);
+        assertEquals(0, CanonicalPathCache.get().size());
+    }
+
+    @Test
+    public void testInvalidateSymlink() throws Exception {
+        File root = temp.newFolder("root");
+        File target = temp.newFolder("root", "target");
+        Path link = root.toPath().resolve("link");
+        Files.createDirectories(link);
+
+        CanonicalPathCache testee = new CanonicalPathCache(10);
+        testee.addRoot(root.toPath());
+
+        Path file = link.resolve("file");
+        assertEquals(file.toFile().getCanonicalPath(), testee.toCanonicalPath(file));
+        assertEquals(1, testee.size());
+
+        testee.invalidate(link);
+        Files.delete(link);
+        Files.createSymbolicLink(link, target.toPath());
+
+        assertEquals(0, testee.size());
+        assertEquals(new File(target, "file").getCanonicalPath(), testee.toCanonicalPath(file));
+    }
+
+    @Test
+    public void testInvalidateOutsideRoots() throws Exception {
+        File root = temp.newFolder("root");
+
+        CanonicalPathCache testee = new CanonicalPathCache(10);
+        testee.addRoot(root.toPath());
+        testee.toCanonicalPath(root.toPath().resolve("file"));
+
+        testee.invalidate(temp.newFolder("other").toPath());
+        assertEquals(1, testee.size());
+
+        testee.invalidate(root.toPath());
+        assertEquals(0, testee.size());
+    }
+}
@@ -4,6 +4,7 @@ import static com.google.common.collect.ImmutableList.of;
 import static io.takari.builder.internal.pathmatcher.PathNormalizer.normalize0;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -262,4 +263,47 @@ public class FileMatcherTest {
                 .map(file -> file.getAbsolutePath()) //
                 .collect(Collectors.joining("\n"));
     }
+
+    @Test
+    public void testIndexedMatcher() throws Exception {
+        List<String> includes = Arrays.asList(
+                "/a/b/c.txt",
+                "/a/b/**/*.java",
+                "/a/d/",
+                "/A/E/f*.txt",
+                "**/g.txt",
+                "/h/*/i/**",
+                "/j?/k.txt",
+                "l/m.txt");
+        List<String> paths = Arrays.asList(
+                "/a/b/c.txt",
+                "/a/b/c.txt.bak",
+                "/a/b/C.TXT",
+                "/a/b/x/y/z.java",
+                "/a/b/z.java",
+                "/a/b.java",
+                "/a/d",
+                "/a/d/x/y",
+                "/a/dd/x",
+                "/a/e/f1.txt",
+                "/a/e/x/f1.txt",
+                "/x/y/g.txt",
+                "/g.txt",
+                "/h/x/i",
+                "/h/x/i/y",
+                "/h/i/y",
+                "/j1/k.txt",
+                "/j12/k.txt",
+                "/l/m.txt",
+                "/x/l/m.txt");
+
+        FileMatcher expected = FileMatcher.createMatcher(includes, null);
+        FileMatcher indexed = FileMatcher.createIndexedMatcher(includes);
+        for (String path : paths) {
+            assertEquals(path, expected.matches(path), indexed.matches(path));
+        }
+
+        assertTrue(FileMatcher.createIndexedMatcher(of("**")).matches("/a/b"));
+        assertFalse(FileMatcher.createIndexedMatcher(Collections.emptyList()).matches("/a/b"));
+    }
 }
@@ -65,6 +65,22 @@ public class PathMatcherTest {
         Assert.assertTrue(matcher.includes("/foo/bar/.."));
     }
 
+    @Test
+    public void testMatchNonNormalized() {
+        PathMatcher matcher = builder()
+                .excludeRoot() //
+                .includePrefix("/foo/bar") //
+                .excludePath("/foo/bar/file") //
+                .build();
+        Assert.assertTrue(matcher.includes("//foo/./bar/"));
+        Assert.assertTrue(matcher.includes("/foo/bar/./other"));
+        Assert.assertFalse(matcher.includes("/foo//bar/file"));
+        Assert.assertFalse(matcher.includes("/foo/bar/dir/../file"));
+        Assert.assertFalse(matcher.includes("/foo/bar/.."));
+        Assert.assertTrue(matcher.includes("/foo/bar/..file"));
+        Assert.assertTrue(matcher.includes("/foo/bar/.hidden"));
+    }
+
     @Test
     public void testMatchEverythingUnderRoot() {
         PathMatcher matcher = builder().includeRoot().build();
@@ -7,6 +7,7 @@
  */
 package io.takari.builder.enforcer.internal;
 
+import io.takari.builder.internal.pathmatcher.FileMatcher;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -21,6 +22,7 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.slf4j.Logger;
@@ -231,6 +233,10 @@ public class EnforcerConfig {
 
     protected final boolean enforce;
 
+    // identifier -> compiled exceptions matcher, the config is immutable and the matchers are reused
+    private final Map<String, FileMatcher> readExceptionsMatchers = new ConcurrentHashMap<>();
+    private final Map<String, FileMatcher> writeExceptionsMatchers = new ConcurrentHashMap<>();
+
     private EnforcerConfig(
             boolean enforce,
             Map<String, Collection<String>> readExceptions,
@@ -268,6 +274,24 @@ public class EnforcerConfig {
         return getExceptions(identifier, writeExceptions);
     }
 
+    /**
+     * Returns compiled matcher of {@link #getReadExceptions(String)}. The matcher is compiled once
+     * per identifier and reused for the lifetime of this config.
+     */
+    public FileMatcher getReadExceptionsMatcher(String identifier) {
+        return readExceptionsMatchers.computeIfAbsent(
+                identifier, id -> FileMatcher.createIndexedMatcher(getReadExceptions(id)));
+    }
+
+    /**
+     * Returns compiled matcher of {@link #getWriteExceptions(String)}. The matcher is compiled once
+     * per identifier and reused for the lifetime of this config.
+     */
+    public FileMatcher getWriteExceptionsMatcher(String identifier) {
+        return writeExceptionsMatchers.computeIfAbsent(
+                identifier, id -> FileMatcher.createIndexedMatcher(getWriteExceptions(id)));
+    }
+
     public Collection<String> getExecExceptions(String identifier) {
         return getExceptions(identifier, execExceptions);
     }
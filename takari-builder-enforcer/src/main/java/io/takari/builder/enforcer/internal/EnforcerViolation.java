@@ -16,16 +16,27 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * Undeclared resource access. Violations are identified by (type, file), stack trace is not part of
+ * violation identity and is only captured for violations that were not recorded before, see
+ * {@link #captureStackTrace()}.
+ */
 public class EnforcerViolation implements Comparable<EnforcerViolation> {
 
+    // enough to identify offending builder code, the rest are usually maven and junit frames
+    static final int MAX_STACK_DEPTH = 64;
+
     private final EnforcerViolationType violationType;
     private final String file;
-    private final List<String> stackTrace;
+
+    // null until captured
+    private volatile List<String> stackTrace;
 
     public EnforcerViolation(EnforcerViolationType violationType, String file) {
-        this(violationType, file, getStack());
+        this(violationType, file, null);
     }
 
     EnforcerViolation(EnforcerViolationType violationType, String file, List<String> stackTrace) {
@@ -43,7 +54,20 @@ public class EnforcerViolation implements Comparable<EnforcerViolation> {
     }
 
     public List<String> getStackTrace() {
-        return stackTrace;
+        List<String> stackTrace = this.stackTrace;
+        return stackTrace != null ? stackTrace : Collections.emptyList();
+    }
+
+    /**
+     * Captures current thread stack trace, unless the violation already has one. Stack capture is
+     * by far the most expensive part of violation handling, so this is expected to be called only
+     * after the violation was found to be new.
+     */
+    public EnforcerViolation captureStackTrace() {
+        if (stackTrace == null) {
+            stackTrace = getStack(MAX_STACK_DEPTH);
+        }
+        return this;
     }
 
     public String getType() {
@@ -65,7 +89,7 @@ public class EnforcerViolation implements Comparable<EnforcerViolation> {
 
     @Override
     public String toString() {
-        return String.format("%s:%s:%s", violationType, file, stackTrace);
+        return String.format("%s:%s:%s", violationType, file, getStackTrace());
     }
 
     @Override
@@ -90,10 +114,16 @@ public class EnforcerViolation implements Comparable<EnforcerViolation> {
         return result;
     }
 
-    static List<String> getStack() {
-        StackTraceElement[] elements = Thread.currentThread().getStackTrace();
-        List<String> output = new ArrayList<>(elements.length);
+    static List<String> getStack(int maxDepth) {
+        StackTraceElement[] elements = new Throwable().getStackTrace();
+        List<String> output = new ArrayList<>(Math.min(elements.length, maxDepth));
         for (StackTraceElement e : elements) {
+            if (output.isEmpty() && EnforcerViolation.class.getName().equals(e.getClassName())) {
+                continue;
+            }
+            if (output.size() >= maxDepth) {
+                break;
+            }
             output.add(e.toString());
         }
         return output;
@@ -108,8 +138,9 @@ public class EnforcerViolation implements Comparable<EnforcerViolation> {
     }
 
     public static Writer newWriter(Path outputFile) throws IOException {
-        BufferedWriter writer = Files.newBufferedWriter(
-                outputFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.SYNC);
+        // records are flushed to the OS, which is enough to survive JVM crash and much cheaper than SYNC
+        BufferedWriter writer =
+                Files.newBufferedWriter(outputFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
         return new Writer() {
             @Override
             public synchronized void close() throws IOException {
@@ -66,6 +66,14 @@ public class DefaultProjectBasedirEnforcer implements ProjectBasedirEnforcer {
         return (ModularityEnforcementPolicy) ComposableSecurityManagerPolicy.getContextPolicy(KEY_CONTEXT);
     }
 
+    /**
+     * Returns {@code true} if project modularity is enforced on the current thread. The violations
+     * are reported when the current mojo execution finishes.
+     */
+    public static boolean isProjectContextActive() {
+        return ComposableSecurityManagerPolicy.getContextPolicy(KEY_CONTEXT) != null;
+    }
+
     private PathNormalizer normalizer;
 
     private PathMatcher readMatcher;
@@ -552,6 +560,7 @@ public class DefaultProjectBasedirEnforcer implements ProjectBasedirEnforcer {
     protected void handleViolation(ProjectContext context, EnforcerViolation violation) {
         if (context != null) {
             if (context.addViolation(violation)) {
+                violation.captureStackTrace();
                 String type = violation.getType();
                 String file = violation.getFile();
                 String rule = context.matchingRule(type.charAt(0), file);
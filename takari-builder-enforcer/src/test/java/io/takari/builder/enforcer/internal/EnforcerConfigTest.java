@@ -3,6 +3,7 @@ package io.takari.builder.enforcer.internal;
 import static io.takari.builder.enforcer.internal.EnforcerConfig.ALL_BUILDERS;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import io.takari.builder.internal.pathmatcher.FileMatcher;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
@@ -155,4 +156,26 @@ public class EnforcerConfigTest {
         assertThat(config.hasEntriesFor("6")).isTrue();
         assertThat(config.hasEntriesFor("7")).isFalse();
     }
+
+    @Test
+    public void testExceptionsMatcher() throws Exception {
+        config = EnforcerConfig.builder()
+                .enforce(true)
+                .withReadException("*", "/some/file")
+                .withReadException("project", "/some/dir/**")
+                .withWriteException("project", "/tmp/*.log")
+                .build();
+
+        FileMatcher readMatcher = config.getReadExceptionsMatcher("project");
+        assertThat(readMatcher.matches("/some/file")).isTrue();
+        assertThat(readMatcher.matches("/some/dir/a/b")).isTrue();
+        assertThat(readMatcher.matches("/some/other")).isFalse();
+        assertThat(config.getReadExceptionsMatcher("project")).isSameAs(readMatcher);
+
+        FileMatcher writeMatcher = config.getWriteExceptionsMatcher("project");
+        assertThat(writeMatcher.matches("/tmp/build.log")).isTrue();
+        assertThat(writeMatcher.matches("/some/file")).isFalse();
+        assertThat(config.getWriteExceptionsMatcher("other").matches("/tmp/build.log"))
+                .isFalse();
+    }
 }
@@ -35,4 +35,18 @@ public class EnforcerViolationTest {
 
         assertThat(violations).containsExactlyInAnyOrder(w, e, r);
     }
+
+    @Test
+    public void testLazyStackTrace() throws Exception {
+        EnforcerViolation violation = new EnforcerViolation(READ, "read-path");
+        assertThat(violation.getStackTrace()).isEmpty();
+
+        violation.captureStackTrace();
+        List<String> stackTrace = violation.getStackTrace();
+        assertThat(stackTrace).isNotEmpty().hasSizeLessThanOrEqualTo(EnforcerViolation.MAX_STACK_DEPTH);
+        assertThat(stackTrace.get(0)).contains(getClass().getName() + ".testLazyStackTrace");
+
+        // captured once
+        assertThat(violation.captureStackTrace().getStackTrace()).isSameAs(stackTrace);
+    }
 }
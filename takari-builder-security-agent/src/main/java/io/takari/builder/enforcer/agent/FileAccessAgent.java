@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.enforcer.agent;
+
+import io.takari.builder.enforcer.agent.FileAccessTransformer.Hook;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+/**
+ * File access tracking backend that does not depend on {@link SecurityManager}, which is deprecated
+ * and disabled by default on modern JDKs. The agent instruments JDK file access methods to call
+ * {@link FileAccessHooks}, and takari-builder enforcement policies register hook listeners when the
+ * agent backend is selected with {@code -Dtakari.builder.enforcer.agent=true}.
+ *
+ * Unlike SecurityManager, which inspects protection domains of the entire call stack on each check,
+ * the hooks cost a volatile read when enforcement is not active and a thread-local lookup
+ * otherwise. The flip side is that hooks see all file access performed on the thread, including
+ * JDK-internal access, which enforcement policies already allow for the JVM classpath. Only file
+ * access is tracked, system property, network and exec checks require SecurityManager.
+ *
+ * Usage:
+ * {@code MAVEN_OPTS="-javaagent:/path/to/takari-builder-security-agent.jar -Dtakari.builder.enforcer.agent=true"}
+ */
+public class FileAccessAgent {
+
+    // must not use FileAccessHooks.class before the class is available from bootstrap class loader
+    static final String HOOKS = "io.takari.builder.enforcer.agent.FileAccessHooks";
+
+    private static final String FILE = "(Ljava/io/File;)V";
+    private static final String FILE_FILE = "(Ljava/io/File;Ljava/io/File;)V";
+    private static final String FILE_STRING = "(Ljava/io/File;Ljava/lang/String;)V";
+    private static final String PATH = "(Ljava/nio/file/Path;)V";
+    private static final String PATH_PATH = "(Ljava/nio/file/Path;Ljava/nio/file/Path;)V";
+    private static final String PATH_SET = "(Ljava/nio/file/Path;Ljava/util/Set;)V";
+
+    private static volatile boolean installed;
+
+    public static void premain(String args, Instrumentation instrumentation) throws Exception {
+        install(instrumentation);
+    }
+
+    public static void agentmain(String args, Instrumentation instrumentation) throws Exception {
+        install(instrumentation);
+    }
+
+    public static boolean isInstalled() {
+        return installed;
+    }
+
+    static synchronized void install(Instrumentation instrumentation) throws Exception {
+        if (installed) {
+            return;
+        }
+
+        instrumentation.appendToBootstrapClassLoaderSearch(createHooksJar());
+        Class<?> hooks = Class.forName(HOOKS, true, null);
+
+        // instrumented java.base classes call the hooks from bootstrap class loader unnamed module
+        instrumentation.redefineModule(
+                Object.class.getModule(), Set.of(hooks.getModule()), Map.of(), Map.of(), Set.of(), Map.of());
+
+        FileAccessTransformer transformer = new FileAccessTransformer(hooks());
+        // the transformer stays registered, retransformation by other agents starts from original bytes
+        instrumentation.addTransformer(transformer, true);
+        instrumentation.retransformClasses(transformer.getClasses());
+
+        List<String> failures = transformer.getFailures();
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Could not instrument file access methods " + failures);
+        }
+
+        installed = true;
+    }
+
+    private static JarFile createHooksJar() throws IOException {
+        String entryName = HOOKS.replace('.', '/') + ".class";
+        Path jar = Files.createTempFile("takari-builder-security-agent", ".jar");
+        jar.toFile().deleteOnExit();
+        try (InputStream is = FileAccessAgent.class.getClassLoader().getResourceAsStream(entryName);
+                OutputStream os = Files.newOutputStream(jar);
+                JarOutputStream jos = new JarOutputStream(os)) {
+            if (is == null) {
+                throw new IllegalStateException("Missing " + entryName);
+            }
+            jos.putNextEntry(new JarEntry(entryName));
+            is.transferTo(jos);
+            jos.closeEntry();
+        }
+        return new JarFile(jar.toFile());
+    }
+
+    static List<Hook> hooks() throws ReflectiveOperationException {
+        List<Hook> hooks = new ArrayList<>();
+
+        // java.io, other public constructors delegate to the hooked ones
+        hooks.add(new Hook(FileInputStream.class.getConstructor(File.class), "checkRead", FILE, 1));
+        hooks.add(new Hook(FileOutputStream.class.getConstructor(File.class, boolean.class), "checkWrite", FILE, 1));
+        hooks.add(new Hook(randomAccessFileConstructor(), "checkRandomAccess", FILE_STRING, 1, 2));
+        hooks.add(new Hook(File.class.getMethod("createNewFile"), "checkWrite", FILE, 0));
+        hooks.add(new Hook(File.class.getMethod("delete"), "checkWrite", FILE, 0));
+        hooks.add(new Hook(File.class.getMethod("mkdir"), "checkWrite", FILE, 0));
+        hooks.add(new Hook(File.class.getMethod("renameTo", File.class), "checkRename", FILE_FILE, 0, 1));
+
+        // java.nio.file.Files and FileChannel#open delegate to the default file system provider
+        FileSystemProvider provider = FileSystems.getDefault().provider();
+        Class<?>[] pathSetAttributes = {Path.class, Set.class, FileAttribute[].class};
+        addHook(hooks, provider, "newByteChannel", pathSetAttributes, "checkOpen", PATH_SET, 1, 2);
+        addHook(hooks, provider, "newFileChannel", pathSetAttributes, "checkOpen", PATH_SET, 1, 2);
+        addHook(
+                hooks,
+                provider,
+                "newAsynchronousFileChannel",
+                new Class<?>[] {Path.class, Set.class, ExecutorService.class, FileAttribute[].class},
+                "checkOpen",
+                PATH_SET,
+                1,
+                2);
+        addHook(
+                hooks,
+                provider,
+                "newInputStream",
+                new Class<?>[] {Path.class, OpenOption[].class},
+                "checkRead",
+                PATH,
+                1);
+        addHook(
+                hooks,
+                provider,
+                "newOutputStream",
+                new Class<?>[] {Path.class, OpenOption[].class},
+                "checkWrite",
+                PATH,
+                1);
+        addHook(
+                hooks,
+                provider,
+                "newDirectoryStream",
+                new Class<?>[] {Path.class, DirectoryStream.Filter.class},
+                "checkRead",
+                PATH,
+                1);
+        addHook(
+                hooks,
+                provider,
+                "createDirectory",
+                new Class<?>[] {Path.class, FileAttribute[].class},
+                "checkWrite",
+                PATH,
+                1);
+        addHook(
+                hooks,
+                provider,
+                "createSymbolicLink",
+                new Class<?>[] {Path.class, Path.class, FileAttribute[].class},
+                "checkWrite",
+                PATH,
+                1);
+        addHook(hooks, provider, "createLink", new Class<?>[] {Path.class, Path.class}, "checkWrite", PATH, 1);
+        addHook(hooks, provider, "delete", new Class<?>[] {Path.class}, "checkWrite", PATH, 1);
+        addHook(hooks, provider, "deleteIfExists", new Class<?>[] {Path.class}, "checkWrite", PATH, 1);
+        Class<?>[] pathPathOptions = {Path.class, Path.class, CopyOption[].class};
+        addHook(hooks, provider, "copy", pathPathOptions, "checkCopy", PATH_PATH, 1, 2);
+        addHook(hooks, provider, "move", pathPathOptions, "checkMove", PATH_PATH, 1, 2);
+        addHook(hooks, provider, "checkAccess", new Class<?>[] {Path.class, AccessMode[].class}, "checkRead", PATH, 1);
+        addHook(
+                hooks,
+                provider,
+                "readAttributes",
+                new Class<?>[] {Path.class, Class.class, LinkOption[].class},
+                "checkRead",
+                PATH,
+                1);
+        addHook(
+                hooks,
+                provider,
+                "readAttributes",
+                new Class<?>[] {Path.class, String.class, LinkOption[].class},
+                "checkRead",
+                PATH,
+                1);
+        addHook(
+                hooks,
+                provider,
+                "setAttribute",
+                new Class<?>[] {Path.class, String.class, Object.class, LinkOption[].class},
+                "checkWrite",
+                PATH,
+                1);
+
+        // Files#exists/isDirectory/isRegularFile fast paths, the set of methods depends on JDK version
+        addHook(
+                hooks,
+                provider,
+                "readAttributesIfExists",
+                new Class<?>[] {Path.class, Class.class, LinkOption[].class},
+                "checkRead",
+                PATH,
+                1);
+        addHook(hooks, provider, "exists", new Class<?>[] {Path.class, LinkOption[].class}, "checkRead", PATH, 1);
+        addHook(hooks, provider, "exists", new Class<?>[] {Path.class}, "checkRead", PATH, 1);
+        addHook(hooks, provider, "isDirectory", new Class<?>[] {Path.class}, "checkRead", PATH, 1);
+        addHook(hooks, provider, "isRegularFile", new Class<?>[] {Path.class}, "checkRead", PATH, 1);
+
+        return hooks;
+    }
+
+    private static Constructor<?> randomAccessFileConstructor() throws NoSuchMethodException {
+        try {
+            // all public constructors delegate to this one
+            return RandomAccessFile.class.getDeclaredConstructor(File.class, String.class, boolean.class);
+        } catch (NoSuchMethodException e) {
+            return RandomAccessFile.class.getConstructor(File.class, String.class);
+        }
+    }
+
+    private static void addHook(
+            List<Hook> hooks,
+            FileSystemProvider provider,
+            String name,
+            Class<?>[] parameterTypes,
+            String hookName,
+            String hookDesc,
+            int... slots) {
+        Method method;
+        try {
+            method = provider.getClass().getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return; // not available in this JDK version
+        }
+        if (method.getDeclaringClass() == FileSystemProvider.class) {
+            // default implementations delegate to other, hooked, provider methods
+            return;
+        }
+        hooks.add(new Hook(method, hookName, hookDesc, slots));
+    }
+}
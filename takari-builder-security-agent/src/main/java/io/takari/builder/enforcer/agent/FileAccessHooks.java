@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.enforcer.agent;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Static methods called by instrumented JDK file access methods.
+ *
+ * The class is loaded by the bootstrap class loader, see {@link FileAccessAgent}, which makes it a
+ * JVM-wide singleton regardless of how many class loaders load the rest of the enforcement code.
+ * For the same reason, the class must only reference JDK classes, and listeners are registered by
+ * name using reflection, see {@code io.takari.builder.enforcer.ComposableSecurityManagerPolicy}.
+ *
+ * Reported paths match those the SecurityManager would be asked to check, i.e. {@link File#getPath()}
+ * and {@link Path#toString()}.
+ */
+public final class FileAccessHooks {
+
+    private static volatile Consumer<String> readListener;
+
+    private static volatile Consumer<String> writeListener;
+
+    private FileAccessHooks() {}
+
+    /**
+     * Sets listeners notified about file reads and writes, {@code null} disables notifications.
+     * Listeners can throw {@link SecurityException} to prevent file access. Listeners are called on
+     * the thread that accesses the file and must guard against recursive calls if they access
+     * files themselves.
+     */
+    public static void setListeners(Consumer<String> read, Consumer<String> write) {
+        readListener = read;
+        writeListener = write;
+    }
+
+    public static boolean isEnabled() {
+        return readListener != null || writeListener != null;
+    }
+
+    //
+    // java.io
+    //
+
+    public static void checkRead(File file) {
+        if (file != null) {
+            read(file.getPath());
+        }
+    }
+
+    public static void checkWrite(File file) {
+        if (file != null) {
+            write(file.getPath());
+        }
+    }
+
+    public static void checkRename(File file, File dest) {
+        checkWrite(file);
+        checkWrite(dest);
+    }
+
+    public static void checkRandomAccess(File file, String mode) {
+        if (file != null) {
+            read(file.getPath());
+            if (mode != null && mode.indexOf('w') >= 0) {
+                write(file.getPath());
+            }
+        }
+    }
+
+    //
+    // java.nio.file
+    //
+
+    public static void checkRead(Path path) {
+        if (path != null) {
+            read(path.toString());
+        }
+    }
+
+    public static void checkWrite(Path path) {
+        if (path != null) {
+            write(path.toString());
+        }
+    }
+
+    public static void checkOpen(Path path, Set<?> options) {
+        if (path == null || options == null) {
+            return;
+        }
+        boolean write = options.contains(StandardOpenOption.WRITE) || options.contains(StandardOpenOption.APPEND);
+        if (!write || options.contains(StandardOpenOption.READ)) {
+            read(path.toString());
+        }
+        if (write || options.contains(StandardOpenOption.DELETE_ON_CLOSE)) {
+            write(path.toString());
+        }
+    }
+
+    public static void checkCopy(Path source, Path target) {
+        checkRead(source);
+        checkWrite(target);
+    }
+
+    public static void checkMove(Path source, Path target) {
+        checkWrite(source);
+        checkWrite(target);
+    }
+
+    private static void read(String path) {
+        Consumer<String> listener = readListener;
+        if (listener != null) {
+            listener.accept(path);
+        }
+    }
+
+    private static void write(String path) {
+        Consumer<String> listener = writeListener;
+        if (listener != null) {
+            listener.accept(path);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.enforcer.agent;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Inserts calls to {@link FileAccessHooks} at the beginning of JDK file access methods. Only method
+ * bodies are changed, which is what class retransformation allows.
+ */
+class FileAccessTransformer implements ClassFileTransformer {
+
+    static final String HOOKS = FileAccessAgent.HOOKS.replace('.', '/');
+
+    static final class Hook {
+        final Class<?> owner;
+        final String name;
+        final String desc;
+        final String hookName;
+        final String hookDesc;
+        final int[] slots;
+
+        /**
+         * @param slots local variable slots of the hooked method passed to the hook method, {@code 0}
+         *     is {@code this} of instance methods
+         */
+        Hook(Executable method, String hookName, String hookDesc, int... slots) {
+            this.owner = method.getDeclaringClass();
+            this.name = method instanceof Constructor ? "<init>" : method.getName();
+            this.desc = method instanceof Constructor
+                    ? Type.getConstructorDescriptor((Constructor<?>) method)
+                    : Type.getMethodDescriptor((Method) method);
+            this.hookName = hookName;
+            this.hookDesc = hookDesc;
+            this.slots = slots;
+        }
+
+        @Override
+        public String toString() {
+            return owner.getName() + "#" + name + desc;
+        }
+    }
+
+    // owner internal name -> hooks
+    private final Map<String, List<Hook>> hooks = new HashMap<>();
+
+    private final Set<Class<?>> classes = new LinkedHashSet<>();
+
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+    public FileAccessTransformer(Collection<Hook> hooks) {
+        for (Hook hook : hooks) {
+            this.hooks
+                    .computeIfAbsent(Type.getInternalName(hook.owner), k -> new ArrayList<>())
+                    .add(hook);
+            this.classes.add(hook.owner);
+        }
+    }
+
+    public Class<?>[] getClasses() {
+        return classes.toArray(new Class<?>[classes.size()]);
+    }
+
+    /**
+     * Returns classes that could not be instrumented, the JVM silently ignores transformer errors.
+     */
+    public List<String> getFailures() {
+        return new ArrayList<>(failures);
+    }
+
+    @Override
+    public byte[] transform(
+            ClassLoader loader,
+            String className,
+            Class<?> classBeingRedefined,
+            ProtectionDomain protectionDomain,
+            byte[] classfileBuffer) {
+        if (loader != null) {
+            return null; // all hooked classes are loaded by the bootstrap class loader
+        }
+        List<Hook> classHooks = hooks.get(className);
+        if (classHooks == null) {
+            return null;
+        }
+        try {
+            return instrument(classfileBuffer, classHooks);
+        } catch (RuntimeException | LinkageError e) {
+            failures.add(className + ": " + e);
+            return null;
+        }
+    }
+
+    static byte[] instrument(byte[] bytes, List<Hook> hooks) {
+        ClassReader reader = new ClassReader(bytes);
+        // hooks do not introduce branches, existing stack map frames remain valid
+        ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+        reader.accept(
+                new ClassVisitor(Opcodes.ASM9, writer) {
+                    @Override
+                    public MethodVisitor visitMethod(
+                            int access, String name, String desc, String signature, String[] exceptions) {
+                        MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
+                        for (Hook hook : hooks) {
+                            if (hook.name.equals(name) && hook.desc.equals(desc)) {
+                                mv = new HookMethodVisitor(mv, hook);
+                            }
+                        }
+                        return mv;
+                    }
+                },
+                0);
+        return writer.toByteArray();
+    }
+
+    private static class HookMethodVisitor extends MethodVisitor {
+
+        private final Hook hook;
+
+        public HookMethodVisitor(MethodVisitor mv, Hook hook) {
+            super(Opcodes.ASM9, mv);
+            this.hook = hook;
+        }
+
+        @Override
+        public void visitCode() {
+            super.visitCode();
+            // constructors call the hook before super(), which is fine as long as "this" is not used
+            for (int slot : hook.slots) {
+                super.visitVarInsn(Opcodes.ALOAD, slot);
+            }
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, HOOKS, hook.hookName, hook.hookDesc, false);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package io.takari.builder.enforcer.agent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.tools.attach.VirtualMachine;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileAccessAgentTest {
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @BeforeClass
+    public static void loadAgent() throws Exception {
+        // the agent classes are already on test classpath, the jar only provides the manifest
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue("Agent-Class", FileAccessAgent.class.getName());
+        attributes.putValue("Can-Redefine-Classes", "true");
+        attributes.putValue("Can-Retransform-Classes", "true");
+        File jar = File.createTempFile("agent", ".jar");
+        jar.deleteOnExit();
+        new JarOutputStream(new FileOutputStream(jar), manifest).close();
+
+        VirtualMachine vm =
+                VirtualMachine.attach(Long.toString(ProcessHandle.current().pid()));
+        try {
+            vm.loadAgent(jar.getAbsolutePath());
+        } finally {
+            vm.detach();
+        }
+    }
+
+    private static Consumer<String> recorder(Path dir, List<String> paths) {
+        String prefix = dir.toString();
+        return path -> {
+            if (path.startsWith(prefix)) {
+                paths.add(path.substring(prefix.length() + 1));
+            }
+        };
+    }
+
+    @Test
+    public void testHooks() throws Exception {
+        Path dir = temp.getRoot().toPath();
+        Files.write(dir.resolve("input"), new byte[] {1});
+
+        List<String> reads = new CopyOnWriteArrayList<>();
+        List<String> writes = new CopyOnWriteArrayList<>();
+
+        assertThat(FileAccessAgent.isInstalled()).isTrue();
+        FileAccessHooks.setListeners(recorder(dir, reads), recorder(dir, writes));
+        try {
+            new FileInputStream(dir.resolve("input").toFile()).close();
+            new FileOutputStream(dir.resolve("output").toString()).close();
+            new RandomAccessFile(dir.resolve("random").toFile(), "rw").close();
+            dir.resolve("dir").toFile().mkdir();
+            Files.readAllBytes(dir.resolve("input"));
+            Files.write(dir.resolve("nio-output"), new byte[] {1});
+            FileChannel.open(dir.resolve("input"), StandardOpenOption.READ).close();
+            Files.copy(dir.resolve("input"), dir.resolve("copy"));
+            Files.delete(dir.resolve("copy"));
+        } finally {
+            FileAccessHooks.setListeners(null, null);
+        }
+
+        assertThat(reads).contains("input", "random");
+        assertThat(writes).contains("output", "random", "dir", "nio-output", "copy");
+        assertThat(writes).doesNotContain("input");
+    }
+}
@@ -7,19 +7,50 @@
  */
 package io.takari.builder.enforcer;
 
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+/**
+ * Remembers outcome of file read and write checks performed by the wrapped {@link Policy}.
+ *
+ * Cache keys are raw (i.e. not normalized) paths as provided by the JVM, so repeated checks of the
+ * same path skip both path normalization and policy evaluation. Both positive (the check passed or
+ * the policy recorded the violation) and negative (the policy threw {@link SecurityException})
+ * outcomes are cached. The cache is bounded, see {@link SegmentedLruCache}.
+ */
 class CachingPolicy {
 
+    // roughly 2M path characters for read checks and the same for write checks
+    static final long DEFAULT_MAX_WEIGHT = 2 * 1024 * 1024;
+
+    private static final class Decision {
+
+        static final Decision ALLOW = new Decision(null);
+
+        final String denied;
+
+        private Decision(String denied) {
+            this.denied = denied;
+        }
+
+        static Decision deny(SecurityException e) {
+            return new Decision(e.getMessage() != null ? e.getMessage() : "");
+        }
+    }
+
     final Policy policy;
 
-    private final Set<String> readCache = ConcurrentHashMap.newKeySet();
+    private final SegmentedLruCache<Decision> readCache;
 
-    private final Set<String> writeCache = ConcurrentHashMap.newKeySet();
+    private final SegmentedLruCache<Decision> writeCache;
 
     public CachingPolicy(Policy policy) {
+        this(policy, DEFAULT_MAX_WEIGHT);
+    }
+
+    CachingPolicy(Policy policy, long maxWeight) {
         this.policy = policy;
+        this.readCache = new SegmentedLruCache<>(maxWeight);
+        this.writeCache = new SegmentedLruCache<>(maxWeight);
     }
 
     public void checkSocketPermission() {
@@ -35,14 +66,42 @@ class CachingPolicy {
     }
 
     public void checkRead(String file) {
-        if (readCache.add(file)) {
-            policy.checkRead(file);
-        }
+        check(readCache, file, policy::checkRead);
     }
 
     public void checkWrite(String file) {
-        if (writeCache.add(file)) {
-            policy.checkWrite(file);
+        check(writeCache, file, policy::checkWrite);
+    }
+
+    private static void check(SegmentedLruCache<Decision> cache, String file, Consumer<String> check) {
+        Decision decision = cache.get(file);
+        if (decision == null) {
+            try {
+                check.accept(file);
+                decision = Decision.ALLOW;
+            } catch (SecurityException e) {
+                cache.put(file, Decision.deny(e));
+                throw e;
+            }
+            cache.put(file, decision);
         }
+        if (decision.denied != null) {
+            throw new SecurityException(decision.denied);
+        }
+    }
+
+    /**
+     * Returns human-readable cache hit rate statistics.
+     */
+    public String getStatistics() {
+        return String.format("read cache %s, write cache %s", getStatistics(readCache), getStatistics(writeCache));
+    }
+
+    private static String getStatistics(SegmentedLruCache<?> cache) {
+        long hits = cache.hitCount();
+        long total = hits + cache.missCount();
+        return String.format(
+                "%d/%d hits (%.1f%%), %d evictions, weight %d",
+                hits, total, total > 0 ? hits * 100.0 / total : 0.0, cache.evictionCount(), cache.weight());
     }
 }
@@ -10,6 +10,10 @@ package io.takari.builder.enforcer;
 import io.takari.builder.enforcer.SimpleFilePermission.FileReadPermission;
 import io.takari.builder.enforcer.SimpleFilePermission.FileWritePermission;
 import java.io.FilePermission;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
 import java.net.SocketPermission;
 import java.security.AllPermission;
 import java.security.CodeSource;
@@ -19,14 +23,21 @@ import java.security.Policy;
 import java.security.ProtectionDomain;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.PropertyPermission;
+import java.util.Set;
 import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class ComposableSecurityManagerPolicy extends java.security.Policy {
 
+    private static final Logger log = LoggerFactory.getLogger(ComposableSecurityManagerPolicy.class);
+
     /**
      * So we can set the jvm back to the state we found it.
      */
@@ -43,9 +54,15 @@ public class ComposableSecurityManagerPolicy extends java.security.Policy {
     private volatile List<CachingPolicy> defaultPolicy;
 
     /**
-     * the set of policies with configured contexts that will be used in the default case.
+     * protection domains and class loaders trusted to perform any action, compared by identity.
+     * copy-on-write, the set is never modified after it is published.
+     */
+    private volatile Set<Object> trusted = Collections.emptySet();
+
+    /**
+     * Maven core class visible to build extension and plugin realms, identifies Maven core realm.
      */
-    private final ThreadLocal<Map<Object, CachingPolicy>> contextPolicies = new ThreadLocal<>();
+    static final String MAVEN_CORE_CLASS = "org.apache.maven.execution.MavenSession";
 
     /**
      * The policy, so that it is accessible without calling Policy.getPolicy().
@@ -53,9 +70,105 @@ public class ComposableSecurityManagerPolicy extends java.security.Policy {
     private static volatile ComposableSecurityManagerPolicy policy;
 
     /**
-     * a little trick to ensure our code can do privileged actions without endlessly calling itself
+     * per-thread enforcement state, single thread-local lookup per permission check.
+     */
+    private static final class ThreadState {
+
+        /**
+         * a little trick to ensure our code can do privileged actions without endlessly calling itself
+         */
+        boolean privileged;
+
+        /**
+         * the set of policies with configured contexts that will be used in the default case.
+         * immutable, registration replaces the map, which allows sharing the map among threads.
+         */
+        Map<Object, CachingPolicy> contextPolicies;
+
+        /**
+         * {@code true} if {@link #contextPolicies} were inherited from the parent thread and it is not
+         * known yet if this thread is a virtual thread.
+         */
+        boolean inherited;
+    }
+
+    /**
+     * Context policies are inherited by virtual threads, so builders can use virtual thread
+     * executors and structured concurrency without explicit {@link PolicyContextPreserver} wrapping.
+     * Platform threads do not inherit context policies, they are commonly pooled and would retain
+     * stale builder context long after the builder completed.
      */
-    private final ThreadLocal<Boolean> privileged = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    private final ThreadLocal<ThreadState> state = new InheritableThreadLocal<ThreadState>() {
+        @Override
+        protected ThreadState initialValue() {
+            return new ThreadState();
+        }
+
+        @Override
+        protected ThreadState childValue(ThreadState parent) {
+            // called on the parent thread, the child thread type is resolved on first access
+            ThreadState child = new ThreadState();
+            if (parent.contextPolicies != null) {
+                child.contextPolicies = parent.contextPolicies;
+                child.inherited = true;
+            }
+            return child;
+        }
+    };
+
+    /**
+     * {@code Thread#isVirtual()}, {@code null} on JDK versions without virtual threads.
+     */
+    private static final MethodHandle isVirtual = getIsVirtual();
+
+    private static MethodHandle getIsVirtual() {
+        try {
+            return MethodHandles.publicLookup()
+                    .findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static boolean isVirtualThread() {
+        if (isVirtual == null) {
+            return false;
+        }
+        try {
+            return (boolean) isVirtual.invokeExact(Thread.currentThread());
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private ThreadState state() {
+        ThreadState state = this.state.get();
+        if (state.inherited) {
+            state.inherited = false;
+            if (!isVirtualThread()) {
+                state.contextPolicies = null;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * System property that selects takari-builder-security-agent file access tracking backend.
+     */
+    public static final String PROPERTY_FILE_ACCESS_AGENT = "takari.builder.enforcer.agent";
+
+    /**
+     * {@code FileAccessHooks#setListeners} of takari-builder-security-agent, {@code null} if the agent
+     * is not loaded. The hooks class is loaded by the bootstrap class loader and is looked up by name
+     * because this class can be loaded by any number of class loaders.
+     */
+    private static final Method setFileAccessListeners = getFileAccessListenersSetter();
+
+    /**
+     * {@code true} if file access is reported by takari-builder-security-agent instead of system
+     * SecurityManager.
+     */
+    private boolean fileAccessAgent;
 
     private static ComposableSecurityManagerPolicy setPolicy(SecurityManager originalManager) {
         Policy originalPolicy = Policy.getPolicy();
@@ -70,6 +183,12 @@ public class ComposableSecurityManagerPolicy extends java.security.Policy {
     public ComposableSecurityManagerPolicy(SecurityManager originalManager, java.security.Policy originalPolicy) {
         this.originalManager = originalManager;
         this.originalPolicy = originalPolicy;
+        trust(ComposableSecurityManagerPolicy.class.getProtectionDomain());
+        // maven core realm, most notably class loading of plugin realms
+        trustClassLoaderOf(MAVEN_CORE_CLASS);
+        // thread state classes are loaded lazily, load them before permission checks can call them
+        state();
+        isVirtualThread();
     }
 
     /**
@@ -82,23 +201,36 @@ public class ComposableSecurityManagerPolicy extends java.security.Policy {
      */
     @Override
     public boolean implies(ProtectionDomain protectionDomain, Permission permission) {
-        if (privileged.get() == Boolean.TRUE) {
+        String name = permission.getName();
+        boolean restricted = "setSecurityManager".equals(name) || "setPolicy".equals(name);
+        if (!restricted && isTrusted(protectionDomain)) {
+            return true;
+        }
+        ThreadState state = state();
+        if (state.privileged) {
             return true;
         }
-        if ("setSecurityManager".equals(permission.getName()) || "setPolicy".equals(permission.getName())) {
+        if (restricted) {
             return false; // only our code can set system security manager and policy
         }
         try {
-            privileged.set(Boolean.TRUE);
-            return enforce(permission); // legacy/unmanaged runtime support
+            state.privileged = true;
+            return enforce(policies(state), permission); // legacy/unmanaged runtime support
         } finally {
-            privileged.set(Boolean.FALSE);
+            state.privileged = false;
+        }
+    }
+
+    private boolean isTrusted(ProtectionDomain protectionDomain) {
+        if (protectionDomain == null) {
+            return false;
         }
+        Set<Object> trusted = this.trusted;
+        return trusted.contains(protectionDomain) || trusted.contains(protectionDomain.getClassLoader());
     }
 
-    private boolean enforce(Permission permission) {
+    private boolean enforce(Collection<CachingPolicy> policies, Permission permission) {
         // ignore updates to the collection past this point for this invocation of implies().
-        Collection<CachingPolicy> policies = policies();
         /*
          * this prevents the initial load of all the classes needed to do the work of setting up the
          * security manager from overflowing the buffer. each class load would have quite a few more
@@ -145,6 +277,27 @@ public class ComposableSecurityManagerPolicy extends java.security.Policy {
         policies.forEach(p -> p.checkRead(fileName));
     }
 
+    private void checkFileAccess(String fileName, boolean write) {
+        ThreadState state = state();
+        if (state.privileged) {
+            return;
+        }
+        Collection<CachingPolicy> policies = policies(state);
+        if (policies.isEmpty()) {
+            return;
+        }
+        try {
+            state.privileged = true;
+            if (write) {
+                checkWrite(policies, fileName);
+            } else {
+                checkRead(policies, fileName);
+            }
+        } finally {
+            state.privileged = false;
+        }
+    }
+
     public static final PermissionCollection allPermissions;
 
     static {
@@ -155,7 +308,6 @@ public class ComposableSecurityManagerPolicy extends java.security.Policy {
 
     @Override
     public PermissionCollection getPermissions(ProtectionDomain domain) {
-        System.out.println("Getting permissions domain :" + domain.getCodeSource());
         // TODO: when we can determine maven/vs non maven managed classloaders we can return
         // allpermissions here.
         return Policy.UNSUPPORTED_EMPTY_COLLECTION;
@@ -163,7 +315,6 @@ public class ComposableSecurityManagerPolicy extends java.security.Policy {
 
     @Override
     public PermissionCollection getPermissions(CodeSource domain) {
-        System.out.println("Getting permissions codesource :" + domain);
         return Policy.UNSUPPORTED_EMPTY_COLLECTION;
     }
 
@@ -178,8 +329,8 @@ public class ComposableSecurityManagerPolicy extends java.security.Policy {
         return policy;
     }
 
-    private Collection<CachingPolicy> policies() {
-        Map<Object, CachingPolicy> policies = contextPolicies.get();
+    private Collection<CachingPolicy> policies(ThreadState state) {
+        Map<Object, CachingPolicy> policies = state.contextPolicies;
         if (policies != null) {
             return policies.values();
         }
@@ -189,21 +340,21 @@ public class ComposableSecurityManagerPolicy extends java.security.Policy {
         return Collections.emptyList();
     }
 
+    /**
+     * Returns immutable snapshot of the current thread context policies, or {@code null}.
+     */
     static Map<Object, CachingPolicy> getContextPolicies() {
-        Map<Object, CachingPolicy> policies = null;
-        if (policy != null) {
-            policies = policy.contextPolicies.get();
-        }
-        return policies != null ? new LinkedHashMap<>(policies) : null;
+        ComposableSecurityManagerPolicy policy = ComposableSecurityManagerPolicy.policy;
+        return policy != null ? policy.state().contextPolicies : null;
     }
 
+    /**
+     * Sets current thread context policies to the snapshot returned by {@link #getContextPolicies()}.
+     */
     static void setContextPolicies(Map<Object, CachingPolicy> policies) {
+        ComposableSecurityManagerPolicy policy = ComposableSecurityManagerPolicy.policy;
         if (policy != null) {
-            if (policies != null && !policies.isEmpty()) {
-                policy.contextPolicies.set(new LinkedHashMap<>(policies));
-            } else {
-                policy.contextPolicies.set(null);
-            }
+            policy.state().contextPolicies = policies != null && !policies.isEmpty() ? policies : null;
         }
     }
 
@@ -212,37 +363,39 @@ public class ComposableSecurityManagerPolicy extends java.security.Policy {
     //
 
     void registerPolicy(Object key, io.takari.builder.enforcer.Policy policy) {
-        Map<Object, CachingPolicy> policies = contextPolicies.get();
+        ThreadState state = state();
+        Map<Object, CachingPolicy> policies = state.contextPolicies;
 
         if (policies != null && policies.containsKey(key)) {
             throw new IllegalArgumentException("Policy has already been registered.");
         }
 
-        if (policies == null) {
-            policies = new LinkedHashMap<>();
-            contextPolicies.set(policies);
-        }
-
+        policies = policies != null ? new LinkedHashMap<>(policies) : new LinkedHashMap<>();
         policies.put(key, new CachingPolicy(policy));
+        state.contextPolicies = Collections.unmodifiableMap(policies);
     }
 
     io.takari.builder.enforcer.Policy unregisterPolicy(Object key) {
-        Map<Object, CachingPolicy> policies = contextPolicies.get();
+        ThreadState state = state();
+        Map<Object, CachingPolicy> policies = state.contextPolicies;
 
         if (policies == null || !policies.containsKey(key)) {
             throw new IllegalArgumentException("Policy has not been registered.");
         }
 
+        policies = new LinkedHashMap<>(policies);
         CachingPolicy cachingPolicy = policies.remove(key);
-        if (policies.size() == 0) {
-            contextPolicies.set(null);
+        state.contextPolicies = !policies.isEmpty() ? Collections.unmodifiableMap(policies) : null;
+
+        if (cachingPolicy != null && log.isDebugEnabled()) {
+            log.debug("Policy {} {}", cachingPolicy.policy, cachingPolicy.getStatistics());
         }
 
         return cachingPolicy != null ? cachingPolicy.policy : null;
     }
 
     io.takari.builder.enforcer.Policy getPolicy(Object key) {
-        Map<Object, CachingPolicy> policies = contextPolicies.get();
+        Map<Object, CachingPolicy> policies = state().contextPolicies;
         if (policies == null) {
             return null;
         }
@@ -250,6 +403,35 @@ public class ComposableSecurityManagerPolicy extends java.security.Policy {
         return cachingPolicy != null ? cachingPolicy.policy : null;
     }
 
+    //
+    // Trusted code
+    //
+
+    synchronized void trust(Object domainOrClassLoader) {
+        if (domainOrClassLoader == null || trusted.contains(domainOrClassLoader)) {
+            return;
+        }
+        Set<Object> trusted = Collections.newSetFromMap(new IdentityHashMap<>());
+        trusted.addAll(this.trusted);
+        trusted.add(domainOrClassLoader);
+        this.trusted = trusted;
+    }
+
+    /**
+     * Exempts code of the class loader that defines the named class from enforcement, if the class is
+     * visible to this class. Use for code that is not expected to access files, properties, etc on
+     * behalf of builders, like Maven core. Note that builder code is still checked when trusted code is
+     * on the same call stack.
+     */
+    void trustClassLoaderOf(String className) {
+        try {
+            trust(Class.forName(className, false, ComposableSecurityManagerPolicy.class.getClassLoader())
+                    .getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            // not running in maven
+        }
+    }
+
     public static void setDefaultPolicy(io.takari.builder.enforcer.Policy policy) {
         ComposableSecurityManagerPolicy manager = get();
 
@@ -272,7 +454,23 @@ public class ComposableSecurityManagerPolicy extends java.security.Policy {
         return get().getPolicy(key);
     }
 
+    /**
+     * Installs system-wide enforcement using system SecurityManager. With
+     * {@code -Dtakari.builder.enforcer.agent=true}, file access is tracked by
+     * takari-builder-security-agent instead, and system property, exec and socket access is neither
+     * tracked nor enforced.
+     */
     public static ComposableSecurityManagerPolicy setSystemSecurityManager() {
+        if (Boolean.getBoolean(PROPERTY_FILE_ACCESS_AGENT)) {
+            if (setFileAccessListeners == null) {
+                throw new IllegalStateException("-D" + PROPERTY_FILE_ACCESS_AGENT
+                        + "=true requires -javaagent:takari-builder-security-agent.jar");
+            }
+            log.warn("File access is tracked by takari-builder-security-agent,"
+                    + " system property, exec and socket access is not tracked or enforced");
+            return setFileAccessAgentPolicy();
+        }
+
         SecurityManager originalManager = System.getSecurityManager();
         if (originalManager instanceof ExecCommandPassingSecurityManager) {
             throw new IllegalStateException("System SecurityManager has already been set.");
@@ -297,20 +495,70 @@ public class ComposableSecurityManagerPolicy extends java.security.Policy {
         ForkJoinPool.commonPool();
 
         ComposableSecurityManagerPolicy newPolicy = ComposableSecurityManagerPolicy.setPolicy(originalManager);
-        System.setSecurityManager(new ExecCommandPassingSecurityManager());
+        try {
+            System.setSecurityManager(new ExecCommandPassingSecurityManager());
+        } catch (UnsupportedOperationException e) {
+            // JDK 18+ without -Djava.security.manager=allow
+            Policy.setPolicy(newPolicy.originalPolicy);
+            policy = null;
+            throw new IllegalStateException(
+                    "Could not install system SecurityManager, use -Djava.security.manager=allow or"
+                            + " -javaagent:takari-builder-security-agent.jar -D" + PROPERTY_FILE_ACCESS_AGENT
+                            + "=true",
+                    e);
+        }
         return newPolicy;
     }
 
     public static ComposableSecurityManagerPolicy removeSystemSecurityManager() {
         ComposableSecurityManagerPolicy manager = get();
+        if (manager.fileAccessAgent) {
+            setFileAccessListeners(null, null);
+            policy = null;
+            return manager;
+        }
+        ThreadState state = manager.state();
         try {
-            manager.privileged.set(Boolean.TRUE);
+            state.privileged = true;
             System.setSecurityManager(manager.originalManager);
             Policy.setPolicy(manager.originalPolicy);
             policy = null;
         } finally {
-            manager.privileged.set(Boolean.FALSE);
+            state.privileged = false;
         }
         return manager;
     }
+
+    //
+    // takari-builder-security-agent backend
+    //
+
+    private static synchronized ComposableSecurityManagerPolicy setFileAccessAgentPolicy() {
+        if (policy != null) {
+            throw new IllegalStateException("Composable security manager policy has already been set.");
+        }
+        ComposableSecurityManagerPolicy newPolicy = new ComposableSecurityManagerPolicy(null, null);
+        newPolicy.fileAccessAgent = true;
+        policy = newPolicy;
+        setFileAccessListeners((Consumer<String>) file -> newPolicy.checkFileAccess(file, false), (Consumer<String>)
+                file -> newPolicy.checkFileAccess(file, true));
+        return newPolicy;
+    }
+
+    private static Method getFileAccessListenersSetter() {
+        try {
+            Class<?> hooks = Class.forName("io.takari.builder.enforcer.agent.FileAccessHooks", true, null);
+            return hooks.getMethod("setListeners", Consumer.class, Consumer.class);
+        } catch (ReflectiveOperationException e) {
+            return null; // the agent is not loaded
+        }
+    }
+
+    private static void setFileAccessListeners(Consumer<String> read, Consumer<String> write) {
+        try {
+            setFileAccessListeners.invoke(null, read, write);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not setup file access agent", e);
+        }
+    }
 }
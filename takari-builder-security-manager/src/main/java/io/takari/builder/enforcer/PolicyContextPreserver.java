@@ -10,11 +10,14 @@ package io.takari.builder.enforcer;
 import static io.takari.builder.enforcer.ComposableSecurityManagerPolicy.getContextPolicies;
 import static io.takari.builder.enforcer.ComposableSecurityManagerPolicy.setContextPolicies;
 
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
 import org.slf4j.MDC;
 
 /**
@@ -25,6 +28,10 @@ import org.slf4j.MDC;
  * for parallel streams or work to be passed to an {@link java.util.concurrent.Executor} or a newly
  * constructed {@link java.lang.Thread}.
  *
+ * Policies context is an immutable snapshot shared by reference by all wrapped tasks. For large
+ * numbers of small tasks, like parallel streams, use {@link #newForkJoinPool(int)} or
+ * {@link #newThreadFactory()}, which install the context once per worker thread instead of once per
+ * task.
  */
 public class PolicyContextPreserver {
 
@@ -53,14 +60,18 @@ public class PolicyContextPreserver {
     private static final List<CurrentContextAccessor> accessors =
             new CopyOnWriteArrayList<>(new CurrentContextAccessor[] {new PolicyPreserver(), new SLF4JPreserver()});
 
-    private static IdentityHashMap<CurrentContextAccessor, Object> preserve() {
-        IdentityHashMap<CurrentContextAccessor, Object> context = new IdentityHashMap<>();
-        accessors.forEach(d -> context.put(d, d.getCurrentContext()));
+    private static Object[] preserve(CurrentContextAccessor[] accessors) {
+        Object[] context = new Object[accessors.length];
+        for (int i = 0; i < accessors.length; i++) {
+            context[i] = accessors[i].getCurrentContext();
+        }
         return context;
     }
 
-    private static void restore(IdentityHashMap<CurrentContextAccessor, Object> context) {
-        context.forEach((p, v) -> p.setCurrentContext(v));
+    private static void restore(CurrentContextAccessor[] accessors, Object[] context) {
+        for (int i = 0; i < accessors.length; i++) {
+            accessors[i].setCurrentContext(context[i]);
+        }
     }
 
     private static class SLF4JPreserver implements CurrentContextAccessor {
@@ -95,10 +106,14 @@ public class PolicyContextPreserver {
         }
     }
 
-    private final IdentityHashMap<CurrentContextAccessor, Object> preservedContext;
+    // accessors registered after this preserver was created are ignored
+    private final CurrentContextAccessor[] preservedAccessors;
+
+    private final Object[] preservedContext;
 
     public PolicyContextPreserver() {
-        this.preservedContext = preserve();
+        this.preservedAccessors = accessors.toArray(new CurrentContextAccessor[0]);
+        this.preservedContext = preserve(preservedAccessors);
     }
 
     @SuppressWarnings("serial")
@@ -118,12 +133,12 @@ public class PolicyContextPreserver {
         return new Runnable() {
             @Override
             public void run() {
-                IdentityHashMap<CurrentContextAccessor, Object> threadContext = preserve();
+                Object[] threadContext = preserve(preservedAccessors);
                 try {
-                    restore(preservedContext);
+                    restore(preservedAccessors, preservedContext);
                     runnable.run();
                 } finally {
-                    restore(threadContext);
+                    restore(preservedAccessors, threadContext);
                 }
             }
         };
@@ -133,9 +148,9 @@ public class PolicyContextPreserver {
         return new WrappedCallable<T>() {
             @Override
             public T call() throws WrappedException {
-                IdentityHashMap<CurrentContextAccessor, Object> threadContext = preserve();
+                Object[] threadContext = preserve(preservedAccessors);
                 try {
-                    restore(preservedContext);
+                    restore(preservedAccessors, preservedContext);
                     return callable.call();
                 } catch (RuntimeException e) {
                     throw e;
@@ -144,9 +159,42 @@ public class PolicyContextPreserver {
                             + e.getClass().getName();
                     throw new WrappedException(message, e);
                 } finally {
-                    restore(threadContext);
+                    restore(preservedAccessors, threadContext);
                 }
             }
         };
     }
+
+    /**
+     * Returns thread factory that installs the preserved context once, when the new thread starts.
+     * Use with {@link java.util.concurrent.ThreadPoolExecutor} to run tasks without per-task context
+     * propagation overhead. The executor must be shutdown before the policies context is closed.
+     */
+    public ThreadFactory newThreadFactory() {
+        ThreadFactory threadFactory = Executors.defaultThreadFactory();
+        return runnable -> threadFactory.newThread(wrap(runnable));
+    }
+
+    /**
+     * Returns new {@link ForkJoinPool} with the preserved context installed once per worker thread.
+     * Tasks submitted to the pool, including parallel streams started by such tasks, run without
+     * per-task context propagation overhead. The pool must be shutdown before the policies context
+     * is closed.
+     */
+    public ForkJoinPool newForkJoinPool(int parallelism) {
+        return new ForkJoinPool(parallelism, ContextWorkerThread::new, null, false);
+    }
+
+    private class ContextWorkerThread extends ForkJoinWorkerThread {
+
+        protected ContextWorkerThread(ForkJoinPool pool) {
+            super(pool);
+        }
+
+        @Override
+        protected void onStart() {
+            super.onStart();
+            restore(preservedAccessors, preservedContext);
+        }
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.enforcer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent cache keyed by file path strings and bounded by total weight of the keys.
+ *
+ * Each lock stripe implements segmented LRU eviction policy. New entries are added to "probation"
+ * segment and are promoted to "protected" segment on first cache hit. Entries demoted from
+ * protected segment get another chance in probation segment, and only probation entries are
+ * evicted, unless protected segment is the only one left. This keeps paths checked repeatedly (e.g.
+ * jars on builder classpath) in the cache while one-off paths (e.g. files of a directory walk) are
+ * evicted first.
+ */
+class SegmentedLruCache<V> {
+
+    private static final int STRIPES = 16;
+
+    // approximate per-entry overhead, expressed in key characters
+    private static final int ENTRY_WEIGHT = 32;
+
+    // share of stripe weight reserved for protected segment
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final Stripe<V>[] stripes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public SegmentedLruCache(long maxWeight) {
+        this.stripes = new Stripe[STRIPES];
+        long stripeWeight = Math.max(maxWeight / STRIPES, 1);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe<>(stripeWeight);
+        }
+    }
+
+    public V get(String key) {
+        V value = stripe(key).get(key);
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    public void put(String key, V value) {
+        int evicted = stripe(key).put(key, value);
+        if (evicted > 0) {
+            evictions.add(evicted);
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public long weight() {
+        long weight = 0;
+        for (Stripe<V> stripe : stripes) {
+            weight += stripe.totalWeight();
+        }
+        return weight;
+    }
+
+    private Stripe<V> stripe(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    static long weight(String key) {
+        return key.length() + ENTRY_WEIGHT;
+    }
+
+    private static class Stripe<V> {
+
+        private final long maxWeight;
+        private final long protectedMaxWeight;
+
+        // access-ordered, i.e. eldest entry is the least recently used
+        private final LinkedHashMap<String, V> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, V> protect = new LinkedHashMap<>(16, 0.75f, true);
+
+        private long probationWeight;
+        private long protectedWeight;
+
+        public Stripe(long maxWeight) {
+            this.maxWeight = maxWeight;
+            this.protectedMaxWeight = maxWeight * PROTECTED_PERCENT / 100;
+        }
+
+        public synchronized V get(String key) {
+            V value = protect.get(key);
+            if (value != null) {
+                return value;
+            }
+            value = probation.remove(key);
+            if (value != null) {
+                long weight = weight(key);
+                probationWeight -= weight;
+                protect.put(key, value);
+                protectedWeight += weight;
+                while (protectedWeight > protectedMaxWeight && protect.size() > 1) {
+                    Map.Entry<String, V> demoted = removeEldest(protect);
+                    protectedWeight -= weight(demoted.getKey());
+                    probation.put(demoted.getKey(), demoted.getValue());
+                    probationWeight += weight(demoted.getKey());
+                }
+            }
+            return value;
+        }
+
+        public synchronized int put(String key, V value) {
+            if (protect.containsKey(key)) {
+                protect.put(key, value);
+                return 0;
+            }
+            if (probation.put(key, value) == null) {
+                probationWeight += weight(key);
+            }
+            int evicted = 0;
+            while (probationWeight + protectedWeight > maxWeight) {
+                if (probation.size() > 1 || (probation.size() == 1 && protect.isEmpty())) {
+                    probationWeight -= weight(removeEldest(probation).getKey());
+                } else if (!protect.isEmpty()) {
+                    protectedWeight -= weight(removeEldest(protect).getKey());
+                } else {
+                    break;
+                }
+                evicted++;
+            }
+            return evicted;
+        }
+
+        public synchronized long totalWeight() {
+            return probationWeight + protectedWeight;
+        }
+
+        private static <V> Map.Entry<String, V> removeEldest(LinkedHashMap<String, V> map) {
+            Iterator<Map.Entry<String, V>> iterator = map.entrySet().iterator();
+            Map.Entry<String, V> eldest = iterator.next();
+            iterator.remove();
+            return eldest;
+        }
+    }
+}
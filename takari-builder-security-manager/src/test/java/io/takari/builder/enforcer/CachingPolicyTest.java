@@ -0,0 +1,90 @@
+package io.takari.builder.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class CachingPolicyTest {
+
+    private static class RecordingPolicy extends EmptyPolicy {
+        final List<String> reads = new ArrayList<>();
+
+        @Override
+        public void checkRead(String file) {
+            reads.add(file);
+            if (file.startsWith("/denied")) {
+                throw new SecurityException("denied " + file);
+            }
+        }
+    }
+
+    @Test
+    public void testPositiveDecision() {
+        RecordingPolicy policy = new RecordingPolicy();
+        CachingPolicy testee = new CachingPolicy(policy);
+
+        testee.checkRead("/allowed");
+        testee.checkRead("/allowed");
+
+        assertEquals(1, policy.reads.size());
+    }
+
+    @Test
+    public void testNegativeDecision() {
+        RecordingPolicy policy = new RecordingPolicy();
+        CachingPolicy testee = new CachingPolicy(policy);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                testee.checkRead("/denied");
+                fail();
+            } catch (SecurityException expected) {
+                assertEquals("denied /denied", expected.getMessage());
+            }
+        }
+
+        assertEquals(1, policy.reads.size());
+    }
+
+    @Test
+    public void testBounded() {
+        RecordingPolicy policy = new RecordingPolicy();
+        long maxWeight = 16 * 10 * SegmentedLruCache.weight("/file/00000");
+        CachingPolicy testee = new CachingPolicy(policy, maxWeight);
+
+        for (int i = 0; i < 10000; i++) {
+            testee.checkRead(String.format("/file/%05d", i));
+        }
+        policy.reads.clear();
+        testee.checkRead("/file/00000");
+
+        assertEquals(1, policy.reads.size());
+        assertTrue(testee.getStatistics(), testee.getStatistics().contains("evictions"));
+    }
+
+    @Test
+    public void testSegmentedEviction() {
+        String hot = "/hot";
+        SegmentedLruCache<String> cache = new SegmentedLruCache<>(16 * 4 * SegmentedLruCache.weight(hot));
+
+        cache.put(hot, hot);
+        assertNotNull(cache.get(hot)); // promoted to protected segment
+
+        for (int i = 0; i < 10000; i++) {
+            String cold = String.format("/%03d", i % 1000);
+            cache.put(cold, cold);
+        }
+
+        assertNotNull(cache.get(hot));
+        assertNull(cache.get("/cold"));
+        assertTrue(cache.evictionCount() > 0);
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+}
@@ -1,6 +1,9 @@
 package io.takari.builder.enforcer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.FilePermission;
@@ -8,6 +11,7 @@ import java.net.SocketPermission;
 import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.security.ProtectionDomain;
 import java.util.Arrays;
 import java.util.List;
 import java.util.PropertyPermission;
@@ -15,6 +19,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import org.junit.Test;
 
@@ -37,6 +42,22 @@ public class ComposableSecurityManagerPolicyTest {
         }
     }
 
+    @Test
+    public void testFileAccessAgentRequired() throws Exception {
+        // explicitly selected agent backend must be available, enforcement is not silently reduced
+        System.setProperty(ComposableSecurityManagerPolicy.PROPERTY_FILE_ACCESS_AGENT, "true");
+        try {
+            ComposableSecurityManagerPolicy.setSystemSecurityManager();
+            ComposableSecurityManagerPolicy.removeSystemSecurityManager();
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected.getMessage()).contains("takari-builder-security-agent");
+        } finally {
+            System.clearProperty(ComposableSecurityManagerPolicy.PROPERTY_FILE_ACCESS_AGENT);
+        }
+        assertNull(System.getSecurityManager());
+    }
+
     private Callable<Exception> getWork(String property) {
         return () -> {
             Exception out = null;
@@ -215,4 +236,84 @@ public class ComposableSecurityManagerPolicyTest {
             fail();
         }
     }
+
+    @Test
+    public void testTrustedDomain() throws Exception {
+        Policy policy = new EmptyPolicy() {
+            @Override
+            public void checkRead(String file) {
+                throw new SecurityException();
+            }
+        };
+
+        ComposableSecurityManagerPolicy testee = newPolicy(policy);
+        ProtectionDomain domain = this.getClass().getProtectionDomain();
+        testee.trust(domain);
+
+        assertTrue(testee.implies(domain, new FilePermission("1", "read")));
+        assertFalse(testee.implies(domain, new RuntimePermission("setSecurityManager")));
+
+        try {
+            ProtectionDomain other = new ProtectionDomain(domain.getCodeSource(), null);
+            testee.implies(other, new FilePermission("1", "read"));
+            fail();
+        } catch (SecurityException expected) {
+            // trusted domains are compared by identity
+        }
+    }
+
+    @Test
+    public void testTrustedClassLoader() throws Exception {
+        Policy policy = new EmptyPolicy() {
+            @Override
+            public void checkRead(String file) {
+                throw new SecurityException();
+            }
+        };
+
+        ComposableSecurityManagerPolicy testee = newPolicy(policy);
+        ProtectionDomain domain = new ProtectionDomain(
+                this.getClass().getProtectionDomain().getCodeSource(),
+                null,
+                this.getClass().getClassLoader(),
+                null);
+
+        // maven core is not on the test classpath
+        testee.trustClassLoaderOf(ComposableSecurityManagerPolicy.MAVEN_CORE_CLASS);
+        try {
+            testee.implies(domain, new FilePermission("1", "read"));
+            fail();
+        } catch (SecurityException expected) {
+            // the class loader is not trusted
+        }
+
+        testee.trustClassLoaderOf(this.getClass().getName());
+        assertTrue(testee.implies(domain, new FilePermission("1", "read")));
+        assertFalse(testee.implies(domain, new RuntimePermission("setPolicy")));
+    }
+
+    @Test
+    public void testPlatformThreadsDoNotInheritContext() throws Exception {
+        // platform threads are commonly pooled and must not retain builder context
+        ComposableSecurityManagerPolicy.setSystemSecurityManager();
+        try {
+            Object key = new Object();
+            Policy policy = new EmptyPolicy();
+            ComposableSecurityManagerPolicy.registerContextPolicy(key, policy);
+            try {
+                AtomicReference<Policy> childPolicy = new AtomicReference<>(policy);
+                Thread thread =
+                        new Thread(() -> childPolicy.set(ComposableSecurityManagerPolicy.getContextPolicy(key)));
+                thread.start();
+                thread.join();
+                assertNull(childPolicy.get());
+                assertThat(ComposableSecurityManagerPolicy.getContextPolicy(key))
+                        .isSameAs(policy);
+            } finally {
+                ComposableSecurityManagerPolicy.unregisterContextPolicy(key);
+            }
+        } finally {
+            ComposableSecurityManagerPolicy.removeSystemSecurityManager();
+        }
+    }
 }
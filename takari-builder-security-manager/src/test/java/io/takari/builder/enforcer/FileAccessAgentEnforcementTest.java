@@ -0,0 +1,111 @@
+package io.takari.builder.enforcer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Runs with {@code -javaagent:takari-builder-security-agent.jar}, see surefire configuration.
+ */
+public class FileAccessAgentEnforcementTest {
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Before
+    public void setSystemSecurityManager() {
+        System.setProperty(ComposableSecurityManagerPolicy.PROPERTY_FILE_ACCESS_AGENT, "true");
+        try {
+            ComposableSecurityManagerPolicy.setSystemSecurityManager();
+        } finally {
+            System.clearProperty(ComposableSecurityManagerPolicy.PROPERTY_FILE_ACCESS_AGENT);
+        }
+    }
+
+    @After
+    public void removeSystemSecurityManager() {
+        ComposableSecurityManagerPolicy.removeSystemSecurityManager();
+    }
+
+    @Test
+    public void testContextPolicy() throws Exception {
+        File denied = temp.newFile("denied");
+        File allowed = temp.newFile("allowed");
+        File output = new File(temp.getRoot(), "output");
+
+        assertThat(System.getSecurityManager()).isNull();
+
+        List<String> writes = new CopyOnWriteArrayList<>();
+        Policy policy = new EmptyPolicy() {
+            @Override
+            public void checkRead(String file) {
+                if (file.equals(denied.getPath())) {
+                    throw new SecurityException(file);
+                }
+            }
+
+            @Override
+            public void checkWrite(String file) {
+                writes.add(file);
+            }
+        };
+
+        ComposableSecurityManagerPolicy.registerContextPolicy("test", policy);
+        try {
+            new FileInputStream(allowed).close();
+            try {
+                new FileInputStream(denied).close();
+                fail();
+            } catch (SecurityException expected) {
+                // denied by the policy
+            }
+            try {
+                Files.readAllBytes(denied.toPath());
+                fail();
+            } catch (SecurityException expected) {
+                // java.nio.file access is enforced too
+            }
+            new FileOutputStream(output).close();
+        } finally {
+            ComposableSecurityManagerPolicy.unregisterContextPolicy("test");
+        }
+
+        assertThat(writes).contains(output.getPath());
+
+        // no policy, no enforcement
+        new FileInputStream(denied).close();
+    }
+
+    @Test
+    public void testDefaultPolicy() throws Exception {
+        File denied = temp.newFile("denied");
+
+        ComposableSecurityManagerPolicy.setDefaultPolicy(new EmptyPolicy() {
+            @Override
+            public void checkRead(String file) {
+                if (file.equals(denied.getPath())) {
+                    throw new SecurityException(file);
+                }
+            }
+        });
+        try {
+            new FileInputStream(denied).close();
+            fail();
+        } catch (SecurityException expected) {
+            // denied by the default policy
+        } finally {
+            ComposableSecurityManagerPolicy.setDefaultPolicy(null);
+        }
+    }
+}
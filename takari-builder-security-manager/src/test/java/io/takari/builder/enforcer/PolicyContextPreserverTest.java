@@ -1,8 +1,12 @@
 package io.takari.builder.enforcer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -31,4 +35,46 @@ public class PolicyContextPreserverTest {
         preserver.wrap(() -> count.set(1)).run();
         assertEquals(1, count.get());
     }
+
+    @Test
+    public void testSharedContextSnapshot() throws Exception {
+        Object key = new Object();
+        Policy policy = new EmptyPolicy();
+        ComposableSecurityManagerPolicy.registerContextPolicy(key, policy);
+        PolicyContextPreserver preserver;
+        try {
+            preserver = new PolicyContextPreserver();
+        } finally {
+            ComposableSecurityManagerPolicy.unregisterContextPolicy(key);
+        }
+
+        // the snapshot is not affected by changes of the original thread context
+        assertNull(ComposableSecurityManagerPolicy.getContextPolicies());
+        preserver
+                .wrap(() -> assertSame(policy, ComposableSecurityManagerPolicy.getContextPolicy(key)))
+                .run();
+        assertNull(ComposableSecurityManagerPolicy.getContextPolicies());
+    }
+
+    @Test
+    public void testForkJoinPool() throws Exception {
+        Object key = new Object();
+        Policy policy = new EmptyPolicy();
+        ComposableSecurityManagerPolicy.registerContextPolicy(key, policy);
+        try {
+            ForkJoinPool pool = new PolicyContextPreserver().newForkJoinPool(4);
+            try {
+                int count = pool.submit(() -> IntStream.range(0, 10000)
+                                .parallel()
+                                .map(i -> ComposableSecurityManagerPolicy.getContextPolicy(key) == policy ? 1 : 0)
+                                .sum())
+                        .get();
+                assertEquals(10000, count);
+            } finally {
+                pool.shutdown();
+            }
+        } finally {
+            ComposableSecurityManagerPolicy.unregisterContextPolicy(key);
+        }
+    }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Input directory files processed one file at a time, see
+ * {@link InputDirectoryFiles#incremental()}.
+ *
+ * <pre>
+ * for (Path input : sources.changedFilePaths()) {
+ *   try (IIncrementalDirectoryFiles.InputScope scope = sources.processInput(input)) {
+ *     // outputs written here are associated with the input
+ *   }
+ * }
+ * </pre>
+ *
+ * Outputs written outside of input scopes are not associated with any input and are deleted before
+ * each builder execution, i.e. the builder is expected to write them during each execution.
+ */
+public interface IIncrementalDirectoryFiles extends IDirectoryFiles {
+
+    /**
+     * Input files added or modified since the previous builder execution. All input files if the
+     * builder runs from scratch, for example, when any other builder input changed.
+     */
+    Set<Path> changedFilePaths();
+
+    /**
+     * Input files removed since the previous builder execution. Outputs associated with the removed
+     * files are deleted before the builder runs.
+     */
+    Set<Path> removedFilePaths();
+
+    /**
+     * Associates outputs written by the current thread with the input file until the returned scope
+     * is closed.
+     */
+    InputScope processInput(Path input);
+
+    interface InputScope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
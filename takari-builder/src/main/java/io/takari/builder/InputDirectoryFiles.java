@@ -51,4 +51,12 @@ public @interface InputDirectoryFiles {
     String[] excludes() default {};
 
     String[] defaultExcludes() default {};
+
+    /**
+     * If {@code incremental=true}, the parameter must be of {@link IIncrementalDirectoryFiles} type
+     * and the builder is expected to process only changed input files. Outputs written while an
+     * input file is processed are associated with the input file and are only deleted when the input
+     * file changes or is removed.
+     */
+    boolean incremental() default false;
 }
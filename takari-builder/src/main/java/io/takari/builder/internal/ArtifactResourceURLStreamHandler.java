@@ -8,6 +8,7 @@
 package io.takari.builder.internal;
 
 import io.takari.builder.IArtifactMetadata;
+import io.takari.builder.internal.cache.ZipFilePool;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
@@ -15,10 +16,13 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
+import java.nio.file.Path;
 
 /**
  * Handler for URLs that "wrap" artifact resources. The URL path observable by clients is relative
- * to the originating artifact root (jar file in most cases).
+ * to the originating artifact root (jar file in most cases). Jar file entries are read using shared
+ * {@link ZipFilePool} handles, which avoids opening the jar file on each access regardless of JDK
+ * {@code JarURLConnection} caching configuration.
  */
 class ArtifactResourceURLStreamHandler extends URLStreamHandler {
 
@@ -26,6 +30,10 @@ class ArtifactResourceURLStreamHandler extends URLStreamHandler {
 
     private final URL resource;
 
+    private final Path jar;
+
+    private final String entry;
+
     class InputURLCollection extends URLConnection {
         public InputURLCollection(URL url) {
             super(url);
@@ -36,12 +44,17 @@ class ArtifactResourceURLStreamHandler extends URLStreamHandler {
 
         @Override
         public InputStream getInputStream() throws IOException {
+            if (jar != null) {
+                return ZipFilePool.get().getInputStream(jar, entry);
+            }
             return resource.openStream();
         }
     }
 
-    ArtifactResourceURLStreamHandler(URL resource) {
+    ArtifactResourceURLStreamHandler(URL resource, Path jar, String entry) {
         this.resource = resource;
+        this.jar = jar;
+        this.entry = entry;
     }
 
     @Override
@@ -50,6 +63,14 @@ class ArtifactResourceURLStreamHandler extends URLStreamHandler {
     }
 
     public static URL newURL(IArtifactMetadata artifact, String relpath, URL resource) {
+        return newURL(artifact, relpath, resource, null);
+    }
+
+    /**
+     * Creates new artifact resource URL. If {@code jar} is not {@code null}, the resource is jar file
+     * entry {@code relpath} and is read from the jar file directly.
+     */
+    public static URL newURL(IArtifactMetadata artifact, String relpath, URL resource, Path jar) {
         try {
             StringBuilder host = new StringBuilder();
             host.append(artifact.getGroupId());
@@ -58,7 +79,12 @@ class ArtifactResourceURLStreamHandler extends URLStreamHandler {
             if (artifact.getClassifier() != null && !artifact.getClassifier().isEmpty()) {
                 host.append(':').append(artifact.getClassifier());
             }
-            return new URL(PROTOCOL, host.toString(), -1, relpath, new ArtifactResourceURLStreamHandler(resource));
+            return new URL(
+                    PROTOCOL,
+                    host.toString(),
+                    -1,
+                    relpath,
+                    new ArtifactResourceURLStreamHandler(resource, jar, relpath));
         } catch (MalformedURLException e) {
             throw new UncheckedIOException(e);
         }
@@ -13,19 +13,26 @@ import static io.takari.builder.enforcer.ComposableSecurityManagerPolicy.unregis
 import static io.takari.builder.internal.pathmatcher.PathNormalizer.normalize0;
 import static io.takari.builder.internal.pathmatcher.PathNormalizer.toPath;
 
+import io.takari.builder.IIncrementalDirectoryFiles.InputScope;
 import io.takari.builder.Messages;
 import io.takari.builder.enforcer.Policy;
 import io.takari.builder.enforcer.internal.EnforcerViolation;
 import io.takari.builder.enforcer.internal.EnforcerViolationType;
 import io.takari.builder.internal.BuilderExecutionState.InprogressStateWriter;
+import io.takari.builder.internal.metrics.ExecutionMetrics;
+import io.takari.builder.internal.metrics.ExecutionMetrics.Counter;
+import io.takari.builder.internal.metrics.ExecutionMetrics.Timer;
+import io.takari.builder.internal.pathmatcher.CanonicalPathCache;
 import io.takari.builder.internal.pathmatcher.FileMatcher;
 import io.takari.builder.internal.pathmatcher.PathMatcher;
 import io.takari.builder.internal.pathmatcher.PathNormalizer;
 import java.io.File;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -64,6 +71,71 @@ public class BuilderContext {
         return policy.getBuilderContext();
     }
 
+    /**
+     * Associates outputs written by the current thread with the input until the returned scope is
+     * closed.
+     *
+     * @see io.takari.builder.IIncrementalDirectoryFiles#processInput(Path)
+     */
+    static InputScope processInput(Path input) {
+        return getCurrentContext().enterInput(input.toAbsolutePath().toString());
+    }
+
+    private InputScope enterInput(String input) {
+        inputOutputs.computeIfAbsent(input, i -> ConcurrentHashMap.newKeySet());
+        String previous = currentInput.get();
+        currentInput.set(input);
+        // write checks are cached per registered policy, each input scope registers its own policy
+        // to see outputs already written by the builder in other input scopes
+        Object key = new Object();
+        registerContextPolicy(key, new InputScopePolicy(input));
+        return () -> {
+            unregisterContextPolicy(key);
+            if (previous != null) {
+                currentInput.set(previous);
+            } else {
+                currentInput.remove();
+            }
+        };
+    }
+
+    /**
+     * Associates outputs written in the input scope with the input. Registered after
+     * {@link BuilderContextPolicy}, so writes are already checked and recorded.
+     */
+    private class InputScopePolicy implements Policy {
+
+        private final String input;
+
+        InputScopePolicy(String input) {
+            this.input = input;
+        }
+
+        @Override
+        public void checkWrite(String file) {
+            // nested input scope
+            if (!input.equals(currentInput.get())) {
+                return;
+            }
+            String normalized = normalizer.normalize(file);
+            if (writes.containsKey(normalized)) {
+                inputOutputs.get(input).add(normalized);
+            }
+        }
+
+        @Override
+        public void checkRead(String file) {}
+
+        @Override
+        public void checkSocketPermission() {}
+
+        @Override
+        public void checkPropertyPermission(String action, String name) {}
+
+        @Override
+        public void checkExec(String cmd) {}
+    }
+
     //
     // enforcement
     //
@@ -80,15 +152,22 @@ public class BuilderContext {
             return ctx;
         }
 
+        @Override
+        public String toString() {
+            return ctx.toString();
+        }
+
         private final ThreadLocal<Boolean> readPrivileged = ThreadLocal.withInitial(() -> Boolean.FALSE);
         private AtomicBoolean inScope = new AtomicBoolean(true);
 
         @Override
         public void checkWrite(String file) {
             checkScope();
+            long start = ctx.metrics.start();
             if (!ctx.checkAndRecordWrite(file)) {
                 handleViolation(ctx, EnforcerViolationType.WRITE, normalize0(file));
             }
+            stopEnforcementTimer(start);
         }
 
         @Override
@@ -111,9 +190,11 @@ public class BuilderContext {
                 // originally, the filesystem check was performed separately and far less frequently
                 // the two checks were collapsed into single policy call for Policy API clarity
                 readPrivileged.set(Boolean.TRUE);
+                long start = ctx.metrics.start();
                 if (!ctx.checkRead(file)) {
                     handleViolation(ctx, EnforcerViolationType.READ, normalize0(file));
                 }
+                stopEnforcementTimer(start);
             } finally {
                 readPrivileged.set(Boolean.FALSE);
             }
@@ -145,6 +226,11 @@ public class BuilderContext {
             }
         }
 
+        private void stopEnforcementTimer(long start) {
+            ctx.metrics.stop(Timer.ENFORCEMENT, start);
+            ctx.metrics.increment(Counter.ENFORCEMENT_CHECKS);
+        }
+
         private void handleViolation(BuilderContext ctx, EnforcerViolationType violationType, String path) {
             ctx.addViolation(new EnforcerViolation(violationType, path));
         }
@@ -208,9 +294,10 @@ public class BuilderContext {
         private final MessageCollector messages;
         private final Collection<String> execExceptions = new LinkedHashSet<>();
         private boolean networkAccessAllowed;
-        private final Collection<String> readExceptions = new LinkedHashSet<>();
-        private final Collection<String> writeExceptions = new LinkedHashSet<>();
+        private final List<FileMatcher> readExceptions = new ArrayList<>();
+        private final List<FileMatcher> writeExceptions = new ArrayList<>();
         private InprogressStateWriter inprogressWriter = BuilderExecutionState.NOOP_INPROGRESSWRITER;
+        private ExecutionMetrics metrics = ExecutionMetrics.DISABLED;
         private final BuilderWorkspace workspace;
 
         private Builder(
@@ -276,7 +363,19 @@ public class BuilderContext {
         }
 
         public Builder addReadExceptions(Collection<String> readExceptions) {
-            this.readExceptions.addAll(readExceptions);
+            if (!readExceptions.isEmpty()) {
+                this.readExceptions.add(FileMatcher.createIndexedMatcher(readExceptions));
+            }
+
+            return this;
+        }
+
+        /**
+         * Adds precompiled read exceptions matcher, which allows reuse of the matcher across builder
+         * executions.
+         */
+        public Builder addReadExceptions(FileMatcher readExceptions) {
+            this.readExceptions.add(readExceptions);
 
             return this;
         }
@@ -288,7 +387,19 @@ public class BuilderContext {
         }
 
         public Builder addWriteExceptions(Collection<String> writeExceptions) {
-            this.writeExceptions.addAll(writeExceptions);
+            if (!writeExceptions.isEmpty()) {
+                this.writeExceptions.add(FileMatcher.createIndexedMatcher(writeExceptions));
+            }
+
+            return this;
+        }
+
+        /**
+         * Adds precompiled write exceptions matcher, which allows reuse of the matcher across builder
+         * executions.
+         */
+        public Builder addWriteExceptions(FileMatcher writeExceptions) {
+            this.writeExceptions.add(writeExceptions);
 
             return this;
         }
@@ -311,6 +422,12 @@ public class BuilderContext {
             return this;
         }
 
+        public Builder setMetrics(ExecutionMetrics metrics) {
+            this.metrics = metrics;
+
+            return this;
+        }
+
         public BuilderContext build() {
             // tests often create test projects under temp directory
             // therefore explicitly exclude session basedir from temp matcher
@@ -331,10 +448,11 @@ public class BuilderContext {
                     messages,
                     execExceptions,
                     networkAccessAllowed,
-                    readExceptions,
-                    writeExceptions,
+                    readExceptions.toArray(new FileMatcher[readExceptions.size()]),
+                    writeExceptions.toArray(new FileMatcher[writeExceptions.size()]),
                     readAndTrackExceptionsMatcher,
                     inprogressWriter,
+                    metrics,
                     workspace);
         }
     }
@@ -358,41 +476,46 @@ public class BuilderContext {
     private final PathMatcher tempMatcher;
     private final Collection<String> execExceptions;
     private final boolean networkAccessAllowed;
-    private final FileMatcher readExceptionsMatcher;
-    private final FileMatcher writeExceptionsMatcher;
+    private final FileMatcher[] readExceptionsMatchers;
+    private final FileMatcher[] writeExceptionsMatchers;
     private final PathMatcher readAndTrackExceptionsMatcher;
 
     // mutable context state (below) can be accessed from multiple threads
-    // all collections are concurrent-safe to allow reads and writes
-    // additionally, access to writes/tempWrites is guarded by writeLock
+    // all collections are concurrent-safe to allow reads and writes without locking
 
     private final Set<EnforcerViolation> violations = ConcurrentHashMap.newKeySet();
     private final MessageCollector messages;
     private final BuilderWorkspace workspace;
 
+    private final InprogressStateWriter inprogressWriter;
+
+    private final ExecutionMetrics metrics;
+
     /*
-     * this lock guarantees that "file created by this builder" and "file exists" checks are in sync
-     * with each other as observed by checkRead method. failure to synchronize the two checks results
-     * in checkRead false negative if "file exists" check becomes true before
-     * "created by this builder".
+     * output and temporary files are recorded *before* the builder is allowed to create them. this
+     * "publish before create" order guarantees that "file created by this builder" check observes the
+     * file if preceding "file exists" check did, which is why checkRead and checkAndRecordWrite repeat
+     * "created by this builder" check after they find the file exists. failure to do so results in
+     * checkRead false negative if "file exists" check becomes true before "created by this builder".
      *
      * @see io.takari.builder.internal.BuilderContextTest.testConcurrentReadWriteCheck()
      */
-    // igorf: more elaborate ReadWriteLock implementation does not provide measurable performance
-    // benefits, going with simpler approach
-    private final Object writeLock = new Object();
-
-    private final InprogressStateWriter inprogressWriter;
 
     // output files written by the builder
-    private final Set<String> writes = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Boolean> writes = new ConcurrentHashMap<>();
 
     // temporary files written by the builder
-    private final Set<String> tempWrites = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Boolean> tempWrites = new ConcurrentHashMap<>();
 
     // system properties read by the builder
     private final Set<String> properties = ConcurrentHashMap.newKeySet();
 
+    // incremental input currently processed by the thread
+    private final ThreadLocal<String> currentInput = new ThreadLocal<>();
+
+    // incremental inputs and normalized paths of output files written while processing them
+    private final ConcurrentHashMap<String, Set<String>> inputOutputs = new ConcurrentHashMap<>();
+
     private BuilderContext(
             Logger log,
             PathNormalizer normalizer,
@@ -403,10 +526,11 @@ public class BuilderContext {
             MessageCollector messages,
             Collection<String> execExceptions,
             boolean networkAccessAllowed,
-            Collection<String> readExceptions,
-            Collection<String> writeExceptions,
+            FileMatcher[] readExceptionsMatchers,
+            FileMatcher[] writeExceptionsMatchers,
             PathMatcher readAndTrackExceptionsMatcher,
             InprogressStateWriter inprogressWriter,
+            ExecutionMetrics metrics,
             BuilderWorkspace workspace) {
         this.log = log;
         this.id = id;
@@ -418,16 +542,20 @@ public class BuilderContext {
         this.execExceptions = execExceptions;
         this.networkAccessAllowed = networkAccessAllowed;
         this.inprogressWriter = inprogressWriter;
-        this.readExceptionsMatcher = getExceptionsMatcher(readExceptions);
-        this.writeExceptionsMatcher = getExceptionsMatcher(writeExceptions);
+        this.metrics = metrics;
+        this.readExceptionsMatchers = readExceptionsMatchers;
+        this.writeExceptionsMatchers = writeExceptionsMatchers;
         this.readAndTrackExceptionsMatcher = readAndTrackExceptionsMatcher;
         this.workspace = workspace;
     }
 
-    private static FileMatcher getExceptionsMatcher(Collection<String> exceptions) {
-        return exceptions != null && !exceptions.isEmpty()
-                ? FileMatcher.createMatcher(exceptions, null)
-                : FileMatcher.createMatcher(null, Arrays.asList("*"));
+    private static boolean matches(FileMatcher[] matchers, String normalized) {
+        for (FileMatcher matcher : matchers) {
+            if (matcher.matches(normalized)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
@@ -438,62 +566,73 @@ public class BuilderContext {
     public final boolean checkRead(String file) {
         String normalized = normalizer.normalize(file);
 
-        if (readExceptionsMatcher.matches(normalized) || readAndTrackExceptionsMatcher.includes(normalized)) {
+        // cheapest and most common checks first, declared inputs and files written by this builder
+        if (readMatcher.includes(normalized) || isWritten(normalized)) {
             return true;
         }
 
-        synchronized (writeLock) {
-            if (writes.contains(normalized) || tempWrites.contains(normalized)) {
-                return true;
-            }
+        if (matches(readExceptionsMatchers, normalized) || readAndTrackExceptionsMatcher.includes(normalized)) {
+            return true;
+        }
 
-            if (!readMatcher.includes(normalized)) {
-                // still allow reads of files that do not exist
-                return !workspace.isRegularFile(toPath(normalized));
-            }
+        // still allow reads of files that do not exist
+        if (!workspace.isRegularFile(toPath(normalized))) {
+            return true;
         }
-        return true;
+
+        // the file may have been created by this builder after the first check
+        return isWritten(normalized);
     }
 
     public final boolean checkAndRecordWrite(String file) {
         String normalized = normalizer.normalize(file);
 
-        if (writeExceptionsMatcher.matches(normalized)) {
+        // violations do not necessarily prevent the write, evict potentially stale entries regardless
+        CanonicalPathCache.get().invalidate(toPath(normalized));
+
+        if (matches(writeExceptionsMatchers, normalized)) {
             return true;
         }
 
-        synchronized (writeLock) {
-            if (writes.contains(normalized) || tempWrites.contains(normalized)) {
-                return true;
-            }
+        if (isWritten(normalized)) {
+            return true;
+        }
 
-            // Do not allow writes to existing files, unless the existing file is an input (whitelisted in
-            // builder-enforcer.config)
-            if (workspace.isRegularFile(toPath(normalized)) && !readAndTrackExceptionsMatcher.includes(normalized)) {
-                return false;
-            }
+        boolean readAndTrack = readAndTrackExceptionsMatcher.includes(normalized);
 
-            if (writeMatcher.includes(normalized)) {
-                writes.add(normalized);
-                recordInprogressWrite(normalized);
-                workspace.processOutput(toPath(normalized));
-                return true;
-            }
+        // Do not allow writes to existing files, unless the existing file is an input (whitelisted in
+        // builder-enforcer.config)
+        if (!readAndTrack && workspace.isRegularFile(toPath(normalized))) {
+            // the file may have been created by this builder after the first check
+            return isWritten(normalized);
+        }
 
-            if (tempMatcher.includes(normalized)) {
-                tempWrites.add(normalized);
-                recordInprogressWrite(normalized);
-                return true;
-            }
+        if (writeMatcher.includes(normalized)) {
+            recordWrite(writes, normalized, readAndTrack);
+            workspace.processOutput(toPath(normalized));
+            return true;
+        }
+
+        if (tempMatcher.includes(normalized)) {
+            recordWrite(tempWrites, normalized, readAndTrack);
+            return true;
         }
 
         return false;
     }
 
-    private void recordInprogressWrite(String normalized) {
-        if (!readAndTrackExceptionsMatcher.includes(normalized)) {
-            inprogressWriter.writePath(normalized);
-        }
+    private boolean isWritten(String normalized) {
+        return writes.containsKey(normalized) || tempWrites.containsKey(normalized);
+    }
+
+    private void recordWrite(ConcurrentHashMap<String, Boolean> files, String normalized, boolean readAndTrack) {
+        // concurrent checks of the same file block until the undo record is written
+        files.computeIfAbsent(normalized, f -> {
+            if (!readAndTrack) {
+                inprogressWriter.writePath(f);
+            }
+            return Boolean.TRUE;
+        });
     }
 
     public final boolean checkExec(String command) {
@@ -526,6 +665,7 @@ public class BuilderContext {
     public boolean addViolation(EnforcerViolation violation) {
         boolean added = violations.add(violation);
         if (added) {
+            violation.captureStackTrace();
             StringBuilder msg = new StringBuilder();
             msg.append(String.format("Access to an undeclared resource detected in builder: %s", this.toString()));
             msg.append("\n   " + violation.getFormattedViolation());
@@ -541,12 +681,17 @@ public class BuilderContext {
 
     /** returns normalized paths of written files */
     public Collection<String> getWrittenFiles() {
-        return writes;
+        return writes.keySet();
+    }
+
+    /** returns incremental inputs processed by the builder and normalized paths of their outputs */
+    public Map<String, Set<String>> getInputOutputs() {
+        return inputOutputs;
     }
 
     /** returns normalized paths of written temporary files */
     public Collection<String> getTemporaryFiles() {
-        return tempWrites;
+        return tempWrites.keySet();
     }
 
     /** returns system properties read by the builder */
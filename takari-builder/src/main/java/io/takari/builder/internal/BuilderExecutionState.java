@@ -11,29 +11,37 @@ import io.takari.builder.internal.digest.FileDigest;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InvalidClassException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
 import java.io.OutputStream;
 import java.io.Serializable;
-import java.io.StringReader;
-import java.io.StringWriter;
+import java.io.StreamCorruptedException;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import org.codehaus.plexus.util.xml.CompactXMLWriter;
-import org.codehaus.plexus.util.xml.Xpp3Dom;
-import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
-import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import java.util.concurrent.ThreadLocalRandom;
 
 class BuilderExecutionState {
 
@@ -53,16 +61,25 @@ class BuilderExecutionState {
 
     public final Set<ResourceRoot> resourceRoots;
 
-    public final List<Message> messages;
+    // loaded lazily from the messages file, only needed when the builder execution is skipped
+    private List<Message> messages;
+
+    private final Path messagesFile;
+
+    private final int messageCount;
+
+    // identifies the messages file written together with this state
+    private final long messagesStamp;
 
     public final Map<String, FileDigest> exceptionsDigest;
 
-    @SuppressWarnings("serial")
-    private static class StateFormatException extends RuntimeException {
-        public StateFormatException(Throwable cause) {
-            super(cause);
-        }
-    }
+    // cheap up-to-date check, can be null
+
+    public final InputFingerprint inputFingerprint;
+
+    // incremental inputs and their outputs, null if the builder is not incremental
+
+    public final Map<String, Collection<String>> inputOutputs;
 
     private BuilderExecutionState(
             BuilderInputs.Digest inputsDigest,
@@ -72,7 +89,12 @@ class BuilderExecutionState {
             Set<CompileSourceRoot> compileSourceRoots,
             Set<ResourceRoot> resourceRoots,
             List<Message> messages,
-            Map<String, FileDigest> exceptionsDigest) {
+            Path messagesFile,
+            int messageCount,
+            long messagesStamp,
+            Map<String, FileDigest> exceptionsDigest,
+            InputFingerprint inputFingerprint,
+            Map<String, Collection<String>> inputOutputs) {
         this.inputsDigest = inputsDigest;
         this.properties = properties;
         this.classpathDigest = classpathDigest;
@@ -80,7 +102,12 @@ class BuilderExecutionState {
         this.compileSourceRoots = compileSourceRoots;
         this.resourceRoots = resourceRoots;
         this.messages = messages;
+        this.messagesFile = messagesFile;
+        this.messageCount = messageCount;
+        this.messagesStamp = messagesStamp;
         this.exceptionsDigest = exceptionsDigest;
+        this.inputFingerprint = inputFingerprint;
+        this.inputOutputs = inputOutputs;
     }
 
     /**
@@ -94,6 +121,28 @@ class BuilderExecutionState {
         return false;
     }
 
+    /**
+     * Returns messages of the builder execution. Messages are read from the messages file on first
+     * access.
+     *
+     * @throws IOException if the messages file is missing, incomplete or was not written together
+     *         with this state
+     */
+    public synchronized List<Message> getMessages() throws IOException {
+        if (messages == null) {
+            List<Message> messages = readMessages(messagesFile, messagesStamp);
+            if (messages.size() != messageCount) {
+                throw new StreamCorruptedException("Incomplete builder messages file " + messagesFile);
+            }
+            this.messages = messages;
+        }
+        return messages;
+    }
+
+    static Path getMessagesFile(Path file) {
+        return file.getParent().resolve(file.getFileName() + "-messages");
+    }
+
     @SuppressWarnings("unchecked")
     public static BuilderExecutionState load(Path file) {
         Collection<String> outputPaths = Collections.emptySet();
@@ -107,8 +156,22 @@ class BuilderExecutionState {
                     final Serializable classpathDigest = (Serializable) ois.readObject();
                     final Set<CompileSourceRoot> compileSourceRoots = (Set<CompileSourceRoot>) ois.readObject();
                     final Set<ResourceRoot> resourceRoots = (Set<ResourceRoot>) ois.readObject();
-                    final List<Message> messages = (List<Message>) ois.readObject();
+                    final List<Message> legacyMessages = (List<Message>) ois.readObject();
                     final Map<String, FileDigest> exceptionsDigest = (Map<String, FileDigest>) ois.readObject();
+                    final InputFingerprint inputFingerprint = readInputFingerprint(ois);
+                    final Map<String, Collection<String>> inputOutputs = readInputOutputs(ois);
+                    final int messageCount = readMessageCount(ois);
+                    final long messagesStamp = messageCount >= 0 ? ois.readLong() : 0;
+                    final Path messagesFile = getMessagesFile(file);
+                    List<Message> messages = null;
+                    if (messageCount < 0) {
+                        // state written before messages were moved to the messages file
+                        messages = legacyMessages;
+                    } else if (messageCount == 0) {
+                        messages = Collections.emptyList();
+                    } else if (!Files.isRegularFile(messagesFile)) {
+                        throw new EOFException("Missing builder messages file " + messagesFile);
+                    }
                     return new BuilderExecutionState(
                             inputsDigest,
                             properties,
@@ -117,7 +180,12 @@ class BuilderExecutionState {
                             compileSourceRoots,
                             resourceRoots,
                             messages,
-                            exceptionsDigest);
+                            messagesFile,
+                            messageCount < 0 ? legacyMessages.size() : messageCount,
+                            messagesStamp,
+                            exceptionsDigest,
+                            inputFingerprint,
+                            inputOutputs);
                 }
             } catch (IOException | ClassNotFoundException e) {
             }
@@ -139,7 +207,9 @@ class BuilderExecutionState {
             Set<CompileSourceRoot> compileSourceRoots,
             Set<ResourceRoot> resourceRoots,
             List<Message> messages,
-            Map<String, FileDigest> exceptionsDigest)
+            Map<String, FileDigest> exceptionsDigest,
+            InputFingerprint inputFingerprint,
+            Map<String, Collection<String>> inputOutputs)
             throws IOException {
         if (file == null) {
             return;
@@ -147,6 +217,16 @@ class BuilderExecutionState {
         if (!Files.isDirectory(file.getParent())) {
             Files.createDirectories(file.getParent());
         }
+        // messages are written first, state that refers to missing messages is not trusted. the stamp
+        // identifies messages written together with the state, in case the state file is not written
+        Path messagesFile = getMessagesFile(file);
+        long messagesStamp = 0;
+        if (messages.isEmpty()) {
+            Files.deleteIfExists(messagesFile);
+        } else {
+            messagesStamp = ThreadLocalRandom.current().nextLong();
+            writeMessages(messagesFile, messagesStamp, messages);
+        }
         // outer try block prevents open file leak if wrapper stream constructors throws exceptions
         try (OutputStream os = Files.newOutputStream(file)) {
             try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(os))) {
@@ -156,12 +236,51 @@ class BuilderExecutionState {
                 oos.writeObject(classpathDigest);
                 oos.writeObject(compileSourceRoots);
                 oos.writeObject(resourceRoots);
-                oos.writeObject(messages);
+                // legacy messages, older readers stop at the output paths marker and rebuild
+                oos.writeObject(Collections.emptyList());
                 oos.writeObject(exceptionsDigest);
+                oos.writeObject(inputFingerprint);
+                oos.writeObject(inputOutputs);
+                oos.writeInt(messages.size());
+                oos.writeLong(messagesStamp);
             }
         }
     }
 
+    private static InputFingerprint readInputFingerprint(ObjectInputStream ois)
+            throws IOException, ClassNotFoundException {
+        try {
+            return (InputFingerprint) ois.readObject();
+        } catch (EOFException | InvalidClassException e) {
+            // state written before input fingerprints were introduced or by incompatible version
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Collection<String>> readInputOutputs(ObjectInputStream ois)
+            throws IOException, ClassNotFoundException {
+        try {
+            return (Map<String, Collection<String>>) ois.readObject();
+        } catch (EOFException | ObjectStreamException e) {
+            // state written before incremental builders were introduced, the builder runs from scratch
+            return null;
+        }
+    }
+
+    private static int readMessageCount(ObjectInputStream ois) throws IOException {
+        try {
+            int count = ois.readInt();
+            if (count < 0) {
+                throw new StreamCorruptedException("invalid message count " + count);
+            }
+            return count;
+        } catch (EOFException e) {
+            // state written before messages were moved to the messages file
+            return -1;
+        }
+    }
+
     private static class EscalatedExecutionState extends BuilderExecutionState {
         EscalatedExecutionState(Collection<String> outputPaths) {
             super(
@@ -172,7 +291,12 @@ class BuilderExecutionState {
                     Collections.emptySet(),
                     Collections.emptySet(),
                     Collections.emptyList(),
-                    Collections.emptyMap());
+                    null,
+                    0,
+                    0,
+                    Collections.emptyMap(),
+                    null,
+                    null);
         }
 
         @Override
@@ -185,47 +309,330 @@ class BuilderExecutionState {
     // output paths are written (and read) before any other build state
     // the idea is to provide backwards/forward output path compatibility
     // without restrictions on changes of other parts of the build state
-    // each path is encoded as <o>...</o> utf8 xml string. future versions
-    // may introduce <strong>optional</string> xml attributes if needed
     //
+    // output paths are written as count followed by each path encoded as
+    // <o>...</o> utf8 xml string, the format used by all versions.
+    //
+    // legacy state has an object right after output paths. current state has
+    // output paths marker int and format version byte there. older readers
+    // see all outputs, so they can delete stale outputs, then fail to read the
+    // marker where they expect an object and rebuild. current readers detect
+    // legacy state by the absent marker.
+    //
+    // paths are escaped and unescaped by hand, without xml writer and parser.
+    // besides the predefined entities, only '\r' is escaped, as character
+    // reference, so that all paths roundtrip exactly.
+    //
+
+    private static final String OUTPUT_START = "<o>";
 
-    private static final String OUTPUT_DOM_NAME = "o";
+    private static final String OUTPUT_END = "</o>";
+
+    static final int OUTPUT_PATHS_MARKER = 0x74626f70; // "tbop"
+
+    static final byte STATE_VERSION = 3;
+
+    // upper bound of length-prefixed strings, guards against huge allocations when reading corrupted files
+    static final int MAX_STRING_LENGTH = 16 * 1024 * 1024;
 
     static void writeOutputPaths(ObjectOutputStream os, Collection<String> outputPaths) throws IOException {
+        // single copy of output paths in the format older readers understand, followed by the marker
+        // that tells current readers the rest of the state uses the current format
+        writeLegacyOutputPaths(os, outputPaths);
+        os.writeInt(OUTPUT_PATHS_MARKER);
+        os.writeByte(STATE_VERSION);
+    }
+
+    static void writeLegacyOutputPaths(ObjectOutputStream os, Collection<String> outputPaths) throws IOException {
         os.writeInt(outputPaths.size());
         for (String path : outputPaths) {
-            os.writeUTF(toPortablePath(path));
+            os.writeUTF(toLegacyPortablePath(path));
+        }
+    }
+
+    static void writePath(DataOutput os, String path) throws IOException {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_LENGTH) {
+            throw new UTFDataFormatException("string too long " + bytes.length);
+        }
+        os.writeInt(bytes.length);
+        os.write(bytes);
+    }
+
+    static String readPath(DataInput is) throws IOException {
+        int length = is.readInt();
+        if (length < 0 || length > MAX_STRING_LENGTH) {
+            throw new StreamCorruptedException("invalid path length " + length);
+        }
+        byte[] bytes = new byte[length];
+        is.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static String toLegacyPortablePath(String path) {
+        StringBuilder sb = new StringBuilder(path.length() + OUTPUT_START.length() + OUTPUT_END.length());
+        sb.append(OUTPUT_START);
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            switch (c) {
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                case '\'':
+                    sb.append("&apos;");
+                    break;
+                case '\r':
+                    sb.append("&#13;");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.append(OUTPUT_END).toString();
+    }
+
+    static String fromLegacyPortablePath(String string) throws StreamCorruptedException {
+        if (!string.startsWith(OUTPUT_START) || !string.endsWith(OUTPUT_END)) {
+            if ("<o/>".equals(string)) {
+                return "";
+            }
+            throw new StreamCorruptedException("invalid output path " + string);
+        }
+        int end = string.length() - OUTPUT_END.length();
+        int amp = string.indexOf('&', OUTPUT_START.length());
+        if (amp < 0 || amp >= end) {
+            return string.substring(OUTPUT_START.length(), end);
+        }
+        StringBuilder sb = new StringBuilder(end - OUTPUT_START.length());
+        int i = OUTPUT_START.length();
+        while (amp >= 0 && amp < end) {
+            sb.append(string, i, amp);
+            int semicolon = string.indexOf(';', amp);
+            if (semicolon < 0 || semicolon >= end) {
+                throw new StreamCorruptedException("invalid output path " + string);
+            }
+            sb.appendCodePoint(unescape(string, amp + 1, semicolon));
+            i = semicolon + 1;
+            amp = string.indexOf('&', i);
         }
+        return sb.append(string, i, end).toString();
     }
 
-    private static String toPortablePath(String path) {
-        StringWriter buf = new StringWriter();
-        CompactXMLWriter w = new CompactXMLWriter(buf);
-        w.startElement(OUTPUT_DOM_NAME);
-        w.writeText(path);
-        w.endElement();
-        return buf.toString();
+    private static int unescape(String string, int start, int end) throws StreamCorruptedException {
+        String entity = string.substring(start, end);
+        switch (entity) {
+            case "amp":
+                return '&';
+            case "lt":
+                return '<';
+            case "gt":
+                return '>';
+            case "quot":
+                return '"';
+            case "apos":
+                return '\'';
+            default:
+        }
+        try {
+            if (entity.startsWith("#x")) {
+                return Integer.parseInt(entity.substring(2), 16);
+            }
+            if (entity.startsWith("#")) {
+                return Integer.parseInt(entity.substring(1));
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new StreamCorruptedException("invalid output path " + string);
     }
 
     static Collection<String> readOutputPaths(ObjectInputStream is) throws IOException {
         int size = is.readInt();
-        Set<String> outputPaths = new HashSet<>(size);
+        if (size < 0) {
+            throw new StreamCorruptedException("invalid output paths count " + size);
+        }
+        Set<String> outputPaths = new HashSet<>();
         for (int i = 0; i < size; i++) {
+            outputPaths.add(fromLegacyPortablePath(is.readUTF()));
+        }
+        int marker;
+        try {
+            marker = is.readInt();
+        } catch (EOFException e) {
+            // legacy state, output paths are followed by an object
+            return outputPaths;
+        }
+        if (marker != OUTPUT_PATHS_MARKER) {
+            throw new StreamCorruptedException("invalid output paths marker " + Integer.toHexString(marker));
+        }
+        int version = is.readUnsignedByte();
+        if (version != STATE_VERSION) {
+            throw new StreamCorruptedException("unsupported state format version " + version);
+        }
+        return outputPaths;
+    }
+
+    //
+    // messages file starts with the stamp long, also written at the end of
+    // the state file, followed by format version byte, message records and
+    // end-of-messages marker. the stamp ties the messages file to the state,
+    // the messages file is replaced atomically before the state file is
+    // written, a crash in between leaves messages that do not match the old
+    // state and the builder is executed again. each record starts with
+    // message severity byte followed by message file index, line, column,
+    // message text and rendered cause. each message file path is written
+    // once, right after the index of its first reference, and is shared by
+    // all messages read for the file. message text and rendered cause are
+    // length-prefixed utf8 strings, -1 length denotes null. java
+    // serialization is not used, the file is read with constant per-message
+    // overhead and causes are stored as rendered summaries rather than
+    // serialized throwables.
+    //
+    // the messages file is only referenced by state with output paths marker,
+    // which older readers do not trust and rebuild instead of replaying empty
+    // legacy messages.
+    //
+
+    static final byte MESSAGES_VERSION = 1;
+
+    private static final int END_OF_MESSAGES = 0xFF;
+
+    private static final Message.MessageSeverity[] SEVERITIES = Message.MessageSeverity.values();
+
+    /**
+     * Message cause read from the messages file, holds rendered summary of the original cause.
+     */
+    @SuppressWarnings("serial")
+    static class RenderedCause extends Exception {
+        RenderedCause(String summary) {
+            super(summary, null, false, false);
+        }
+
+        @Override
+        public String toString() {
+            return getMessage();
+        }
+
+        @Override
+        public int hashCode() {
+            return getMessage().hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof RenderedCause && getMessage().equals(((RenderedCause) obj).getMessage());
+        }
+    }
+
+    static void writeMessages(Path file, long stamp, Collection<Message> messages) throws IOException {
+        // written to a temporary file and moved in place, readers never see partially written messages
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                os.writeLong(stamp);
+                writeMessages(os, messages);
+            }
             try {
-                outputPaths.add(fromPortablePath(is.readUTF()));
-            } catch (XmlPullParserException e) {
-                throw new StateFormatException(e);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
             }
+        } finally {
+            Files.deleteIfExists(tmp);
         }
-        return outputPaths;
     }
 
-    private static String fromPortablePath(String string) throws XmlPullParserException, IOException {
-        Xpp3Dom dom = Xpp3DomBuilder.build(new StringReader(string));
-        if (!OUTPUT_DOM_NAME.equals(dom.getName())) {
-            throw new XmlPullParserException("invalid element " + dom.getName());
+    static void writeMessages(DataOutput os, Collection<Message> messages) throws IOException {
+        Map<String, Integer> files = new HashMap<>();
+        os.writeByte(MESSAGES_VERSION);
+        for (Message message : messages) {
+            os.writeByte(message.severity.ordinal());
+            Integer index = files.get(message.file);
+            if (index != null) {
+                os.writeInt(index);
+            } else {
+                os.writeInt(files.size());
+                writePath(os, message.file);
+                files.put(message.file, files.size());
+            }
+            os.writeInt(message.line);
+            os.writeInt(message.column);
+            writeNullableString(os, message.message);
+            writeNullableString(os, message.cause != null ? message.cause.toString() : null);
+        }
+        os.writeByte(END_OF_MESSAGES);
+    }
+
+    static List<Message> readMessages(Path file, long stamp) throws IOException {
+        try (DataInputStream is = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (is.readLong() != stamp) {
+                throw new StreamCorruptedException("Builder messages file does not match state " + file);
+            }
+            return readMessages(is, file.toString());
+        }
+    }
+
+    static List<Message> readMessages(DataInput is, String source) throws IOException {
+        List<Message> messages = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        int version = is.readUnsignedByte();
+        if (version != MESSAGES_VERSION) {
+            throw new StreamCorruptedException("Unsupported messages format version " + version + " " + source);
+        }
+        int severity;
+        while ((severity = is.readUnsignedByte()) != END_OF_MESSAGES) {
+            if (severity >= SEVERITIES.length) {
+                throw new StreamCorruptedException("Invalid message severity " + severity + " " + source);
+            }
+            int index = is.readInt();
+            if (index == files.size()) {
+                files.add(readPath(is));
+            } else if (index < 0 || index > files.size()) {
+                throw new StreamCorruptedException("Invalid message file index " + index + " " + source);
+            }
+            int line = is.readInt();
+            int column = is.readInt();
+            String message = readNullableString(is);
+            String cause = readNullableString(is);
+            messages.add(new Message(
+                    files.get(index),
+                    line,
+                    column,
+                    message,
+                    SEVERITIES[severity],
+                    cause != null ? new RenderedCause(cause) : null));
+        }
+        return messages;
+    }
+
+    private static void writeNullableString(DataOutput os, String string) throws IOException {
+        if (string == null) {
+            os.writeInt(-1);
+        } else {
+            writePath(os, string);
         }
-        return dom.getValue();
+    }
+
+    private static String readNullableString(DataInput is) throws IOException {
+        int length = is.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > MAX_STRING_LENGTH) {
+            throw new StreamCorruptedException("invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        is.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 
     /**
@@ -236,8 +643,9 @@ class BuilderExecutionState {
     static interface InprogressStateWriter extends Closeable {
 
         /**
-         * Writes single "undo" log record. Not thread safe, access must be serialized externally. The
-         * undo record is flushed to filesystem before this method exits.
+         * Writes single "undo" log record. Thread safe, can be called concurrently by multiple builder
+         * threads. The undo record is written to filesystem before this method exits and is forced to
+         * the storage device no later than when the writer is closed.
          */
         public void writePath(String path) throws IncrementalBuildException;
     }
@@ -250,40 +658,73 @@ class BuilderExecutionState {
         public void writePath(String path) {}
     };
 
+    //
+    // "undo" log file starts with format version byte followed by output paths
+    // encoded as length-prefixed utf8 strings. legacy "undo" log files have no
+    // version byte and have each output path encoded as <o>...</o> utf8 xml line.
+    //
+
+    static final byte INPROGRESS_VERSION = 2;
+
     static Collection<String> readInprogressOutputPaths(Path file) throws IOException {
+        Collection<String> paths = readVersionedInprogressOutputPaths(file);
+        return paths != null ? paths : readLegacyInprogressOutputPaths(file);
+    }
+
+    /** Returns {@code null} if the file uses legacy format. */
+    private static Collection<String> readVersionedInprogressOutputPaths(Path file) throws IOException {
+        Set<String> paths = new HashSet<>();
+        try (DataInputStream is = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int version = is.read();
+            if (version == '<') {
+                return null;
+            }
+            if (version < 0) {
+                return paths; // jvm crashed before the version byte was written
+            }
+            if (version != INPROGRESS_VERSION) {
+                throw new IOException("Unsupported undo log format version " + version + " " + file);
+            }
+            while (true) {
+                String path = readPath(is);
+                if (!path.isEmpty()) {
+                    paths.add(path);
+                }
+            }
+        } catch (EOFException | StreamCorruptedException e) {
+            // last log record can be corrupted if it was being written when jvm crashed
+            // it is okay to ignore because corresponding output file could not have been created
+        }
+        return paths;
+    }
+
+    private static Collection<String> readLegacyInprogressOutputPaths(Path file) throws IOException {
         Set<String> paths = new HashSet<>();
         try (BufferedReader reader = Files.newBufferedReader(file)) {
             String str;
             while ((str = reader.readLine()) != null) {
-                paths.add(fromPortablePath(str));
+                paths.add(fromLegacyPortablePath(str));
             }
-        } catch (XmlPullParserException e) {
+        } catch (StreamCorruptedException e) {
             // last log record can be corrupted if it was being written when jvm crashed
             // it is okay to ignore because corresponding output file could not have been created
         }
         return paths;
     }
 
+    private static byte[] toInprogressRecord(String path) {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try {
+            writePath(new DataOutputStream(buf), path);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // can't happen
+        }
+        return buf.toByteArray();
+    }
+
     static InprogressStateWriter newInprogressWriter(Path file) throws IOException {
         Files.createDirectories(file.getParent());
-        BufferedWriter writer = Files.newBufferedWriter(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.SYNC);
-        return new InprogressStateWriter() {
-
-            @Override
-            public void close() throws IOException {
-                writer.close();
-            }
-
-            @Override
-            public void writePath(String path) throws IncrementalBuildException {
-                try {
-                    writer.write(toPortablePath(path));
-                    writer.newLine();
-                    writer.flush();
-                } catch (IOException e) {
-                    throw new IncrementalBuildException(e);
-                }
-            }
-        };
+        return new GroupCommitInprogressWriter(
+                file, new byte[] {INPROGRESS_VERSION}, BuilderExecutionState::toInprogressRecord);
     }
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.internal;
+
+/**
+ * Builder instance factory and parameter field injector generated by takari-builder-apt. Generated
+ * injectors create builder instances and assign builder parameter fields directly, without
+ * reflection. Fields not accessible to the generated code, like private fields, are assigned
+ * reflectively.
+ *
+ * @noimplement this interface is implemented by generated code only
+ */
+public interface BuilderInjector {
+
+    /**
+     * Generated injector class name suffix. The injector of builder class {@code pkg.Type} is
+     * {@code pkg.Type$GeneratedInjector}.
+     */
+    public static final String CLASSNAME_SUFFIX = "$GeneratedInjector";
+
+    /**
+     * Creates new builder instance.
+     */
+    public Object newInstance();
+
+    /**
+     * Assigns builder parameter field value. Fields are identified by their declaring class binary
+     * name and field name, separated by {@code '#'}.
+     *
+     * @return {@code true} if the field was assigned, {@code false} if the field is not accessible to
+     *     the injector
+     */
+    public boolean setField(Object builder, String field, Object value);
+
+    /**
+     * Returns injector field identifier.
+     */
+    public static String fieldId(String declaringClass, String name) {
+        return declaringClass + "#" + name;
+    }
+}
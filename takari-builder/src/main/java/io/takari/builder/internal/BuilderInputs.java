@@ -8,7 +8,7 @@
 package io.takari.builder.internal;
 
 import io.takari.builder.IArtifactMetadata;
-import io.takari.builder.IDirectoryFiles;
+import io.takari.builder.IIncrementalDirectoryFiles;
 import io.takari.builder.ResourceType;
 import io.takari.builder.internal.Reflection.MultivalueFactory;
 import io.takari.builder.internal.Reflection.ReflectionType;
@@ -20,7 +20,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.io.UncheckedIOException;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.net.URL;
 import java.nio.charset.Charset;
@@ -37,6 +36,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -53,6 +53,14 @@ public class BuilderInputs {
         return inputFiles;
     }
 
+    /**
+     * Returns all input directories and dependency directories the builder input files were
+     * selected from.
+     */
+    public Set<Path> getInputDirectories() {
+        return inputDirectories;
+    }
+
     /**
      * Returns all directories the builder can create output files in.
      */
@@ -79,15 +87,90 @@ public class BuilderInputs {
         return isNonDeterministic;
     }
 
+    /**
+     * Returns {@code true} if the builder has {@code @InputDirectoryFiles(incremental=true)}
+     * parameters.
+     */
+    public boolean isIncremental() {
+        return !incrementalDirectories.isEmpty();
+    }
+
+    /**
+     * Returns input files selected by incremental parameters only. Changes to these files do not
+     * require full builder execution.
+     */
+    public Set<Path> getIncrementalInputFiles() {
+        return incrementalInputFiles;
+    }
+
+    /**
+     * Sets changed and removed incremental input files visible to the builder.
+     */
+    void setIncrementalChanges(Set<Path> changed, Set<Path> removed) {
+        incrementalDirectories.forEach(directory -> directory.setChanges(changed, removed));
+    }
+
     /**
      * returns digest of this builder inputs configuration. the digest is Serializable and can be
      * persisted on filesystem between builder invocations. Persisted digest from the previous build
      * can be used to determine if builder inputs have changed or not.
      */
     public Digest getDigest() {
+        return getDigest(p -> {});
+    }
+
+    /**
+     * Returns digest of this builder inputs configuration and reports all directories and files
+     * visited while walking input directories to the provided consumer.
+     */
+    Digest getDigest(Consumer<Path> walked) {
+        Map<String, Value<?>> members = new LinkedHashMap<>();
+        this.members.forEach((field, value) -> members.put(field.getName(), value));
+        return digest(members, walked);
+    }
+
+    /**
+     * Returns content digest of this builder inputs, suitable as shared build cache key. Unlike
+     * {@link #getDigest()}, input files are digested by their contents and paths under the basedir are
+     * digested relative to the basedir, which gives the same digest to the same inputs in different
+     * workspaces.
+     */
+    BytesHash getContentDigest(Path basedir) {
         Map<String, Value<?>> members = new LinkedHashMap<>();
         this.members.forEach((field, value) -> members.put(field.getName(), value));
-        return digest(members);
+        String prefix = basedir.toAbsolutePath().toString();
+        Function<String, String> relocator = value -> value.startsWith(prefix)
+                ? "${basedir}" + value.substring(prefix.length()).replace(File.separatorChar, '/')
+                : value;
+        TreeMap<String, BytesHash> contentDigests = new TreeMap<>();
+        Map<String, BytesHash> memberDigests = digest(members, p -> {}, relocator, file -> {
+            contentDigests.put(relocator.apply(file.toString()), contentDigest(file));
+        });
+
+        MessageDigest digester = SHA1Digester.newInstance();
+        memberDigests.forEach((member, digest) -> {
+            digester.update(member.getBytes(UTF8));
+            digester.update(digest.toString().getBytes(UTF8));
+        });
+        contentDigests.forEach((file, digest) -> {
+            digester.update(file.getBytes(UTF8));
+            digester.update(digest.toString().getBytes(UTF8));
+        });
+        return new BytesHash(digester.digest());
+    }
+
+    private static BytesHash contentDigest(Path file) {
+        MessageDigest digester = SHA1Digester.newInstance();
+        try (InputStream is = Files.newInputStream(file)) {
+            byte[] buf = new byte[4096];
+            int len;
+            while ((len = is.read(buf)) >= 0) {
+                digester.update(buf, 0, len);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new BytesHash(digester.digest());
     }
 
     public static Digest emptyDigest() {
@@ -98,17 +181,10 @@ public class BuilderInputs {
      * Creates and returns new fully configured builder instance.
      */
     public Object newBuilder() throws ReflectiveOperationException {
-        Constructor<?> constructor = type.getDeclaredConstructor();
-        if (!constructor.isAccessible()) {
-            constructor.setAccessible(true);
-        }
-        Object builder = constructor.newInstance();
+        BuilderModel model = BuilderModel.get(type);
+        Object builder = model.newInstance();
         for (Map.Entry<Field, Value<?>> member : members.entrySet()) {
-            Field field = member.getKey();
-            if (!field.isAccessible()) {
-                field.setAccessible(true);
-            }
-            field.set(builder, member.getValue().value());
+            model.setField(builder, member.getKey(), member.getValue().value());
         }
         return builder;
     }
@@ -120,6 +196,9 @@ public class BuilderInputs {
     final Class<?> type;
     final Map<Field, Value<?>> members; // TODO change to Map<String, Value<?>>
     final Set<Path> inputFiles;
+    final Set<Path> incrementalInputFiles;
+    final List<InputDirectoryValue> incrementalDirectories;
+    final Set<Path> inputDirectories;
     final Set<Path> outputDirectories;
     final Set<Path> outputFiles;
     final Set<ResourceRoot> resourceRoots;
@@ -365,7 +444,7 @@ public class BuilderInputs {
         }
     }
 
-    static class InputDirectoryValue implements Value<Object>, IDirectoryFiles {
+    static class InputDirectoryValue implements Value<Object>, IIncrementalDirectoryFiles {
         public final Class<?> type;
 
         public final Path location;
@@ -376,6 +455,10 @@ public class BuilderInputs {
         public final Set<Path> filePaths;
         public final Set<String> filenames;
 
+        // incremental parameter changes, all files are changed unless set by the builder runner
+        private Set<Path> changedFilePaths;
+        private Set<Path> removedFilePaths = Collections.emptySet();
+
         public InputDirectoryValue(
                 Class<?> type,
                 Path location,
@@ -447,6 +530,34 @@ public class BuilderInputs {
         public Set<String> filenames() {
             return filenames;
         }
+
+        boolean isIncremental() {
+            return type == IIncrementalDirectoryFiles.class;
+        }
+
+        void setChanges(Set<Path> changed, Set<Path> removed) {
+            Set<Path> changedFilePaths = new LinkedHashSet<>(filePaths);
+            changedFilePaths.retainAll(changed);
+            Set<Path> removedFilePaths = new LinkedHashSet<>();
+            removed.stream().filter(path -> path.startsWith(location)).forEach(removedFilePaths::add);
+            this.changedFilePaths = Collections.unmodifiableSet(changedFilePaths);
+            this.removedFilePaths = Collections.unmodifiableSet(removedFilePaths);
+        }
+
+        @Override
+        public Set<Path> changedFilePaths() {
+            return changedFilePaths != null ? changedFilePaths : filePaths;
+        }
+
+        @Override
+        public Set<Path> removedFilePaths() {
+            return removedFilePaths;
+        }
+
+        @Override
+        public InputScope processInput(Path input) {
+            return BuilderContext.processInput(input);
+        }
     }
 
     static class InputFilesValue implements Value<Object> {
@@ -623,6 +734,10 @@ public class BuilderInputs {
             this.files = null;
         }
 
+        Map<File, FileDigest> fileDigests() {
+            return this.files == null ? Collections.emptyMap() : this.files;
+        }
+
         public Set<Path> files() {
             return this.files == null
                     ? Collections.emptySet()
@@ -631,6 +746,29 @@ public class BuilderInputs {
                             .collect(Collectors.toCollection(LinkedHashSet::new));
         }
 
+        /**
+         * Returns files with different digests in this and the other digest, including files present
+         * in only one of the digests. Returns {@code null} if the digests differ in anything but the
+         * files.
+         */
+        Set<File> changedFiles(Digest other) {
+            if (inputs == null || other.inputs == null || !inputs.equals(other.inputs)) {
+                return null;
+            }
+            Set<File> changed = new LinkedHashSet<>();
+            files.forEach((file, digest) -> {
+                if (!digest.equals(other.files.get(file))) {
+                    changed.add(file);
+                }
+            });
+            other.files.keySet().forEach(file -> {
+                if (!files.containsKey(file)) {
+                    changed.add(file);
+                }
+            });
+            return changed;
+        }
+
         @Override
         public boolean equals(Object obj) {
             if (inputs == null || files == null) {
@@ -650,12 +788,26 @@ public class BuilderInputs {
     }
 
     static Digest digest(Value<?> input) {
-        return digest(Collections.singletonMap("parameter", input));
+        return digest(Collections.singletonMap("parameter", input), p -> {});
     }
 
-    private static Digest digest(Map<String, Value<?>> members) {
-        TreeMap<String, BytesHash> memberDigests = new TreeMap<>();
+    private static Digest digest(Map<String, Value<?>> members, Consumer<Path> walked) {
         TreeMap<File, FileDigest> fileDigests = new TreeMap<>();
+        Map<String, BytesHash> memberDigests =
+                digest(members, walked, Function.identity(), f -> fileDigests.put(f.toFile(), FileDigest.digest(f)));
+        return new Digest(memberDigests, fileDigests);
+    }
+
+    /**
+     * Digests builder input members and returns member digests. Paths and strings are digested
+     * after {@code relocator} is applied, regular input files are reported to {@code files}.
+     */
+    private static Map<String, BytesHash> digest(
+            Map<String, Value<?>> members,
+            Consumer<Path> walked,
+            Function<String, String> relocator,
+            Consumer<Path> files) {
+        TreeMap<String, BytesHash> memberDigests = new TreeMap<>();
 
         for (Map.Entry<String, Value<?>> member : members.entrySet()) {
             MessageDigest digester = SHA1Digester.newInstance();
@@ -664,12 +816,13 @@ public class BuilderInputs {
 
                 private void digestInput(Path value) {
                     if (Files.isRegularFile(value)) {
-                        fileDigests.put(value.toFile(), FileDigest.digest(value));
+                        files.accept(value);
                     } else if (Files.isDirectory(value)) {
                         try {
                             Files.walk(value) //
+                                    .peek(walked) //
                                     .filter(p -> Files.isRegularFile(p)) //
-                                    .forEach(f -> fileDigests.put(f.toFile(), FileDigest.digest(f)));
+                                    .forEach(files);
                         } catch (IOException e) {
                             throw new UncheckedIOException(e);
                         }
@@ -693,12 +846,12 @@ public class BuilderInputs {
                 }
 
                 private void digest(Path value) {
-                    digester.update(value.toString().getBytes(UTF8));
+                    digester.update(relocator.apply(value.toString()).getBytes(UTF8));
                 }
 
                 private void digest(String value) {
                     if (value != null) {
-                        digester.update(value.getBytes(UTF8));
+                        digester.update(relocator.apply(value).getBytes(UTF8));
                     }
                 }
 
@@ -806,7 +959,7 @@ public class BuilderInputs {
             memberDigests.put(member.getKey(), new BytesHash(digester.digest()));
         }
 
-        return new Digest(memberDigests, fileDigests);
+        return memberDigests;
     }
 
     BuilderInputs(Class<?> type, Map<Field, Value<?>> values, boolean isNonDeterministic) {
@@ -815,6 +968,9 @@ public class BuilderInputs {
         this.isNonDeterministic = isNonDeterministic;
 
         Set<Path> inputFiles = new LinkedHashSet<>();
+        Set<Path> incrementalInputFiles = new LinkedHashSet<>();
+        List<InputDirectoryValue> incrementalDirectories = new ArrayList<>();
+        Set<Path> inputDirectories = new LinkedHashSet<>();
         Set<Path> outputDirectories = new LinkedHashSet<>();
         Set<Path> outputFiles = new LinkedHashSet<>();
         Set<ResourceRoot> resources = new LinkedHashSet<>();
@@ -829,7 +985,13 @@ public class BuilderInputs {
 
             @Override
             public void visitInputDirectory(InputDirectoryValue value) {
-                inputFiles.addAll(value.filePaths);
+                inputDirectories.add(value.location);
+                if (value.isIncremental()) {
+                    incrementalDirectories.add(value);
+                    incrementalInputFiles.addAll(value.filePaths);
+                } else {
+                    inputFiles.addAll(value.filePaths);
+                }
             }
 
             @Override
@@ -893,6 +1055,7 @@ public class BuilderInputs {
                 if (Files.isRegularFile(path)) {
                     inputFiles.add(path);
                 } else if (Files.isDirectory(path)) {
+                    inputDirectories.add(path);
                     addFilesFromDirectory(inputFiles, path);
                 }
             }
@@ -908,7 +1071,14 @@ public class BuilderInputs {
 
         values.values().forEach(member -> member.accept(visitor));
 
+        // files also selected by other parameters are not incremental
+        incrementalInputFiles.removeAll(inputFiles);
+        inputFiles.addAll(incrementalInputFiles);
+
         this.inputFiles = Collections.unmodifiableSet(inputFiles);
+        this.incrementalInputFiles = Collections.unmodifiableSet(incrementalInputFiles);
+        this.incrementalDirectories = Collections.unmodifiableList(incrementalDirectories);
+        this.inputDirectories = Collections.unmodifiableSet(inputDirectories);
         this.outputDirectories = Collections.unmodifiableSet(outputDirectories);
         this.outputFiles = Collections.unmodifiableSet(outputFiles);
         this.resourceRoots = Collections.unmodifiableSet(resources);
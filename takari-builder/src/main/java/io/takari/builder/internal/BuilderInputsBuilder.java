@@ -39,7 +39,6 @@ import io.takari.builder.internal.model.ArtifactResourcesParameter;
 import io.takari.builder.internal.model.BuilderClass;
 import io.takari.builder.internal.model.BuilderMetadataVisitor;
 import io.takari.builder.internal.model.BuilderMethod;
-import io.takari.builder.internal.model.BuilderValidationVisitor;
 import io.takari.builder.internal.model.CompositeParameter;
 import io.takari.builder.internal.model.DependenciesParameter;
 import io.takari.builder.internal.model.DependencyResourcesParameter;
@@ -138,9 +137,13 @@ public class BuilderInputsBuilder implements BuilderMetadataVisitor {
             BuilderWorkspace builderWorkspace)
             throws IOException {
 
-        BuilderClass metadata = Reflection.createBuilderClass(clazz);
+        // builder class model is parsed and validated once per builder class
+        BuilderModel model = BuilderModel.get(clazz);
+        if (!model.isValid()) {
+            throw new InvalidModelException();
+        }
 
-        return build(
+        return newBuilderInputs(
                 goal,
                 projectModelProvider,
                 dependencyResolver,
@@ -148,7 +151,7 @@ public class BuilderInputsBuilder implements BuilderMetadataVisitor {
                 clazz,
                 configuration,
                 forcedParameters,
-                metadata,
+                model.metadata(),
                 builderWorkspace);
     }
 
@@ -163,18 +166,32 @@ public class BuilderInputsBuilder implements BuilderMetadataVisitor {
             BuilderClass metadata,
             BuilderWorkspace workspace) {
 
-        BuilderValidationVisitor vv = new BuilderValidationVisitor() {
-            @Override
-            protected void error(AbstractParameter parameter, String message) {
-                throw new InvalidModelException();
-            }
+        if (!BuilderModel.validate(metadata)) {
+            throw new InvalidModelException();
+        }
 
-            @Override
-            protected void error(BuilderMethod builder, String message) {
-                throw new InvalidModelException();
-            }
-        };
-        metadata.accept(vv);
+        return newBuilderInputs(
+                goal,
+                mavenModelProvider,
+                dependencyResolver,
+                expressionEvaluator,
+                clazz,
+                configuration,
+                forcedParameters,
+                metadata,
+                workspace);
+    }
+
+    private static BuilderInputs newBuilderInputs(
+            String goal,
+            ProjectModelProvider mavenModelProvider,
+            DependencyResolver dependencyResolver,
+            ExpressionEvaluator expressionEvaluator,
+            Class<?> clazz,
+            Xpp3Dom configuration,
+            Map<String, Value<?>> forcedParameters,
+            BuilderClass metadata,
+            BuilderWorkspace workspace) {
 
         BuilderInputsBuilder v = new BuilderInputsBuilder(
                 goal,
@@ -1033,8 +1050,10 @@ public class BuilderInputsBuilder implements BuilderMetadataVisitor {
             // open filesystem access (reading all junit-4.12.jar entries 1000 times using filesystem
             // takes ~5.5 seconds, using URL ~6.8 seconds).
             // if URLConnection cache is disabled, reading all junit-4.12.jar entries 1000 times takes
-            // ~22.2 seconds. this is still acceptable assuming only a small number of jar file entries
-            // will be used through URL API.
+            // ~22.2 seconds.
+            // to get open filesystem performance regardless of URLConnection caching, jar entry URLs
+            // read the entries through ZipFilePool, which shares reference counted ZipFile handles and
+            // closes them when idle.
             try {
                 ArtifactLocation artifact = selection.bucket;
                 Set<Path> files = new TreeSet<>();
@@ -1054,7 +1073,8 @@ public class BuilderInputsBuilder implements BuilderMetadataVisitor {
                         url = file.toUri().toURL();
                         files.add(file);
                     }
-                    urls.add(ArtifactResourceURLStreamHandler.newURL(artifact.metadata, relpath, url));
+                    urls.add(ArtifactResourceURLStreamHandler.newURL(
+                            artifact.metadata, relpath, url, isSelectionRegularFile ? selection.location : null));
                 }
                 return new ArtifactResourcesValue(files, artifact.metadata, urls);
             } catch (IOException e) {
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.internal;
+
+import io.takari.builder.internal.model.AbstractParameter;
+import io.takari.builder.internal.model.BuilderClass;
+import io.takari.builder.internal.model.BuilderMethod;
+import io.takari.builder.internal.model.BuilderValidationVisitor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reflective model of a builder class, shared by all executions of the builder. Holds parsed
+ * parameter metadata, model validation result, builder goal methods, constructor and field setter
+ * method handles. Builder instances are created and configured by {@link BuilderInjector} generated
+ * by takari-builder-apt, if present, and reflectively otherwise. Models are associated with builder classes using {@link ClassValue} and are
+ * discarded together with builder class loaders.
+ */
+class BuilderModel {
+
+    private static final ClassValue<BuilderModel> MODELS = new ClassValue<BuilderModel>() {
+        @Override
+        protected BuilderModel computeValue(Class<?> type) {
+            return new BuilderModel(type);
+        }
+    };
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final MethodHandle FIELD_SET;
+
+    static {
+        try {
+            FIELD_SET = MethodHandles.lookup().findVirtual(Field.class, "set", SETTER_TYPE);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final Class<?> type;
+
+    private final BuilderClass metadata;
+
+    private volatile Boolean valid;
+
+    private volatile MethodHandle constructor;
+
+    private final ConcurrentMap<String, Optional<Method>> methods = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Field, MethodHandle> setters = new ConcurrentHashMap<>();
+
+    private final BuilderInjector injector;
+
+    private BuilderModel(Class<?> type) {
+        this.type = type;
+        this.metadata = Reflection.createBuilderClass(type);
+        this.injector = loadInjector(type);
+    }
+
+    private static BuilderInjector loadInjector(Class<?> type) {
+        Class<?> injectorType;
+        try {
+            injectorType =
+                    Class.forName(type.getName() + BuilderInjector.CLASSNAME_SUFFIX, true, type.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null; // builder was not compiled with takari-builder-apt
+        }
+        if (!BuilderInjector.class.isAssignableFrom(injectorType)) {
+            return null;
+        }
+        try {
+            return (BuilderInjector) injectorType.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public static BuilderModel get(Class<?> type) {
+        return MODELS.get(type);
+    }
+
+    public BuilderClass metadata() {
+        return metadata;
+    }
+
+    /**
+     * Returns {@code true} if the builder class model does not have validation errors.
+     */
+    public boolean isValid() {
+        Boolean valid = this.valid;
+        if (valid == null) {
+            this.valid = valid = validate(metadata);
+        }
+        return valid;
+    }
+
+    static boolean validate(BuilderClass metadata) {
+        boolean[] valid = {true};
+        metadata.accept(new BuilderValidationVisitor() {
+            @Override
+            protected void error(AbstractParameter parameter, String message) {
+                valid[0] = false;
+            }
+
+            @Override
+            protected void error(BuilderMethod builder, String message) {
+                valid[0] = false;
+            }
+        });
+        return valid[0];
+    }
+
+    /**
+     * Returns accessible method annotated with {@code @Builder(name=goal)} or {@code null} if there is
+     * no such method.
+     */
+    public Method getBuilderMethod(String goal) {
+        return methods.computeIfAbsent(goal, g -> {
+                    Optional<Method> method = BuilderRunner.streamMethods(type) //
+                            .filter(m -> BuilderRunner.isbuilderAnnotationPresentWithGoal(m, g)) //
+                            .findFirst();
+                    method.ifPresent(m -> m.setAccessible(true));
+                    return method;
+                })
+                .orElse(null);
+    }
+
+    /**
+     * Creates new builder instance using builder class no-arg constructor.
+     */
+    public Object newInstance() throws ReflectiveOperationException {
+        if (injector != null) {
+            try {
+                return injector.newInstance();
+            } catch (RuntimeException e) {
+                // consistent with Constructor#newInstance
+                throw new InvocationTargetException(e);
+            }
+        }
+        MethodHandle constructor = this.constructor;
+        if (constructor == null) {
+            Constructor<?> declared = type.getDeclaredConstructor();
+            declared.setAccessible(true);
+            this.constructor = constructor =
+                    MethodHandles.lookup().unreflectConstructor(declared).asType(CONSTRUCTOR_TYPE);
+        }
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (Throwable e) {
+            // consistent with Constructor#newInstance
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     * Sets builder instance field value.
+     */
+    public void setField(Object builder, Field field, Object value) throws ReflectiveOperationException {
+        if (injector != null) {
+            try {
+                if (injector.setField(
+                        builder,
+                        BuilderInjector.fieldId(field.getDeclaringClass().getName(), field.getName()),
+                        value)) {
+                    return;
+                }
+            } catch (ClassCastException | NullPointerException e) {
+                throw new IllegalArgumentException("Can not set " + field + " to " + value, e);
+            }
+        }
+        MethodHandle setter = setters.get(field);
+        if (setter == null) {
+            setter = newSetter(field);
+            setters.put(field, setter);
+        }
+        try {
+            setter.invokeExact(builder, value);
+        } catch (ClassCastException | NullPointerException e) {
+            // consistent with Field#set
+            throw new IllegalArgumentException("Can not set " + field + " to " + value, e);
+        } catch (ReflectiveOperationException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    private static MethodHandle newSetter(Field field) throws ReflectiveOperationException {
+        field.setAccessible(true);
+        MethodHandle setter;
+        if (Modifier.isFinal(field.getModifiers())) {
+            // method handles can't write final fields
+            setter = FIELD_SET.bindTo(field);
+        } else {
+            setter = MethodHandles.lookup().unreflectSetter(field);
+        }
+        // unboxes and widens primitive values same as Field#set
+        return setter.asType(SETTER_TYPE);
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.internal;
+
+import io.takari.builder.internal.cache.OutputCacheStore;
+import io.takari.builder.internal.digest.BytesHash;
+import io.takari.builder.internal.digest.SHA1Digester;
+import io.takari.incrementalbuild.workspace.Workspace;
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Shared cache of builder execution outputs. Entries are keyed by content digest of builder inputs,
+ * builder classpath and builder identity and hold output files, builder messages and system
+ * properties read by the builder. Paths are stored relative to the basedir, which allows reuse of
+ * cached outputs in different workspaces.
+ *
+ * <p>
+ * Entry is a zip file, with the execution record as the first zip entry followed by output files and
+ * directories. The execution record is written with {@link DataOutput} and holds system property
+ * names and digests followed by builder messages in the {@link BuilderExecutionState} messages
+ * format, message causes are stored as rendered summaries.
+ */
+class BuilderOutputCache {
+
+    // bump to invalidate all existing cache entries when entry format changes
+    private static final String FORMAT = "2";
+
+    private static final String EXECUTION_ENTRY = "execution";
+
+    private static final byte EXECUTION_VERSION = 1;
+
+    private static final String OUTPUTS_PREFIX = "outputs/";
+
+    static class Execution {
+        // system property digests, as computed by BuilderRunner
+        final Map<String, Object> properties;
+
+        // builder messages, with basedir-relative file paths
+        final List<Message> messages;
+
+        Execution(Map<String, Object> properties, List<Message> messages) {
+            this.properties = properties;
+            this.messages = messages;
+        }
+    }
+
+    /**
+     * Builder execution restored from the cache.
+     */
+    static class Restored {
+        final Map<String, Object> properties;
+
+        final List<Message> messages;
+
+        final Collection<String> outputPaths;
+
+        Restored(Map<String, Object> properties, List<Message> messages, Collection<String> outputPaths) {
+            this.properties = properties;
+            this.messages = messages;
+            this.outputPaths = outputPaths;
+        }
+    }
+
+    private final OutputCacheStore store;
+
+    private final boolean push;
+
+    private final Path basedir;
+
+    BuilderOutputCache(OutputCacheStore store, boolean push, Path basedir) {
+        this.store = store;
+        this.push = push;
+        this.basedir = basedir.toAbsolutePath().normalize();
+    }
+
+    public String getKey(String builderId, String goal, BytesHash inputsDigest, Serializable classpathDigest) {
+        MessageDigest digester = SHA1Digester.newInstance();
+        for (Object part : new Object[] {FORMAT, builderId, goal, inputsDigest, classpathDigest}) {
+            digester.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            digester.update((byte) 0);
+        }
+        return new BytesHash(digester.digest()).toString();
+    }
+
+    /**
+     * Writes cached outputs to the basedir and returns the restored execution, or returns {@code null}
+     * if there is no cached execution with the key or if system properties read by the cached
+     * execution do not match. Output files are written using the workspace. Partially restored
+     * outputs are deleted if the outputs cannot be restored.
+     */
+    public Restored restore(String key, Workspace workspace, Predicate<Map<String, Object>> properties)
+            throws IOException {
+        InputStream entry = store.get(key);
+        if (entry == null) {
+            return null;
+        }
+        Collection<String> outputPaths = new LinkedHashSet<>();
+        try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(entry))) {
+            return restore(key, zis, workspace, properties, outputPaths);
+        } catch (IOException e) {
+            List<String> restored = new ArrayList<>(outputPaths);
+            Collections.reverse(restored);
+            for (String output : restored) {
+                try {
+                    workspace.deleteFile(Paths.get(output).toFile());
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private Restored restore(
+            String key,
+            ZipInputStream zis,
+            Workspace workspace,
+            Predicate<Map<String, Object>> properties,
+            Collection<String> outputPaths)
+            throws IOException {
+        Execution execution = null;
+        ZipEntry zipEntry;
+        while ((zipEntry = zis.getNextEntry()) != null) {
+            String name = zipEntry.getName();
+            if (EXECUTION_ENTRY.equals(name) && execution == null) {
+                execution = readExecution(new DataInputStream(zis), key);
+                if (!properties.test(execution.properties)) {
+                    return null;
+                }
+                continue;
+            }
+            if (execution == null || !name.startsWith(OUTPUTS_PREFIX)) {
+                throw new IOException("Corrupted builder output cache entry " + key);
+            }
+            Path output = resolve(name.substring(OUTPUTS_PREFIX.length()));
+            outputPaths.add(output.toString());
+            if (zipEntry.isDirectory()) {
+                Files.createDirectories(output);
+                workspace.processOutput(output.toFile());
+            } else {
+                Files.createDirectories(output.getParent());
+                try (OutputStream os = workspace.newOutputStream(output.toFile())) {
+                    copy(zis, os);
+                }
+            }
+        }
+        if (execution == null) {
+            throw new IOException("Corrupted builder output cache entry " + key);
+        }
+        List<Message> messages = new ArrayList<>();
+        for (Message m : execution.messages) {
+            messages.add(new Message(resolve(m.file).toString(), m.line, m.column, m.message, m.severity, m.cause));
+        }
+        return new Restored(execution.properties, messages, outputPaths);
+    }
+
+    /**
+     * Stores builder outputs in the cache. Does nothing if the cache is read-only or if outputs or
+     * messages refer to files outside of the basedir, which cannot be relocated to other workspaces.
+     *
+     * @return {@code true} if the outputs were stored in the cache
+     */
+    public boolean put(
+            String key, Map<String, Object> properties, List<Message> messages, Collection<String> outputPaths)
+            throws IOException {
+        if (!push) {
+            return false;
+        }
+        List<Message> relativeMessages = new ArrayList<>();
+        for (Message m : messages) {
+            String file = relativize(m.file);
+            if (file == null) {
+                return false;
+            }
+            relativeMessages.add(new Message(file, m.line, m.column, m.message, m.severity, m.cause));
+        }
+        List<String> relativeOutputs = new ArrayList<>();
+        for (String output : outputPaths) {
+            String relative = relativize(output);
+            if (relative == null || relative.isEmpty()) {
+                return false;
+            }
+            relativeOutputs.add(relative);
+        }
+        for (Object digest : properties.values()) {
+            if (!(digest instanceof BytesHash)) {
+                return false;
+            }
+        }
+
+        Execution execution = new Execution(properties, relativeMessages);
+        store.put(key, os -> {
+            ZipOutputStream zos = new ZipOutputStream(os);
+            zos.putNextEntry(new ZipEntry(EXECUTION_ENTRY));
+            DataOutputStream dos = new DataOutputStream(zos);
+            writeExecution(dos, execution);
+            dos.flush();
+            zos.closeEntry();
+
+            for (String output : relativeOutputs) {
+                Path file = resolve(output);
+                if (Files.isDirectory(file)) {
+                    zos.putNextEntry(new ZipEntry(OUTPUTS_PREFIX + output + "/"));
+                } else if (Files.isRegularFile(file)) {
+                    zos.putNextEntry(new ZipEntry(OUTPUTS_PREFIX + output));
+                    Files.copy(file, zos);
+                } else {
+                    continue; // deleted by the builder
+                }
+                zos.closeEntry();
+            }
+            zos.finish();
+        });
+        return true;
+    }
+
+    static void writeExecution(DataOutput os, Execution execution) throws IOException {
+        os.writeByte(EXECUTION_VERSION);
+        os.writeInt(execution.properties.size());
+        for (Map.Entry<String, Object> property : execution.properties.entrySet()) {
+            BuilderExecutionState.writePath(os, property.getKey());
+            BuilderExecutionState.writePath(os, property.getValue().toString());
+        }
+        BuilderExecutionState.writeMessages(os, execution.messages);
+    }
+
+    static Execution readExecution(DataInput is, String key) throws IOException {
+        int version = is.readUnsignedByte();
+        if (version != EXECUTION_VERSION) {
+            throw new StreamCorruptedException("Unsupported builder output cache entry version " + version + " " + key);
+        }
+        int count = is.readInt();
+        if (count < 0) {
+            throw new StreamCorruptedException("Invalid property count " + count + " " + key);
+        }
+        Map<String, Object> properties = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = BuilderExecutionState.readPath(is);
+            String digest = BuilderExecutionState.readPath(is);
+            try {
+                properties.put(name, BytesHash.fromString(digest));
+            } catch (IllegalArgumentException e) {
+                throw new StreamCorruptedException("Invalid property digest " + digest + " " + key);
+            }
+        }
+        return new Execution(properties, BuilderExecutionState.readMessages(is, key));
+    }
+
+    private String relativize(String path) {
+        Path file = Paths.get(path).toAbsolutePath().normalize();
+        if (!file.startsWith(basedir)) {
+            return null;
+        }
+        return basedir.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+    }
+
+    private Path resolve(String relative) throws IOException {
+        Path file = basedir.resolve(relative).normalize();
+        if (!file.startsWith(basedir)) {
+            throw new IOException("Invalid builder output cache entry path " + relative);
+        }
+        return file;
+    }
+
+    private static void copy(InputStream is, OutputStream os) throws IOException {
+        byte[] buf = new byte[8192];
+        int len;
+        while ((len = is.read(buf)) >= 0) {
+            os.write(buf, 0, len);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return store.toString();
+    }
+}
@@ -18,9 +18,15 @@ import io.takari.builder.enforcer.internal.EnforcerViolation;
 import io.takari.builder.internal.BuilderExecutionState.InprogressStateWriter;
 import io.takari.builder.internal.BuilderInputs.Digest;
 import io.takari.builder.internal.Message.MessageSeverity;
+import io.takari.builder.internal.cache.OutputCacheStore;
+import io.takari.builder.internal.digest.BytesHash;
 import io.takari.builder.internal.digest.ClasspathDigester;
 import io.takari.builder.internal.digest.FileDigest;
 import io.takari.builder.internal.digest.SHA1Digester;
+import io.takari.builder.internal.metrics.ExecutionMetrics;
+import io.takari.builder.internal.metrics.ExecutionMetrics.Counter;
+import io.takari.builder.internal.metrics.ExecutionMetrics.Timer;
+import io.takari.builder.internal.metrics.MetricsRegistry;
 import io.takari.builder.internal.pathmatcher.PathMatcher;
 import io.takari.builder.internal.resolver.DependencyResolver;
 import io.takari.incrementalbuild.workspace.MessageSink;
@@ -29,6 +35,7 @@ import io.takari.incrementalbuild.workspace.Workspace;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Method;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
@@ -38,7 +45,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -70,6 +79,9 @@ public class BuilderRunner {
     // incremental build state file location, can be null
     private Path stateFile;
 
+    // build session id, null if execution metrics are disabled
+    private String metricsSession;
+
     // this builder classpath, used to allow reads from classpath and to detect classpath changes
     private List<Path> classpath = Collections.emptyList();
 
@@ -123,6 +135,10 @@ public class BuilderRunner {
     // forced parameter values
     private Map<String, BuilderInputs.Value<?>> forcedParameters = Collections.emptyMap();
 
+    // shared builder output cache, null if not configured
+    private OutputCacheStore outputCacheStore;
+    private boolean outputCachePush;
+
     private BuilderRunner(Logger log, Class<?> builderType, String goal) {
         this.log = log;
         this.builderType = builderType;
@@ -152,6 +168,26 @@ public class BuilderRunner {
         return this;
     }
 
+    /**
+     * Enables execution metrics, reported next to the state file. Reports of previous build sessions
+     * are discarded.
+     */
+    public BuilderRunner setMetricsSession(String session) {
+        this.metricsSession = session;
+        return this;
+    }
+
+    /**
+     * Enables shared output cache. Outputs of executions with the same inputs are restored from the
+     * cache instead of running the builder. If {@code push} is {@code true}, outputs of builder
+     * executions are stored in the cache.
+     */
+    public BuilderRunner setOutputCache(OutputCacheStore store, boolean push) {
+        this.outputCacheStore = store;
+        this.outputCachePush = push;
+        return this;
+    }
+
     public BuilderRunner setSessionClasspathMatcher(PathMatcher matcher) {
         this.sessionClasspathMatcher = matcher;
         return this;
@@ -265,8 +301,84 @@ public class BuilderRunner {
     }
 
     public <E extends Exception> BuilderContext execute(ExceptionFactory<E> efactory) throws E {
-        ExpressionEvaluator evaluator =
-                new ExpressionEvaluator(Arrays.asList(s -> properties.get(s), propertyResolver));
+        Execution<E> execution = prepare(efactory);
+        execution.updateProject();
+        execution.run();
+        return execution.complete();
+    }
+
+    /**
+     * Builder execution prepared by {@link BuilderRunner#prepare(ExceptionFactory)}.
+     *
+     * {@link #run()} performs all builder filesystem writes and can be called on any thread.
+     * {@link #updateProject()} and {@link #complete()} are expected to be called on the thread that
+     * prepared the execution, in builder execution order.
+     */
+    public abstract static class Execution<E extends Exception> {
+
+        private final Set<Path> reads;
+
+        private final Set<Path> writes;
+
+        private final boolean exclusive;
+
+        Execution(Set<Path> reads, Set<Path> writes, boolean exclusive) {
+            this.reads = reads;
+            this.writes = writes;
+            this.exclusive = exclusive;
+        }
+
+        /**
+         * Returns files and directories read to prepare or to run this execution.
+         */
+        public Set<Path> getReads() {
+            return reads;
+        }
+
+        /**
+         * Returns files and directories written or deleted by {@link #run()}.
+         */
+        public Set<Path> getWrites() {
+            return writes;
+        }
+
+        /**
+         * Returns {@code true} if the execution is allowed to access undeclared files and cannot run
+         * concurrently with any other execution.
+         */
+        public boolean isExclusive() {
+            return exclusive;
+        }
+
+        /**
+         * Adds builder resource and compile source roots to the project model.
+         */
+        public abstract void updateProject();
+
+        /**
+         * Runs the builder, if necessary. Never throws, failures are reported by {@link #complete()}.
+         */
+        public abstract void run();
+
+        /**
+         * Returns {@code true} if {@link #run()} has failed.
+         */
+        public abstract boolean isFailed();
+
+        /**
+         * Reports builder messages and failures.
+         */
+        public abstract BuilderContext complete() throws E;
+    }
+
+    /**
+     * Computes builder inputs and decides if the builder needs to run, but does not run it. The
+     * returned execution declares all files it reads and writes, which allows running independent
+     * builders concurrently.
+     */
+    public <E extends Exception> Execution<E> prepare(ExceptionFactory<E> efactory) throws E {
+        final List<Function<String, String>> propertyResolvers =
+                Arrays.asList(s -> properties.get(s), propertyResolver);
 
         /*
          * All requested output file writes are recorded in undo log file *before* the builder is
@@ -297,241 +409,703 @@ public class BuilderRunner {
             }
         }
 
+        final ExecutionMetrics metrics = metricsSession != null && stateFile != null
+                ? ExecutionMetrics.create(
+                        stateFile.getParent(), stateFile.getFileName().toString(), metricsSession)
+                : ExecutionMetrics.DISABLED;
+
+        long start = metrics.start();
         BuilderExecutionState oldExecutionState = BuilderExecutionState.load(stateFile);
+        metrics.stop(Timer.STATE_LOAD, start);
 
         BuilderWorkspace builderWorkspace =
                 new BuilderWorkspace(workspace, projectModelProvider.getBasedir(), oldExecutionState);
+        builderWorkspace.setMetrics(metrics);
 
         final MessageCollector messages = new MessageCollector(log);
 
+        // inputs fingerprint is only used when inputs are computed from plain filesystem state
+        final boolean fingerprinted = stateFile != null
+                && forcedParameters.isEmpty()
+                && workspace.getMode().equals(Workspace.Mode.NORMAL);
+        final BytesHash configurationDigest =
+                fingerprinted ? InputFingerprint.configurationDigest(goal, builderType, configuration) : null;
+
+        Serializable classpathDigest = null;
+        Collection<String> readAndTrackExceptions = null;
+
+        // cheap check if the builder is up-to-date, before computing builder inputs
+        if (fingerprinted && oldExecutionState.inputFingerprint != null) {
+            classpathDigest = getClasspathDigest(efactory, metrics);
+            readAndTrackExceptions = getReadAndTrackExceptions(efactory);
+            if (oldExecutionState.inputFingerprint.isUpToDate(
+                            configurationDigest,
+                            propertyResolvers,
+                            dependencyResolver,
+                            projectModelProvider,
+                            oldExecutionState.inputsDigest)
+                    && isUpToDate(oldExecutionState, classpathDigest, readAndTrackExceptions)) {
+
+                Set<Path> reads = new LinkedHashSet<>();
+                reads.addAll(oldExecutionState.inputsDigest.files());
+                reads.addAll(oldExecutionState.inputFingerprint.getPaths());
+                readAndTrackExceptions.forEach(path -> reads.add(toPath(path)));
+                metrics.add(
+                        Counter.INPUTS, oldExecutionState.inputsDigest.files().size());
+                metrics.setOutcome("skipped: up-to-date input fingerprint");
+                return new SkippedExecution<>(efactory, oldExecutionState, null, messages, metrics, reads);
+            }
+        }
+
+        final InputFingerprint.Recorder fingerprintRecorder = fingerprinted ? new InputFingerprint.Recorder() : null;
+
         final BuilderInputs inputs;
+        start = metrics.start();
         try {
+            builderWorkspace.setFingerprintRecorder(fingerprintRecorder);
             inputs = BuilderInputsBuilder.build(
                     goal,
-                    projectModelProvider,
-                    dependencyResolver,
-                    evaluator,
+                    fingerprintRecorder != null
+                            ? fingerprintRecorder.projectModelProvider(projectModelProvider)
+                            : projectModelProvider,
+                    fingerprintRecorder != null
+                            ? fingerprintRecorder.dependencyResolver(dependencyResolver)
+                            : dependencyResolver,
+                    new ExpressionEvaluator(
+                            fingerprintRecorder != null
+                                    ? fingerprintRecorder.properties(propertyResolvers)
+                                    : propertyResolvers),
                     builderType,
                     configuration,
                     forcedParameters,
                     builderWorkspace);
         } catch (IOException e) {
             throw efactory.exception("Could not compute builder inputs", e);
+        } finally {
+            builderWorkspace.setFingerprintRecorder(null);
+            metrics.stop(Timer.INPUTS, start);
         }
+        metrics.add(Counter.INPUTS, inputs.getInputFiles().size());
 
         if (workspace.getMode().equals(Workspace.Mode.SUPPRESSED)) {
-            return skippedBuilderExecution(efactory, oldExecutionState, inputs, messages);
+            metrics.setOutcome("skipped: suppressed workspace");
+            return new SkippedExecution<>(
+                    efactory, oldExecutionState, inputs, messages, metrics, getInputPaths(inputs));
         }
 
-        final Serializable classpathDigest;
-        try {
-            classpathDigest = classpathDigester.digest(classpath);
-        } catch (IOException e) {
-            throw efactory.exception("Could not compute classpath digest", e);
+        if (classpathDigest == null) {
+            classpathDigest = getClasspathDigest(efactory, metrics);
         }
 
-        final Collection<String> readAndTrackExceptions;
-        try {
-            readAndTrackExceptions = getReadAndTrackExceptions();
-        } catch (ExpressionEvaluationException e) {
-            throw efactory.exception("Unable to evaluate Read and Track exceptions", e);
+        if (readAndTrackExceptions == null) {
+            readAndTrackExceptions = getReadAndTrackExceptions(efactory);
         }
 
-        final Digest inputsDigest = inputs.getDigest();
+        final Set<Path> reads = getInputPaths(inputs);
+        readAndTrackExceptions.forEach(path -> reads.add(toPath(path)));
+
+        start = metrics.start();
+        final Digest inputsDigest =
+                fingerprintRecorder != null ? inputs.getDigest(fingerprintRecorder::file) : inputs.getDigest();
+        metrics.stop(Timer.DIGEST, start);
+        final InputFingerprint inputFingerprint =
+                fingerprintRecorder != null ? fingerprintRecorder.build(configurationDigest, inputsDigest) : null;
         if (!workspace.getMode().equals(Workspace.Mode.ESCALATED)
                 && inputsDigest.equals(oldExecutionState.inputsDigest) //
-                && getExceptionsDigest(readAndTrackExceptions).equals(oldExecutionState.exceptionsDigest)
-                && propertiesDigest(oldExecutionState.properties.keySet()).equals(oldExecutionState.properties) //
-                && classpathDigest.equals(oldExecutionState.classpathDigest)) {
+                && isUpToDate(oldExecutionState, classpathDigest, readAndTrackExceptions)) {
+
+            if (inputFingerprint != null) {
+                // the old fingerprint was missing or stale, store the new one for the next build
+                try {
+                    BuilderExecutionState.store(
+                            stateFile, //
+                            oldExecutionState.inputsDigest, //
+                            oldExecutionState.properties, //
+                            oldExecutionState.classpathDigest, //
+                            oldExecutionState.outputPaths, //
+                            oldExecutionState.compileSourceRoots, //
+                            oldExecutionState.resourceRoots, //
+                            oldExecutionState.getMessages(), //
+                            oldExecutionState.exceptionsDigest, //
+                            inputFingerprint, //
+                            oldExecutionState.inputOutputs);
+                } catch (IOException e) {
+                    throw efactory.exception("Could not persist incremental build state", e);
+                }
+            }
 
-            return skippedBuilderExecution(efactory, oldExecutionState, null, messages);
+            metrics.setOutcome("skipped: up-to-date");
+            return new SkippedExecution<>(efactory, oldExecutionState, null, messages, metrics, reads);
         }
 
-        deleteOutputs(oldExecutionState.outputPaths, efactory);
-
-        inputs.getResourceRoots().forEach(this.resourceConsumer);
-        inputs.getCompileSourceRoots().forEach(this::addCompileSourceRootToProject);
-
-        try {
-            for (Path file : inputs.getOutputDirectories()) {
-                // Does anyone know why we are creating output directories here preemptively????!!!!
-                Files.createDirectories(file);
-                workspace.processOutput(file.toFile());
+        // incremental builders only process changed inputs if nothing else changed since previous build
+        Set<Path> changedInputs = null;
+        Set<Path> removedInputs = null;
+        if (inputs.isIncremental()
+                && oldExecutionState.inputOutputs != null
+                && !workspace.getMode().equals(Workspace.Mode.ESCALATED)
+                && isUpToDate(oldExecutionState, classpathDigest, readAndTrackExceptions)) {
+            Set<File> changedFiles = inputsDigest.changedFiles(oldExecutionState.inputsDigest);
+            if (changedFiles != null) {
+                changedInputs = new LinkedHashSet<>();
+                removedInputs = new LinkedHashSet<>();
+                for (File file : changedFiles) {
+                    Path path = file.toPath();
+                    if (inputs.getIncrementalInputFiles().contains(path)) {
+                        changedInputs.add(path);
+                    } else if (oldExecutionState.inputOutputs.containsKey(path.toString())) {
+                        removedInputs.add(path);
+                    } else {
+                        // non-incremental input changed
+                        changedInputs = null;
+                        removedInputs = null;
+                        break;
+                    }
+                }
             }
-            for (Path file : inputs.getOutputFiles()) {
-                // Does anyone know why we are creating output directories here preemptively????!!!!
-                Files.createDirectories(file.getParent());
-                workspace.processOutput(file.getParent().toFile());
+        }
+
+        // executions that read undeclared inputs or process inputs incrementally are not cached
+        BuilderOutputCache outputCache = null;
+        String cacheKey = null;
+        if (outputCacheStore != null
+                && stateFile != null
+                && !inputs.isNonDeterministic()
+                && !inputs.isIncremental()
+                && readAndTrackExceptions.isEmpty()) {
+            start = metrics.start();
+            try {
+                outputCache = new BuilderOutputCache(outputCacheStore, outputCachePush, sessionBasedir());
+                cacheKey = outputCache.getKey(
+                        builderId != null ? builderId : builderType.getName(),
+                        goal,
+                        inputs.getContentDigest(sessionBasedir()),
+                        classpathDigest);
+            } catch (UncheckedIOException e) {
+                log.warn("Could not compute builder output cache key", e.getCause());
+                outputCache = null;
+            } finally {
+                metrics.stop(Timer.DIGEST, start);
             }
-        } catch (IOException e) {
-            throw efactory.exception("Unable to create Output Directories", e);
         }
 
-        BuilderContext.Builder contextBuilder =
-                BuilderContext.builder(log, goal, sessionBasedir(), messages, builderWorkspace);
-        // allow read from global classpath entries
-        if (sessionClasspathMatcher != null) {
-            contextBuilder.addInputMatcher(sessionClasspathMatcher);
+        if (workspace.getMode().equals(Workspace.Mode.ESCALATED)) {
+            metrics.setOutcome("executed: escalated workspace");
+        } else if (oldExecutionState.isEscalated()) {
+            metrics.setOutcome("executed: no previous state");
+        } else if (changedInputs != null) {
+            metrics.setOutcome("executed: incremental inputs changed");
+        } else if (!inputsDigest.equals(oldExecutionState.inputsDigest)) {
+            metrics.setOutcome("executed: inputs changed");
+        } else {
+            metrics.setOutcome("executed: classpath, properties or exceptions changed");
+        }
+
+        return new FullExecution<>(
+                efactory,
+                oldExecutionState,
+                builderWorkspace,
+                messages,
+                inputs,
+                inputsDigest,
+                inputFingerprint,
+                classpathDigest,
+                readAndTrackExceptions,
+                inprogressFile,
+                changedInputs,
+                removedInputs,
+                outputCache,
+                cacheKey,
+                metrics,
+                reads);
+    }
+
+    private static Set<Path> getInputPaths(BuilderInputs inputs) {
+        Set<Path> reads = new LinkedHashSet<>();
+        reads.addAll(inputs.getInputFiles());
+        reads.addAll(inputs.getInputDirectories());
+        return reads;
+    }
+
+    private static Set<Path> getOutputPaths(BuilderInputs inputs, BuilderExecutionState oldExecutionState) {
+        Set<Path> writes = new LinkedHashSet<>();
+        writes.addAll(inputs.getOutputDirectories());
+        writes.addAll(inputs.getOutputFiles());
+        oldExecutionState.outputPaths.forEach(path -> writes.add(toPath(path)));
+        return writes;
+    }
+
+    private class SkippedExecution<E extends Exception> extends Execution<E> {
+
+        private final ExceptionFactory<E> efactory;
+        private final BuilderExecutionState oldExecutionState;
+        private final BuilderInputs inputs;
+        private final MessageCollector messages;
+        private final ExecutionMetrics metrics;
+
+        SkippedExecution(
+                ExceptionFactory<E> efactory,
+                BuilderExecutionState oldExecutionState,
+                BuilderInputs inputs,
+                MessageCollector messages,
+                ExecutionMetrics metrics,
+                Set<Path> reads) {
+            super(reads, Collections.emptySet(), false);
+            this.efactory = efactory;
+            this.oldExecutionState = oldExecutionState;
+            this.inputs = inputs;
+            this.messages = messages;
+            this.metrics = metrics;
         }
-        // allow read from classpath entries
-        classpath.forEach(f -> {
-            if (Files.isDirectory(f)) {
-                contextBuilder.addInputDirectory(f);
+
+        @Override
+        public void updateProject() {
+            if (inputs != null) {
+                inputs.resourceRoots.forEach(resourceConsumer);
+                inputs.compileSourceRoots.forEach(BuilderRunner.this::addCompileSourceRootToProject);
             } else {
-                contextBuilder.addInputFile(f);
+                oldExecutionState.resourceRoots.forEach(resourceConsumer);
+                oldExecutionState.compileSourceRoots.forEach(BuilderRunner.this::addCompileSourceRootToProject);
             }
-        });
-
-        if (inputs.isNonDeterministic()) {
-            contextBuilder.addReadExceptions(enforcerConfig.getReadExceptions(builderId));
-            contextBuilder.addReadAndTrackExceptions(readAndTrackExceptions);
-            contextBuilder.addWriteExceptions(enforcerConfig.getWriteExceptions(builderId));
-            contextBuilder.addExecExceptions(enforcerConfig.getExecExceptions(builderId));
-            contextBuilder.setNetworkAccessAllowed(enforcerConfig.allowNetworkAccess(builderId));
-        } else if (enforcerConfig.hasEntriesFor(builderId)) {
-            throw efactory.exception(
-                    String.format(
-                            "Found whitelist entries in.mvn/builder-whitelist.config for builder not annotated with @NonDeterministic: %s",
-                            builderId),
-                    null);
-        } else if (enforcerConfig.hasWildcardEntries()) {
-            contextBuilder.addReadExceptions(enforcerConfig.getReadExceptions(ALL_BUILDERS));
-            contextBuilder.addWriteExceptions(enforcerConfig.getWriteExceptions(ALL_BUILDERS));
-            contextBuilder.addExecExceptions(enforcerConfig.getExecExceptions(ALL_BUILDERS));
-        }
-
-        // allow filesystem access according to declared builder inputs and outputs
-        contextBuilder.addInputFiles(inputs.getInputFiles());
-        inputs.getOutputDirectories().forEach(d -> contextBuilder.addOutputDirectory(d));
-        inputs.getOutputFiles().forEach(f -> contextBuilder.addOutputFile(f));
-        String tempDir = System.getProperty("java.io.tmpdir");
-        if (tempDir != null && !tempDir.isEmpty()) {
-            // need to consider both absolute and canonical paths (i.e. with symlinks resolved)
-            contextBuilder.addTemporaryDirectory(Paths.get(tempDir));
+        }
+
+        @Override
+        public void run() {}
+
+        @Override
+        public boolean isFailed() {
+            return false;
+        }
+
+        @Override
+        public BuilderContext complete() throws E {
+            metrics.add(Counter.OUTPUTS, oldExecutionState.outputPaths.size());
+            MetricsRegistry.get().record(metrics);
+            List<Message> oldMessages;
             try {
-                contextBuilder.addTemporaryDirectory(Paths.get(tempDir).toRealPath());
+                oldMessages = oldExecutionState.getMessages();
             } catch (IOException e) {
-                // couldn't determine tmpdir canonical path, should be safe to ignore
+                // only possible in suppressed workspace, otherwise unreadable messages trigger execution
+                log.warn("Could not read incremental build state messages", e);
+                oldMessages = Collections.emptyList();
             }
+            messages.replayMessages(efactory, oldMessages); // fails the build if there
+            // were errors
+            return null;
+        }
+    }
+
+    private class FullExecution<E extends Exception> extends Execution<E> {
+
+        private final ExceptionFactory<E> efactory;
+        private final BuilderExecutionState oldExecutionState;
+        private final BuilderWorkspace builderWorkspace;
+        private final MessageCollector messages;
+        private final BuilderInputs inputs;
+        private final Digest inputsDigest;
+        private final InputFingerprint inputFingerprint;
+        private final Serializable classpathDigest;
+        private final Collection<String> readAndTrackExceptions;
+        private final Path inprogressFile;
+
+        // changed and removed incremental inputs, null if the builder runs from scratch
+        private final Set<Path> changedInputs;
+        private final Set<Path> removedInputs;
+
+        // shared output cache and cache key of this execution, null if the execution is not cached
+        private final BuilderOutputCache outputCache;
+        private final String cacheKey;
+
+        private final ExecutionMetrics metrics;
+
+        private BuilderContext builderContext;
+
+        // volatile, the execution can run on a different thread
+        private volatile Throwable failure;
+
+        FullExecution(
+                ExceptionFactory<E> efactory,
+                BuilderExecutionState oldExecutionState,
+                BuilderWorkspace builderWorkspace,
+                MessageCollector messages,
+                BuilderInputs inputs,
+                Digest inputsDigest,
+                InputFingerprint inputFingerprint,
+                Serializable classpathDigest,
+                Collection<String> readAndTrackExceptions,
+                Path inprogressFile,
+                Set<Path> changedInputs,
+                Set<Path> removedInputs,
+                BuilderOutputCache outputCache,
+                String cacheKey,
+                ExecutionMetrics metrics,
+                Set<Path> reads) {
+            super(reads, getOutputPaths(inputs, oldExecutionState), inputs.isNonDeterministic());
+            this.efactory = efactory;
+            this.oldExecutionState = oldExecutionState;
+            this.builderWorkspace = builderWorkspace;
+            this.messages = messages;
+            this.inputs = inputs;
+            this.inputsDigest = inputsDigest;
+            this.inputFingerprint = inputFingerprint;
+            this.classpathDigest = classpathDigest;
+            this.readAndTrackExceptions = readAndTrackExceptions;
+            this.inprogressFile = inprogressFile;
+            this.changedInputs = changedInputs;
+            this.removedInputs = removedInputs;
+            this.outputCache = outputCache;
+            this.cacheKey = cacheKey;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void updateProject() {
+            inputs.getResourceRoots().forEach(resourceConsumer);
+            inputs.getCompileSourceRoots().forEach(BuilderRunner.this::addCompileSourceRootToProject);
         }
 
-        InprogressStateWriter inprogressWriter = BuilderExecutionState.NOOP_INPROGRESSWRITER;
-        if (inprogressFile != null) {
+        @Override
+        public void run() {
             try {
-                inprogressWriter = BuilderExecutionState.newInprogressWriter(inprogressFile);
-            } catch (IOException e) {
-                throw efactory.exception("Could not persist incremental build state", e);
+                builderContext = runBuilder();
+            } catch (Throwable e) {
+                // reported on the thread that completes the execution
+                failure = e;
             }
         }
-        contextBuilder.setInprogressWriter(inprogressWriter);
 
-        final BuilderContext builderContext = contextBuilder.build();
+        @Override
+        public boolean isFailed() {
+            return failure != null;
+        }
 
-        try {
-            builderContext.enter();
+        private BuilderContext runBuilder() throws E {
+            // outputs of unchanged incremental inputs are kept, see IIncrementalDirectoryFiles
+            final Map<String, Collection<String>> carriedInputOutputs = new LinkedHashMap<>();
+            final Set<String> carriedOutputs = new LinkedHashSet<>();
+            if (changedInputs != null) {
+                oldExecutionState.inputOutputs.forEach((input, outputs) -> {
+                    Path path = Paths.get(input);
+                    if (!changedInputs.contains(path) && !removedInputs.contains(path)) {
+                        carriedInputOutputs.put(input, outputs);
+                        carriedOutputs.addAll(outputs);
+                    }
+                });
+                // outputs shared with changed or removed inputs are regenerated
+                oldExecutionState.inputOutputs.forEach((input, outputs) -> {
+                    if (!carriedInputOutputs.containsKey(input)) {
+                        carriedOutputs.removeAll(outputs);
+                    }
+                });
+                carriedInputOutputs.replaceAll((input, outputs) -> outputs.stream() //
+                        .filter(carriedOutputs::contains)
+                        .collect(Collectors.toList()));
+
+                // outputs of changed and removed inputs, and outputs not associated with any input
+                Set<String> staleOutputs = new LinkedHashSet<>(oldExecutionState.outputPaths);
+                staleOutputs.removeAll(carriedOutputs);
+                deleteOutputs(staleOutputs, efactory);
+                // directories that still have carried outputs
+                staleOutputs.stream()
+                        .filter(output -> Files.exists(toPath(output)))
+                        .forEach(carriedOutputs::add);
+
+                inputs.setIncrementalChanges(changedInputs, removedInputs);
+                List<Message> oldMessages;
+                try {
+                    oldMessages = oldExecutionState.getMessages();
+                } catch (IOException e) {
+                    throw efactory.exception("Could not read incremental build state messages", e);
+                }
+                messages.carryMessages(oldMessages.stream()
+                        .filter(m -> carriedInputOutputs.containsKey(m.file) || carriedOutputs.contains(m.file))
+                        .collect(Collectors.toList()));
+            } else {
+                deleteOutputs(oldExecutionState.outputPaths, efactory);
+            }
+
+            if (outputCache != null && restoreCachedOutputs()) {
+                return null;
+            }
+
+            try {
+                // declared output directories are created before the builder runs. builders hand these
+                // directories to tools and plain java.io APIs that expect them to exist, and the directories
+                // are registered with the workspace as outputs even when the builder writes nothing to them.
+                // creating them lazily from checkAndRecordWrite does not work for such builders, they fail
+                // on the missing directory before they attempt the first write
+                for (Path file : inputs.getOutputDirectories()) {
+                    Files.createDirectories(file);
+                    workspace.processOutput(file.toFile());
+                }
+                // same for parents of declared output files, which builders open with new FileOutputStream(file)
+                for (Path file : inputs.getOutputFiles()) {
+                    Files.createDirectories(file.getParent());
+                    workspace.processOutput(file.getParent().toFile());
+                }
+            } catch (IOException e) {
+                throw efactory.exception("Unable to create Output Directories", e);
+            }
+
+            BuilderContext.Builder contextBuilder =
+                    BuilderContext.builder(log, goal, sessionBasedir(), messages, builderWorkspace);
+            // allow read from global classpath entries
+            if (sessionClasspathMatcher != null) {
+                contextBuilder.addInputMatcher(sessionClasspathMatcher);
+            }
+            // allow read from classpath entries
+            classpath.forEach(f -> {
+                if (Files.isDirectory(f)) {
+                    contextBuilder.addInputDirectory(f);
+                } else {
+                    contextBuilder.addInputFile(f);
+                }
+            });
+
+            if (inputs.isNonDeterministic()) {
+                contextBuilder.addReadExceptions(enforcerConfig.getReadExceptionsMatcher(builderId));
+                contextBuilder.addReadAndTrackExceptions(readAndTrackExceptions);
+                contextBuilder.addWriteExceptions(enforcerConfig.getWriteExceptionsMatcher(builderId));
+                contextBuilder.addExecExceptions(enforcerConfig.getExecExceptions(builderId));
+                contextBuilder.setNetworkAccessAllowed(enforcerConfig.allowNetworkAccess(builderId));
+            } else if (enforcerConfig.hasEntriesFor(builderId)) {
+                throw efactory.exception(
+                        String.format(
+                                "Found whitelist entries in.mvn/builder-whitelist.config for builder not annotated with @NonDeterministic: %s",
+                                builderId),
+                        null);
+            } else if (enforcerConfig.hasWildcardEntries()) {
+                contextBuilder.addReadExceptions(enforcerConfig.getReadExceptionsMatcher(ALL_BUILDERS));
+                contextBuilder.addWriteExceptions(enforcerConfig.getWriteExceptionsMatcher(ALL_BUILDERS));
+                contextBuilder.addExecExceptions(enforcerConfig.getExecExceptions(ALL_BUILDERS));
+            }
+
+            // allow filesystem access according to declared builder inputs and outputs
+            contextBuilder.addInputFiles(inputs.getInputFiles());
+            carriedOutputs.forEach(output -> contextBuilder.addInputFile(toPath(output)));
+            inputs.getOutputDirectories().forEach(d -> contextBuilder.addOutputDirectory(d));
+            inputs.getOutputFiles().forEach(f -> contextBuilder.addOutputFile(f));
+            String tempDir = System.getProperty("java.io.tmpdir");
+            if (tempDir != null && !tempDir.isEmpty()) {
+                // need to consider both absolute and canonical paths (i.e. with symlinks resolved)
+                contextBuilder.addTemporaryDirectory(Paths.get(tempDir));
+                try {
+                    contextBuilder.addTemporaryDirectory(Paths.get(tempDir).toRealPath());
+                } catch (IOException e) {
+                    // couldn't determine tmpdir canonical path, should be safe to ignore
+                }
+            }
+
+            InprogressStateWriter inprogressWriter = BuilderExecutionState.NOOP_INPROGRESSWRITER;
+            if (inprogressFile != null) {
+                try {
+                    inprogressWriter = BuilderExecutionState.newInprogressWriter(inprogressFile);
+                } catch (IOException e) {
+                    throw efactory.exception("Could not persist incremental build state", e);
+                }
+            }
+            contextBuilder.setInprogressWriter(inprogressWriter);
+            contextBuilder.setMetrics(metrics);
+
+            final BuilderContext builderContext = contextBuilder.build();
 
             try {
-                Object builderInstance = inputs.newBuilder();
+                builderContext.enter();
 
-                Method builderMethod = getBuilderMethodForGoal(builderType, goal, efactory);
+                try {
+                    Object builderInstance = inputs.newBuilder();
 
-                builderMethod.invoke(builderInstance);
+                    Method builderMethod = getBuilderMethodForGoal(builderType, goal, efactory);
 
-                // NB: keep temporary files if the builder failed, useful for debugging
-                for (String file : builderContext.getTemporaryFiles()) {
-                    Path filePath = toPath(file);
-                    if (Files.isDirectory(filePath)) {
-                        FileUtils.deleteDirectory(file);
-                    } else {
-                        Files.deleteIfExists(filePath);
+                    long start = metrics.start();
+                    try {
+                        builderMethod.invoke(builderInstance);
+                    } finally {
+                        metrics.stop(Timer.EXECUTION, start);
                     }
+
+                    // NB: keep temporary files if the builder failed, useful for debugging
+                    for (String file : builderContext.getTemporaryFiles()) {
+                        Path filePath = toPath(file);
+                        if (Files.isDirectory(filePath)) {
+                            FileUtils.deleteDirectory(file);
+                        } else {
+                            Files.deleteIfExists(filePath);
+                        }
+                    }
+                } catch (ReflectiveOperationException | IllegalArgumentException | IOException e) {
+                    if (e.getCause() instanceof IncrementalBuildException) {
+                        // could not write builder execution undo log file, terminate immediately
+                        throw efactory.exception(
+                                "Could not persist incremental build state",
+                                e.getCause().getCause());
+                    }
+                    Throwable executionFailure = getRootCause(e);
+                    if (executionFailure instanceof Error) {
+                        throw (Error) executionFailure; // assume errors are really bad, let the
+                        // outer guy deal with them
+                    }
+                    messages.error(
+                            defaultFile, defaultLine, defaultColumn, executionFailure.getMessage(), executionFailure);
                 }
-            } catch (ReflectiveOperationException | IllegalArgumentException | IOException e) {
-                if (e.getCause() instanceof IncrementalBuildException) {
-                    // could not write builder execution undo log file, terminate immediately
-                    throw efactory.exception(
-                            "Could not persist incremental build state",
-                            e.getCause().getCause());
-                }
-                Throwable executionFailure = getRootCause(e);
-                if (executionFailure instanceof Error) {
-                    throw (Error) executionFailure; // assume errors are really bad, let the
-                    // outer guy deal with them
+
+            } finally {
+                builderContext.leave();
+
+                // avoid open file leaks in case of builder enforcement violations
+                try {
+                    inprogressWriter.close();
+                } catch (IOException e) {
+                    throw efactory.exception("Could not persist incremental build state", e);
                 }
-                messages.error(
-                        defaultFile, defaultLine, defaultColumn, executionFailure.getMessage(), executionFailure);
             }
 
-        } finally {
-            builderContext.leave();
+            // TODO decide if violations should be persisted/replayed as other build errors
+            Set<EnforcerViolation> violations = builderContext.getViolations();
+            if (!violations.isEmpty()) {
+                throw new SecurityException(getFormattedViolationsMessage(violations, builderContext));
+            }
 
-            // avoid open file leaks in case of builder enforcement violations
-            try {
-                inprogressWriter.close();
-            } catch (IOException e) {
-                throw efactory.exception("Could not persist incremental build state", e);
+            if (stateFile != null) {
+                Collection<String> outputPaths = getWrittenFilesForDeletion(builderContext);
+                outputPaths.addAll(carriedOutputs);
+                metrics.add(Counter.OUTPUTS, outputPaths.size());
+                long start = metrics.start();
+                try {
+                    BuilderExecutionState.store(
+                            stateFile, //
+                            inputsDigest, //
+                            propertiesDigest(builderContext.getReadProperties()), //
+                            classpathDigest, //
+                            outputPaths, //
+                            inputs.getCompileSourceRoots(), //
+                            inputs.getResourceRoots(), //
+                            messages.getCollectedMessages(), //
+                            getExceptionsDigest(readAndTrackExceptions), //
+                            inputFingerprint, //
+                            inputs.isIncremental() ? getInputOutputs(builderContext, carriedInputOutputs) : null);
+
+                    // delete inprogress file after execute state was persisted
+                    // the execution has fully completed and undo will not be necessary
+                    Files.delete(inprogressFile);
+                } catch (IOException e) {
+                    throw efactory.exception("Could not persist incremental build state", e);
+                } finally {
+                    metrics.stop(Timer.STATE_STORE, start);
+                }
+
+                if (outputCache != null
+                        && messages.getCollectedMessages().stream()
+                                .noneMatch(m -> m.severity == MessageSeverity.ERROR)) {
+                    try {
+                        outputCache.put(
+                                cacheKey,
+                                propertiesDigest(builderContext.getReadProperties()),
+                                messages.getCollectedMessages(),
+                                outputPaths);
+                    } catch (IOException e) {
+                        log.warn("Could not store builder outputs in cache {}", outputCache, e);
+                    }
+                }
             }
-        }
 
-        // TODO decide if violations should be persisted/replayed as other build errors
-        Set<EnforcerViolation> violations = builderContext.getViolations();
-        if (!violations.isEmpty()) {
-            throw new SecurityException(getFormattedViolationsMessage(violations, builderContext));
+            return builderContext;
         }
 
-        List<Message> collectedMessages = messages.getCollectedMessages();
+        /**
+         * Restores outputs of the execution from the shared output cache. Returns {@code false} if the
+         * cache does not have the outputs and the builder needs to run.
+         */
+        private boolean restoreCachedOutputs() throws E {
+            BuilderOutputCache.Restored restored;
+            long start = metrics.start();
+            try {
+                restored = outputCache.restore(cacheKey, workspace, properties -> propertiesDigest(properties.keySet())
+                        .equals(properties));
+            } catch (IOException e) {
+                log.warn("Could not restore builder outputs from cache {}", outputCache, e);
+                return false;
+            } finally {
+                metrics.stop(Timer.EXECUTION, start);
+            }
+            if (restored == null) {
+                return false;
+            }
 
-        if (stateFile != null) {
+            log.info("Restored {} builder outputs from cache {}", restored.outputPaths.size(), outputCache);
+            metrics.setOutcome("restored: output cache");
+            metrics.add(Counter.OUTPUTS, restored.outputPaths.size());
+            messages.carryMessages(restored.messages);
+            start = metrics.start();
             try {
                 BuilderExecutionState.store(
                         stateFile, //
                         inputsDigest, //
-                        propertiesDigest(builderContext.getReadProperties()), //
+                        restored.properties, //
                         classpathDigest, //
-                        getWrittenFilesForDeletion(builderContext), //
+                        restored.outputPaths, //
                         inputs.getCompileSourceRoots(), //
                         inputs.getResourceRoots(), //
-                        collectedMessages, //
-                        getExceptionsDigest(readAndTrackExceptions));
-
-                // delete inprogress file after execute state was persisted
-                // the execution has fully completed and undo will not be necessary
-                Files.delete(inprogressFile);
+                        restored.messages, //
+                        getExceptionsDigest(readAndTrackExceptions), //
+                        inputFingerprint, //
+                        null);
             } catch (IOException e) {
                 throw efactory.exception("Could not persist incremental build state", e);
+            } finally {
+                metrics.stop(Timer.STATE_STORE, start);
             }
+            return true;
         }
 
-        if (messageSink != null) {
-            clearStaleMessages(oldExecutionState);
-            collectedMessages.forEach(m -> messageSink.message(
-                    new File(m.file), m.line, m.column, m.message, toMessageSinkSeverity(m.severity), m.cause));
-
-        } else {
-            messages.throwExceptionIfThereWereErrorMessages(efactory);
+        private Map<String, Collection<String>> getInputOutputs(
+                BuilderContext builderContext, Map<String, Collection<String>> carriedInputOutputs) {
+            Map<String, Collection<String>> inputOutputs = new LinkedHashMap<>();
+            for (Path path : inputs.getIncrementalInputFiles()) {
+                String input = path.toString();
+                Collection<String> outputs = carriedInputOutputs.get(input);
+                if (outputs == null) {
+                    Set<String> written = builderContext.getInputOutputs().get(input);
+                    outputs = written != null ? new ArrayList<>(written) : Collections.emptyList();
+                }
+                inputOutputs.put(input, outputs);
+            }
+            return inputOutputs;
         }
 
-        return builderContext;
-    }
+        @Override
+        public BuilderContext complete() throws E {
+            MetricsRegistry.get().record(metrics);
+
+            Throwable failure = this.failure;
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure != null) {
+                // runBuilder only throws checked exceptions created by the exception factory
+                @SuppressWarnings("unchecked")
+                E exception = (E) failure;
+                throw exception;
+            }
 
-    private <E extends Exception> BuilderContext skippedBuilderExecution(
-            ExceptionFactory<E> efactory,
-            BuilderExecutionState oldExecutionState,
-            BuilderInputs inputs,
-            final MessageCollector messages)
-            throws E {
+            if (messageSink != null) {
+                clearStaleMessages(oldExecutionState);
+                messages.getCollectedMessages()
+                        .forEach(m -> messageSink.message(
+                                new File(m.file),
+                                m.line,
+                                m.column,
+                                m.message,
+                                toMessageSinkSeverity(m.severity),
+                                m.cause));
 
-        if (inputs != null) {
-            inputs.resourceRoots.forEach(this.resourceConsumer);
-            inputs.compileSourceRoots.forEach(this::addCompileSourceRootToProject);
-        } else {
-            oldExecutionState.resourceRoots.forEach(this.resourceConsumer);
-            oldExecutionState.compileSourceRoots.forEach(this::addCompileSourceRootToProject);
-        }
+            } else {
+                messages.throwExceptionIfThereWereErrorMessages(efactory);
+            }
 
-        messages.replayMessages(efactory, oldExecutionState.messages); // fails the build if there
-        // were errors
-        return null;
+            return builderContext;
+        }
     }
 
     private void clearStaleMessages(BuilderExecutionState oldExecutionState) {
@@ -564,30 +1138,21 @@ public class BuilderRunner {
     private <E extends Exception> void deleteOutputs(Collection<String> outputPaths, ExceptionFactory<E> efactory)
             throws E {
 
-        List<Path> directories = new ArrayList<>();
-        for (String oldOutput : outputPaths) {
-            try {
-                Path oldOutputPath = toPath(oldOutput);
-                if (!Files.isDirectory(oldOutputPath)) {
-                    workspace.deleteFile(new File(oldOutput));
-                } else {
-                    directories.add(oldOutputPath);
-                }
-            } catch (IOException e) {
-                throw efactory.exception("Could not delete builder output", e);
-            }
-        }
+        // reverse path order visits directory contents before the directory itself
+        List<Path> oldOutputs = new ArrayList<>(outputPaths.size());
+        outputPaths.forEach(oldOutput -> oldOutputs.add(toPath(oldOutput)));
+        oldOutputs.sort(Comparator.reverseOrder());
 
-        directories.sort((s1, s2) -> {
-            if (s1.getNameCount() != s2.getNameCount()) {
-                return s2.getNameCount() - s1.getNameCount();
-            }
-            return s2.compareTo(s1);
-        });
-        for (Path oldDirectory : directories) {
+        // directories known to be not empty, i.e. with retained old output directories
+        Set<Path> retained = new HashSet<>();
+        for (Path oldOutput : oldOutputs) {
             try {
-                if (isEmpty(oldDirectory)) {
-                    workspace.deleteFile(oldDirectory.toFile());
+                if (!Files.isDirectory(oldOutput)) {
+                    workspace.deleteFile(oldOutput.toFile());
+                } else if (!retained.contains(oldOutput) && isEmpty(oldOutput)) {
+                    workspace.deleteFile(oldOutput.toFile());
+                } else {
+                    retained.add(oldOutput.getParent());
                 }
             } catch (IOException e) {
                 throw efactory.exception("Could not delete builder output", e);
@@ -608,6 +1173,51 @@ public class BuilderRunner {
                 .collect(Collectors.toCollection(LinkedHashSet::new));
     }
 
+    private boolean isUpToDate(
+            BuilderExecutionState oldExecutionState,
+            Serializable classpathDigest,
+            Collection<String> readAndTrackExceptions) {
+        return getExceptionsDigest(readAndTrackExceptions).equals(oldExecutionState.exceptionsDigest)
+                && propertiesDigest(oldExecutionState.properties.keySet()).equals(oldExecutionState.properties) //
+                && classpathDigest.equals(oldExecutionState.classpathDigest)
+                && hasMessages(oldExecutionState);
+    }
+
+    /**
+     * Returns {@code true} if messages of the previous execution can be read. Messages are replayed or
+     * carried over by skipped and incremental executions, the builder is executed again if the messages
+     * file is missing, incomplete or does not match the state.
+     */
+    private boolean hasMessages(BuilderExecutionState oldExecutionState) {
+        try {
+            oldExecutionState.getMessages();
+            return true;
+        } catch (IOException e) {
+            log.info("Could not read incremental build state messages, executing the builder: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private <E extends Exception> Serializable getClasspathDigest(
+            ExceptionFactory<E> efactory, ExecutionMetrics metrics) throws E {
+        long start = metrics.start();
+        try {
+            return classpathDigester.digest(classpath);
+        } catch (IOException e) {
+            throw efactory.exception("Could not compute classpath digest", e);
+        } finally {
+            metrics.stop(Timer.CLASSPATH_DIGEST, start);
+        }
+    }
+
+    private <E extends Exception> Collection<String> getReadAndTrackExceptions(ExceptionFactory<E> efactory) throws E {
+        try {
+            return getReadAndTrackExceptions();
+        } catch (ExpressionEvaluationException e) {
+            throw efactory.exception("Unable to evaluate Read and Track exceptions", e);
+        }
+    }
+
     private Collection<String> getReadAndTrackExceptions() throws ExpressionEvaluationException {
         ExpressionEvaluator evaluator = new ExpressionEvaluator(Arrays.asList(propertyResolver));
         Collection<String> exceptions = enforcerConfig.getReadAndTrackExceptions(builderId);
@@ -671,18 +1281,13 @@ public class BuilderRunner {
 
     static <E extends Exception> Method getBuilderMethodForGoal(
             final Class<?> type, final String goal, ExceptionFactory<E> efactory) throws E {
-        try {
-            Method method = streamMethods(type) //
-                    .filter(m -> isbuilderAnnotationPresentWithGoal(m, goal)) //
-                    .findFirst() //
-                    .get();
-            if (!method.isAccessible()) {
-                method.setAccessible(true);
-            }
-            return method;
-        } catch (NoSuchElementException e) {
-            throw efactory.exception(String.format("Could not find method with @Builder(name=%s) annotation", goal), e);
+        Method method = BuilderModel.get(type).getBuilderMethod(goal);
+        if (method == null) {
+            throw efactory.exception(
+                    String.format("Could not find method with @Builder(name=%s) annotation", goal),
+                    new NoSuchElementException());
         }
+        return method;
     }
 
     static Stream<Method> streamMethods(Class<?> klass) {
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.internal;
+
+import io.takari.builder.enforcer.PolicyContextPreserver;
+import io.takari.builder.internal.BuilderRunner.Execution;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs independent builder executions concurrently.
+ *
+ * Executions are submitted in builder execution order. Each submitted execution runs after all
+ * previously submitted executions it conflicts with, i.e. executions that read or write files it
+ * writes, or write files it reads. Non-deterministic builders can access undeclared files and
+ * conflict with all other executions. An execution that reads files written by a still running
+ * execution is prepared again once the running execution completes, so its inputs are never
+ * computed from partially written files.
+ *
+ * Project model updates, builder messages and failures are applied on the submitting thread in
+ * submission order, same as if the builders run sequentially. This class is not thread safe, all
+ * methods must be called from the same thread.
+ */
+public class BuilderScheduler<E extends Exception> {
+
+    @FunctionalInterface
+    public static interface Preparation<E extends Exception> {
+        Execution<E> prepare() throws E;
+    }
+
+    private final Executor executor;
+
+    // submitted but not yet completed executions, in submission order
+    private final List<Job<E>> jobs = new ArrayList<>();
+
+    public BuilderScheduler(Executor executor) {
+        this.executor = executor;
+    }
+
+    public void submit(Preparation<E> preparation) throws E {
+        Execution<E> execution = preparation.prepare();
+        List<Job<E>> conflicts;
+        while (!(conflicts = getConflicts(execution.getReads(), execution.isExclusive(), false)).isEmpty()) {
+            // builder inputs could have been computed while the files were being written
+            conflicts.forEach(Job::await);
+            if (conflicts.stream().anyMatch(job -> job.execution.isFailed())) {
+                join(); // throws the failure
+            }
+            execution = preparation.prepare();
+        }
+
+        execution.updateProject();
+
+        Job<E> job = new Job<>(execution);
+        List<Job<E>> predecessors = getConflicts(execution.getWrites(), execution.isExclusive(), true);
+        Runnable task = new PolicyContextPreserver().wrap(() -> {
+            if (predecessors.stream().noneMatch(p -> p.execution.isFailed())) {
+                job.execution.run();
+            }
+        });
+        job.future = CompletableFuture.allOf(
+                        predecessors.stream().map(p -> p.future).toArray(CompletableFuture[]::new))
+                .thenRunAsync(task, executor);
+        jobs.add(job);
+    }
+
+    /**
+     * Waits for all submitted executions and completes them in submission order. Throws the first
+     * failure.
+     */
+    public void join() throws E {
+        List<Job<E>> jobs = new ArrayList<>(this.jobs);
+        this.jobs.clear();
+        try {
+            for (Job<E> job : jobs) {
+                job.await();
+                job.execution.complete();
+            }
+        } finally {
+            // never leave builders running behind a failure
+            jobs.forEach(Job::await);
+        }
+    }
+
+    /**
+     * Waits for all submitted executions without completing them. Used when the build already
+     * failed.
+     */
+    public void discard() {
+        List<Job<E>> jobs = new ArrayList<>(this.jobs);
+        this.jobs.clear();
+        jobs.forEach(Job::await);
+    }
+
+    private List<Job<E>> getConflicts(Collection<Path> paths, boolean exclusive, boolean includeReads) {
+        List<Job<E>> conflicts = new ArrayList<>();
+        if (jobs.isEmpty()) {
+            return conflicts;
+        }
+        PathIndex index = new PathIndex(paths);
+        for (Job<E> job : jobs) {
+            if (job.future.isDone()) {
+                continue;
+            }
+            if (exclusive
+                    || job.execution.isExclusive()
+                    || index.overlaps(job.execution.getWrites())
+                    || (includeReads && index.overlaps(job.execution.getReads()))) {
+                conflicts.add(job);
+            }
+        }
+        return conflicts;
+    }
+
+    private static class Job<E extends Exception> {
+        final Execution<E> execution;
+
+        CompletableFuture<Void> future;
+
+        Job(Execution<E> execution) {
+            this.execution = execution;
+        }
+
+        void await() {
+            future.join(); // executions do not fail exceptionally
+        }
+    }
+
+    /**
+     * Answers if any of the indexed paths is the same as, a parent of or a child of another path.
+     */
+    static class PathIndex {
+        private final Set<Path> paths = new HashSet<>();
+
+        private final Set<Path> parents = new HashSet<>();
+
+        PathIndex(Collection<Path> paths) {
+            for (Path path : paths) {
+                path = normalize(path);
+                this.paths.add(path);
+                for (Path parent = path.getParent(); parent != null && parents.add(parent); ) {
+                    parent = parent.getParent();
+                }
+            }
+        }
+
+        boolean overlaps(Collection<Path> others) {
+            for (Path other : others) {
+                if (overlaps(other)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean overlaps(Path other) {
+            other = normalize(other);
+            if (parents.contains(other)) {
+                return true;
+            }
+            for (Path path = other; path != null; path = path.getParent()) {
+                if (paths.contains(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static Path normalize(Path path) {
+            return path.toAbsolutePath().normalize();
+        }
+    }
+}
@@ -7,6 +7,8 @@
  */
 package io.takari.builder.internal;
 
+import io.takari.builder.internal.metrics.ExecutionMetrics;
+import io.takari.builder.internal.metrics.ExecutionMetrics.Timer;
 import io.takari.builder.internal.workspace.FilesystemWorkspace;
 import io.takari.incrementalbuild.workspace.Workspace;
 import io.takari.incrementalbuild.workspace.Workspace.FileVisitor;
@@ -27,6 +29,9 @@ public class BuilderWorkspace {
     private final FilesystemWorkspace filesystem = new FilesystemWorkspace();
     private final Path projectBasedir;
     private final BuilderExecutionState oldExecutionState;
+    private InputFingerprint.Recorder fingerprintRecorder;
+
+    private ExecutionMetrics metrics = ExecutionMetrics.DISABLED;
 
     public BuilderWorkspace(Workspace workspace, Path basedir, BuilderExecutionState oldExecutionState) {
         this.projectBasedir = basedir.normalize();
@@ -42,7 +47,35 @@ public class BuilderWorkspace {
         }
     }
 
+    /**
+     * Sets recorder of filesystem observations made through this workspace, {@code null} stops
+     * recording.
+     */
+    void setFingerprintRecorder(InputFingerprint.Recorder fingerprintRecorder) {
+        this.fingerprintRecorder = fingerprintRecorder;
+    }
+
+    void setMetrics(ExecutionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     public Stream<Path> walk(Path basedir) throws IOException {
+        long start = metrics.start();
+        try {
+            return doWalk(basedir);
+        } finally {
+            metrics.stop(Timer.WALK, start);
+        }
+    }
+
+    private Stream<Path> doWalk(Path basedir) throws IOException {
+        if (fingerprintRecorder != null) {
+            if (getMode(basedir) == Mode.NORMAL) {
+                fingerprintRecorder.directoryTree(basedir);
+            } else {
+                fingerprintRecorder.untrusted();
+            }
+        }
         switch (getMode(basedir)) {
             case SUPPRESSED:
             // workspace.walk will walk all resources to calculate inputs, but build will still be
@@ -70,18 +103,27 @@ public class BuilderWorkspace {
     }
 
     public boolean isRegularFile(Path path) {
+        record(path);
         return getWorkspace(path).isRegularFile(path.toFile());
     }
 
     public boolean exists(Path path) {
+        record(path);
         return getWorkspace(path).isRegularFile(path.toFile())
                 || getWorkspace(path).isDirectory(path.toFile());
     }
 
     public boolean isDirectory(Path path) {
+        record(path);
         return getWorkspace(path).isDirectory(path.toFile());
     }
 
+    private void record(Path path) {
+        if (fingerprintRecorder != null) {
+            fingerprintRecorder.file(path);
+        }
+    }
+
     public void processOutput(Path path) {
         getWorkspace(path).processOutput(path.toFile());
     }
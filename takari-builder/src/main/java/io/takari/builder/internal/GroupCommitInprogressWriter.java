@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.internal;
+
+import io.takari.builder.internal.BuilderExecutionState.InprogressStateWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * "Undo" log writer that batches concurrent writes.
+ *
+ * Each record is written to the operating system before {@link #writePath(String)} returns, which
+ * guarantees the record survives jvm crash or kill if the corresponding output file was created.
+ * Concurrent callers are group-committed: records are appended to an in-memory buffer and the first
+ * caller to find no write in progress writes all buffered records, including records of other
+ * waiting callers, in a single write call.
+ *
+ * Records are not forced to the storage device on each write. Instead, a background thread forces
+ * the log at a coarse interval and the log is always forced before it is closed, i.e. before the
+ * builder execution completes.
+ */
+class GroupCommitInprogressWriter implements InprogressStateWriter {
+
+    static final long SYNC_INTERVAL_MILLIS = 1000;
+
+    private static final ScheduledExecutorService SYNCER;
+
+    static {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "takari-builder undo log sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        SYNCER = executor;
+    }
+
+    private final FileChannel channel;
+
+    private final Function<String, byte[]> encoder;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition committed = lock.newCondition();
+
+    // guarded by lock
+
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    private long appended; // sequence number of the last appended record
+
+    private long written; // sequence number of the last record written to the channel
+
+    private boolean writing; // a caller is writing pending records
+
+    private boolean dirty; // records were written since last sync
+
+    private IOException failure;
+
+    private final ScheduledFuture<?> sync;
+
+    public GroupCommitInprogressWriter(Path file, byte[] header, Function<String, byte[]> encoder) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.encoder = encoder;
+        try {
+            writeFully(ByteBuffer.wrap(header));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.sync = SYNCER.scheduleWithFixedDelay(
+                this::syncQuietly, SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void writePath(String path) throws IncrementalBuildException {
+        byte[] record = encoder.apply(path);
+        lock.lock();
+        try {
+            pending.write(record, 0, record.length);
+            long sequence = ++appended;
+            while (written < sequence) {
+                if (failure != null) {
+                    throw new IncrementalBuildException(failure);
+                }
+                if (writing) {
+                    committed.awaitUninterruptibly();
+                    continue;
+                }
+                writing = true;
+                ByteBuffer batch = ByteBuffer.wrap(pending.toByteArray());
+                long batchSequence = appended;
+                pending.reset();
+                IOException error = null;
+                lock.unlock();
+                try {
+                    writeFully(batch);
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    lock.lock();
+                }
+                writing = false;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    written = batchSequence;
+                    dirty = true;
+                }
+                committed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            lock.lock();
+            try {
+                if (failure == null) {
+                    failure = e;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void sync() throws IOException {
+        lock.lock();
+        try {
+            if (!dirty || !channel.isOpen()) {
+                return;
+            }
+            dirty = false;
+        } finally {
+            lock.unlock();
+        }
+        // concurrent writes are fine, records written after this point are forced by the next sync
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync.cancel(false);
+        try {
+            lock.lock();
+            try {
+                if (failure != null) {
+                    throw failure;
+                }
+            } finally {
+                lock.unlock();
+            }
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.internal;
+
+import io.takari.builder.IArtifactMetadata;
+import io.takari.builder.ResolutionScope;
+import io.takari.builder.internal.BuilderInputs.Digest;
+import io.takari.builder.internal.digest.BytesHash;
+import io.takari.builder.internal.digest.FileDigest;
+import io.takari.builder.internal.digest.SHA1Digester;
+import io.takari.builder.internal.resolver.DependencyResolver;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Cheap to verify record of everything {@link BuilderInputsBuilder} observed while computing
+ * builder inputs: builder configuration, evaluated properties, dependency resolution results,
+ * project model and filesystem state. If all observations still hold, builder inputs are the same
+ * as during the execution that recorded the fingerprint, and the builder can be skipped without
+ * computing the inputs and their digest.
+ *
+ * The fingerprint errs on the side of rebuild. It is not recorded if any of observed files was
+ * modified too close to the recording to be distinguishable from later modifications by timestamp,
+ * or if inputs were computed in a workspace that does not provide plain filesystem view.
+ */
+@SuppressWarnings("serial")
+class InputFingerprint implements Serializable {
+
+    // no serialVersionUID, want deserialization to fail if state format changes
+
+    /**
+     * Files modified less than this many milliseconds before the fingerprint was recorded can be
+     * modified again without changing their timestamp. Accounts for coarse filesystem timestamps.
+     */
+    static final long RACY_MILLIS = 2000;
+
+    private final BytesHash configuration;
+
+    // evaluated property name -> value
+    private final Map<String, String> properties;
+
+    // dependency resolver and project model query -> result
+    private final Map<String, List<String>> queries;
+
+    // observed file or directory -> state
+    private final Map<String, FileState> files;
+
+    private InputFingerprint(
+            BytesHash configuration,
+            Map<String, String> properties,
+            Map<String, List<String>> queries,
+            Map<String, FileState> files) {
+        this.configuration = configuration;
+        this.properties = properties;
+        this.queries = queries;
+        this.files = files;
+    }
+
+    /**
+     * Returns {@code true} if the builder inputs would be the same as when this fingerprint was
+     * recorded. Files digested by the builder inputs are checked against the provided digest.
+     */
+    public boolean isUpToDate(
+            BytesHash configuration,
+            List<Function<String, String>> properties,
+            DependencyResolver dependencyResolver,
+            ProjectModelProvider projectModelProvider,
+            Digest inputsDigest) {
+        if (!this.configuration.equals(configuration)) {
+            return false;
+        }
+        for (Map.Entry<String, String> property : this.properties.entrySet()) {
+            if (!equals(property.getValue(), resolve(properties, property.getKey()))) {
+                return false;
+            }
+        }
+        for (Map.Entry<String, FileState> file : files.entrySet()) {
+            if (!file.getValue().equals(FileState.of(Paths.get(file.getKey())))) {
+                return false;
+            }
+        }
+        for (Map.Entry<File, FileDigest> file : inputsDigest.fileDigests().entrySet()) {
+            if (!file.getValue().equals(FileDigest.digest(file.getKey().toPath()))) {
+                return false;
+            }
+        }
+        // queries may be relatively expensive and are checked last
+        for (Map.Entry<String, List<String>> query : queries.entrySet()) {
+            if (!query.getValue().equals(replay(query.getKey(), dependencyResolver, projectModelProvider))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns files and directories observed when this fingerprint was recorded.
+     */
+    public Set<Path> getPaths() {
+        Set<Path> paths = new LinkedHashSet<>();
+        files.keySet().forEach(file -> paths.add(Paths.get(file)));
+        return paths;
+    }
+
+    private static boolean equals(String a, String b) {
+        return a != null ? a.equals(b) : b == null;
+    }
+
+    private static String resolve(List<Function<String, String>> resolvers, String property) {
+        for (Function<String, String> resolver : resolvers) {
+            String resolved = resolver.apply(property);
+            if (resolved != null) {
+                return resolved;
+            }
+        }
+        return null;
+    }
+
+    //
+    // queries are identified by strings that encode the query method and parameters
+    //
+
+    private static final String QUERY_DEPENDENCIES = "dependencies";
+    private static final String QUERY_DEPENDENCY = "dependency";
+    private static final String QUERY_BASEDIR = "basedir";
+    private static final String QUERY_COMPILE_SOURCE_ROOTS = "compileSourceRoots";
+    private static final String QUERY_TEST_COMPILE_SOURCE_ROOTS = "testCompileSourceRoots";
+
+    private static List<String> replay(
+            String query, DependencyResolver dependencyResolver, ProjectModelProvider projectModelProvider) {
+        String[] parts = query.split(":", -1);
+        switch (parts[0]) {
+            case QUERY_DEPENDENCIES:
+                return toStrings(
+                        dependencyResolver.getProjectDependencies(Boolean.parseBoolean(parts[1]), toScope(parts[2])));
+            case QUERY_DEPENDENCY:
+                return toStrings(dependencyResolver.getProjectDependency(
+                        fromQuery(parts[1]), fromQuery(parts[2]), fromQuery(parts[3]), toScope(parts[4])));
+            case QUERY_BASEDIR:
+                return toStrings(projectModelProvider.getBasedir());
+            case QUERY_COMPILE_SOURCE_ROOTS:
+                return copy(projectModelProvider.getCompileSourceRoots());
+            case QUERY_TEST_COMPILE_SOURCE_ROOTS:
+                return copy(projectModelProvider.getTestCompileSourceRoots());
+        }
+        throw new IllegalArgumentException(query);
+    }
+
+    private static String toQuery(String value) {
+        return value != null ? value : "\0";
+    }
+
+    private static String fromQuery(String value) {
+        return "\0".equals(value) ? null : value;
+    }
+
+    private static String toQuery(ResolutionScope scope) {
+        return toQuery(scope != null ? scope.name() : null);
+    }
+
+    private static ResolutionScope toScope(String value) {
+        value = fromQuery(value);
+        return value != null ? ResolutionScope.valueOf(value) : null;
+    }
+
+    private static List<String> toStrings(Map<IArtifactMetadata, Path> dependencies) {
+        if (dependencies == null) {
+            return Collections.singletonList(null);
+        }
+        List<String> result = new ArrayList<>();
+        dependencies.entrySet().forEach(e -> result.add(toString(e)));
+        return result;
+    }
+
+    private static List<String> toStrings(Map.Entry<IArtifactMetadata, Path> dependency) {
+        return Collections.singletonList(dependency != null ? toString(dependency) : null);
+    }
+
+    private static List<String> toStrings(Path path) {
+        return Collections.singletonList(path != null ? path.toString() : null);
+    }
+
+    private static List<String> copy(List<String> list) {
+        return list != null ? new ArrayList<>(list) : Collections.singletonList(null);
+    }
+
+    private static String toString(Map.Entry<IArtifactMetadata, Path> dependency) {
+        IArtifactMetadata artifact = dependency.getKey();
+        return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getVersion() + ":"
+                + artifact.getType() + ":" + artifact.getClassifier() + "=" + dependency.getValue();
+    }
+
+    //
+    //
+    //
+
+    static class FileState implements Serializable {
+
+        // no serialVersionUID, want deserialization to fail if state format changes
+
+        static final FileState MISSING = new FileState(false, -1, -1);
+
+        final boolean directory;
+        final long length;
+        final long lastModified;
+
+        private FileState(boolean directory, long length, long lastModified) {
+            this.directory = directory;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        static FileState of(Path path) {
+            try {
+                return of(Files.readAttributes(path, BasicFileAttributes.class));
+            } catch (IOException e) {
+                return MISSING;
+            }
+        }
+
+        static FileState of(BasicFileAttributes attrs) {
+            return new FileState(
+                    attrs.isDirectory(), attrs.size(), attrs.lastModifiedTime().toMillis());
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 31;
+            hash = hash * 17 + (directory ? 1 : 0);
+            hash = hash * 17 + (int) lastModified;
+            hash = hash * 17 + (int) length;
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof FileState)) {
+                return false;
+            }
+            FileState other = (FileState) obj;
+            return directory == other.directory && lastModified == other.lastModified && length == other.length;
+        }
+    }
+
+    public static BytesHash configurationDigest(String goal, Class<?> builderType, Object configuration) {
+        return SHA1Digester.digest(goal + "\n" + builderType.getName() + "\n" + configuration);
+    }
+
+    /**
+     * Records observations made while computing builder inputs. Not thread safe, builder inputs are
+     * computed on single thread.
+     */
+    static class Recorder {
+
+        private final long timestamp = System.currentTimeMillis();
+
+        private final Map<String, String> properties = new LinkedHashMap<>();
+
+        private final Map<String, List<String>> queries = new LinkedHashMap<>();
+
+        private final Map<String, FileState> files = new LinkedHashMap<>();
+
+        private boolean trusted = true;
+
+        /** Marks the fingerprint as not trusted, i.e. it will not be recorded. */
+        public void untrusted() {
+            this.trusted = false;
+        }
+
+        public List<Function<String, String>> properties(List<Function<String, String>> resolvers) {
+            return Collections.singletonList(property -> {
+                String value = resolve(resolvers, property);
+                properties.put(property, value);
+                return value;
+            });
+        }
+
+        public DependencyResolver dependencyResolver(DependencyResolver resolver) {
+            if (resolver == null) {
+                return null;
+            }
+            return new DependencyResolver() {
+                @Override
+                public Map<IArtifactMetadata, Path> getProjectDependencies(boolean transitive, ResolutionScope scope) {
+                    Map<IArtifactMetadata, Path> result = resolver.getProjectDependencies(transitive, scope);
+                    queries.put(QUERY_DEPENDENCIES + ":" + transitive + ":" + toQuery(scope), toStrings(result));
+                    if (result != null) {
+                        result.values().forEach(Recorder.this::file);
+                    }
+                    return result;
+                }
+
+                @Override
+                public Map.Entry<IArtifactMetadata, Path> getProjectDependency(
+                        String groupId, String artifactId, String classifier, ResolutionScope scope) {
+                    Map.Entry<IArtifactMetadata, Path> result =
+                            resolver.getProjectDependency(groupId, artifactId, classifier, scope);
+                    String query = QUERY_DEPENDENCY + ":" + toQuery(groupId) + ":" + toQuery(artifactId) + ":"
+                            + toQuery(classifier) + ":" + toQuery(scope);
+                    queries.put(query, toStrings(result));
+                    if (result != null) {
+                        file(result.getValue());
+                    }
+                    return result;
+                }
+            };
+        }
+
+        public ProjectModelProvider projectModelProvider(ProjectModelProvider provider) {
+            return new ProjectModelProvider() {
+                @Override
+                public Path getBasedir() {
+                    Path result = provider.getBasedir();
+                    queries.put(QUERY_BASEDIR, toStrings(result));
+                    return result;
+                }
+
+                @Override
+                public List<String> getCompileSourceRoots() {
+                    List<String> result = provider.getCompileSourceRoots();
+                    queries.put(QUERY_COMPILE_SOURCE_ROOTS, copy(result));
+                    return result;
+                }
+
+                @Override
+                public List<String> getTestCompileSourceRoots() {
+                    List<String> result = provider.getTestCompileSourceRoots();
+                    queries.put(QUERY_TEST_COMPILE_SOURCE_ROOTS, copy(result));
+                    return result;
+                }
+            };
+        }
+
+        /** Records current state of the file or directory. */
+        public void file(Path path) {
+            if (path != null) {
+                files.computeIfAbsent(path.toString(), p -> FileState.of(path));
+            }
+        }
+
+        /**
+         * Records current state of the directory and all its subdirectories. Files are not recorded,
+         * but a file added to or removed from any of the directories changes the directory state.
+         */
+        public void directoryTree(Path basedir) {
+            if (!Files.isDirectory(basedir)) {
+                file(basedir);
+                return;
+            }
+            try {
+                Files.walkFileTree(basedir, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        files.putIfAbsent(dir.toString(), FileState.of(attrs));
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                untrusted();
+            }
+        }
+
+        /**
+         * Returns the fingerprint of recorded observations or {@code null} if the observations can't
+         * be trusted.
+         */
+        public InputFingerprint build(BytesHash configuration, Digest inputsDigest) {
+            if (!trusted) {
+                return null;
+            }
+            long racy = timestamp - RACY_MILLIS;
+            for (FileState state : files.values()) {
+                if (state.lastModified >= racy) {
+                    return null;
+                }
+            }
+            for (FileDigest digest : inputsDigest.fileDigests().values()) {
+                if (digest.lastModified >= racy) {
+                    return null;
+                }
+            }
+            return new InputFingerprint(
+                    configuration,
+                    new LinkedHashMap<>(properties),
+                    new LinkedHashMap<>(queries),
+                    new LinkedHashMap<>(files));
+        }
+    }
+}
@@ -17,9 +17,11 @@ import java.io.File;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import org.slf4j.Logger;
 
 // TODO consider merging with BuilderContext
@@ -28,8 +30,11 @@ class MessageCollector implements Messages {
 
     // maintain overall message order because root cause is often (but not always)
     // reported before any secondary problems
-    // NB: all access must synchronize on the instance
-    private final Set<Message> messages = new LinkedHashSet<>();
+    // lock-free append-only queue, parallel builder threads do not contend on a shared monitor
+    private final Queue<Message> messages = new ConcurrentLinkedQueue<>();
+
+    // messages already in the queue, duplicates are collected once
+    private final Set<Message> collected = ConcurrentHashMap.newKeySet();
 
     public MessageCollector(Logger log) {
         this.log = log;
@@ -41,7 +46,7 @@ class MessageCollector implements Messages {
     }
 
     private void collect(Message message) {
-        synchronized (messages) {
+        if (collected.add(message)) {
             messages.add(message);
         }
     }
@@ -63,21 +68,22 @@ class MessageCollector implements Messages {
     }
 
     List<Message> getCollectedMessages() {
-        synchronized (messages) {
-            // copy so clients don't have to synchronize
-            return new ArrayList<>(messages);
-        }
+        return new ArrayList<>(messages);
     }
 
     <E extends Exception> void replayMessages(ExceptionFactory<E> efactory, final List<Message> messages) throws E {
-        messages.forEach(message -> collect(message));
+        carryMessages(messages);
         throwExceptionIfThereWereErrorMessages(efactory);
     }
 
+    /** collects messages of the previous builder execution without logging them */
+    void carryMessages(final List<Message> messages) {
+        messages.forEach(message -> collect(message));
+    }
+
     <E extends Exception> void throwExceptionIfThereWereErrorMessages(ExceptionFactory<E> efactory) throws E {
-        synchronized (messages) {
-            assertBuildSuccess(efactory, messages);
-        }
+        // weakly consistent iteration, tolerates messages collected concurrently
+        assertBuildSuccess(efactory, messages);
     }
 
     private static <E extends Exception> void assertBuildSuccess(
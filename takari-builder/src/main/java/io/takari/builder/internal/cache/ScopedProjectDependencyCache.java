@@ -14,6 +14,10 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.function.Supplier;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -77,7 +81,8 @@ public class ScopedProjectDependencyCache {
         }
     }
 
-    private final Map<Key, Map<IArtifactMetadata, Path>> cache = new ConcurrentHashMap<>();
+    // single-flight, concurrent requests for the same key wait for the first request to complete
+    private final ConcurrentMap<Key, Future<Object>> cache = new ConcurrentHashMap<>();
 
     public static Key key(
             String groupId, String artifactId, String version, ResolutionScope scope, boolean transitive) {
@@ -85,23 +90,74 @@ public class ScopedProjectDependencyCache {
     }
 
     /**
-     * Returns a cached set of resolved artifacts for the given key
+     * Returns key of project-wide, i.e. not scoped, state.
+     */
+    public static Key key(String groupId, String artifactId, String version) {
+        return new Key(groupId, artifactId, version, null, true);
+    }
+
+    /**
+     * Returns a cached set of resolved artifacts for the given key. The supplier is called at most
+     * once per key, concurrent callers wait for the cached value.
      *
      * @param key
      * @param supplier - will be called if the lookup returns no cached value
      * @return
      */
+    @SuppressWarnings("unchecked")
     public Map<IArtifactMetadata, Path> getDependencies(Key key, Supplier<Map<IArtifactMetadata, Path>> supplier) {
-        Map<IArtifactMetadata, Path> dependencies = cache.get(key);
-
-        if (dependencies == null) {
-            dependencies = Collections.unmodifiableMap(new LinkedHashMap<>(supplier.get()));
+        return (Map<IArtifactMetadata, Path>) get(key, () -> {
+            Map<IArtifactMetadata, Path> dependencies = supplier.get();
             if (dependencies == null) {
-                dependencies = Collections.emptyMap();
+                return Collections.emptyMap();
             }
-            cache.put(key, dependencies);
-        }
+            return Collections.unmodifiableMap(new LinkedHashMap<>(dependencies));
+        });
+    }
+
+    /**
+     * Returns cached project-wide state, like project dependency graph, shared by all scoped
+     * dependency lookups of the project. The supplier is called at most once per key, concurrent
+     * callers wait for the cached value.
+     */
+    public <T> T getProjectState(Key key, Class<T> type, Supplier<T> supplier) {
+        return type.cast(get(key, supplier));
+    }
 
-        return dependencies;
+    private Object get(Key key, Supplier<?> supplier) {
+        Future<Object> future = cache.get(key);
+        if (future == null) {
+            FutureTask<Object> task = new FutureTask<>(supplier::get);
+            future = cache.putIfAbsent(key, task);
+            if (future == null) {
+                future = task;
+                task.run();
+            }
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true; // the value is computed by another thread and will be available soon
+                } catch (ExecutionException e) {
+                    // failures are not cached, next request will try again
+                    cache.remove(key, future);
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
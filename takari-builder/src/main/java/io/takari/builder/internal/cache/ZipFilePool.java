@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.internal.cache;
+
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Pool of open {@link ZipFile} handles used to read jar entries. Handles are shared by all
+ * concurrent readers of the same jar file and are reference counted, each open entry input stream
+ * holds a reference until it is closed. Handles that were not used for {@link #IDLE_MILLIS} are
+ * closed by a background thread, so the pool does not keep jar files open between builds.
+ *
+ * <p>
+ * Handles are keyed by jar file path, length and last modification time, modified jar files are
+ * reopened.
+ */
+public class ZipFilePool {
+
+    static final long IDLE_MILLIS = 5000;
+
+    private static final ScheduledExecutorService EVICTOR;
+
+    static {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "takari-builder zip file pool eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        EVICTOR = executor;
+    }
+
+    private static class Key {
+        private final Path path;
+        private final long length;
+        private final long lastModified;
+
+        public Key(Path path, long length, long lastModified) {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = path.hashCode();
+            result = 31 * result + (int) (length ^ (length >>> 32));
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return length == other.length && lastModified == other.lastModified && path.equals(other.path);
+        }
+    }
+
+    private static class Handle {
+        final ZipFile zipFile;
+
+        // guarded by the pool
+
+        int references;
+
+        long released; // System#nanoTime when the last reference was released
+
+        Handle(ZipFile zipFile) {
+            this.zipFile = zipFile;
+        }
+    }
+
+    private static final ZipFilePool INSTANCE = new ZipFilePool(IDLE_MILLIS);
+
+    public static ZipFilePool get() {
+        return INSTANCE;
+    }
+
+    private final long idleNanos;
+
+    // guarded by this
+
+    private final Map<Key, Handle> handles = new HashMap<>();
+
+    private ScheduledFuture<?> eviction;
+
+    ZipFilePool(long idleMillis) {
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+    }
+
+    /**
+     * Opens jar file entry input stream. The jar file stays open at least until the returned stream is
+     * closed.
+     *
+     * @throws FileNotFoundException if the jar file does not have the entry
+     */
+    public InputStream getInputStream(Path jar, String entryName) throws IOException {
+        Handle handle = acquire(jar);
+        try {
+            ZipEntry entry = handle.zipFile.getEntry(entryName);
+            if (entry == null) {
+                throw new FileNotFoundException("JAR entry " + entryName + " not found in " + jar);
+            }
+            return new FilterInputStream(handle.zipFile.getInputStream(entry)) {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    synchronized (this) {
+                        if (closed) {
+                            return;
+                        }
+                        closed = true;
+                    }
+                    try {
+                        super.close();
+                    } finally {
+                        release(handle);
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            release(handle);
+            throw e;
+        }
+    }
+
+    private Handle acquire(Path jar) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+        Key key = new Key(jar, attributes.size(), attributes.lastModifiedTime().toMillis());
+        synchronized (this) {
+            Handle handle = handles.get(key);
+            if (handle != null) {
+                handle.references++;
+                return handle;
+            }
+        }
+        // open outside of the lock, reading zip central directory can take a while
+        ZipFile zipFile = open(jar);
+        Handle handle;
+        synchronized (this) {
+            handle = handles.get(key);
+            if (handle == null) {
+                handle = new Handle(zipFile);
+                handles.put(key, handle);
+                zipFile = null;
+            }
+            handle.references++;
+        }
+        if (zipFile != null) {
+            // opened concurrently by another thread, use its handle
+            try {
+                zipFile.close();
+            } catch (IOException e) {
+                // nothing to do, the duplicate was never used
+            }
+        }
+        return handle;
+    }
+
+    ZipFile open(Path jar) throws IOException {
+        return new ZipFile(jar.toFile());
+    }
+
+    private synchronized void release(Handle handle) {
+        if (--handle.references == 0) {
+            handle.released = System.nanoTime();
+            if (eviction == null) {
+                eviction = EVICTOR.schedule(this::evictIdle, idleNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        long nextEviction = Long.MAX_VALUE;
+        List<Handle> evicted = new ArrayList<>();
+        synchronized (this) {
+            eviction = null;
+            for (Iterator<Map.Entry<Key, Handle>> iter = handles.entrySet().iterator(); iter.hasNext(); ) {
+                Map.Entry<Key, Handle> entry = iter.next();
+                Handle handle = entry.getValue();
+                if (handle.references > 0) {
+                    continue;
+                }
+                long idle = now - handle.released;
+                if (idle >= idleNanos) {
+                    evicted.add(handle);
+                    iter.remove();
+                } else {
+                    nextEviction = Math.min(nextEviction, idleNanos - idle);
+                }
+            }
+            if (nextEviction != Long.MAX_VALUE) {
+                eviction = EVICTOR.schedule(this::evictIdle, nextEviction, TimeUnit.NANOSECONDS);
+            }
+        }
+        for (Handle handle : evicted) {
+            try {
+                handle.zipFile.close();
+            } catch (IOException e) {
+                // nothing to do, the handle is not used any more
+            }
+        }
+    }
+
+    /**
+     * Returns number of open jar files.
+     */
+    synchronized int size() {
+        return handles.size();
+    }
+}
@@ -9,12 +9,17 @@ package io.takari.builder.internal.maven;
 
 import static io.takari.builder.internal.maven.Takari_MavenIncrementalConventions.getExecutionStateLocation;
 
+import io.takari.builder.ResolutionScope;
 import io.takari.builder.ResourceType;
 import io.takari.builder.enforcer.internal.EnforcerConfig;
 import io.takari.builder.enforcer.modularity.internal.WorkspaceProjectsProvider.Nullable;
 import io.takari.builder.internal.BuilderRunner;
+import io.takari.builder.internal.BuilderRunner.ExceptionFactory;
 import io.takari.builder.internal.ClasspathMatcher;
 import io.takari.builder.internal.ResourceRoot;
+import io.takari.builder.internal.cache.OutputCacheStore;
+import io.takari.builder.internal.metrics.MetricsRegistry;
+import io.takari.builder.internal.pathmatcher.CanonicalPathCache;
 import io.takari.builder.internal.resolver.ArtifactResolverProvider;
 import io.takari.incrementalbuild.workspace.MessageSink;
 import io.takari.incrementalbuild.workspace.Workspace;
@@ -41,7 +46,6 @@ public abstract class AbstractIncrementalMojo extends AbstractMojo {
 
     private static final String BUILDER_ARTIFACTID = "takari-builder";
     private static final String BUILDER_GROUPID = "io.takari.builder";
-    private static final String ENFORCER_CONFIG_FILE_LOCATION = ".mvn/builder-enforcer.config";
 
     protected final Class<?> builderType;
     protected final Logger log;
@@ -52,6 +56,12 @@ public abstract class AbstractIncrementalMojo extends AbstractMojo {
     @Inject
     private Workspace workspace;
 
+    @Inject
+    private EnforcerConfigProvider enforcerConfigProvider;
+
+    @Inject
+    private MavenBuilderScheduler scheduler;
+
     @Inject
     @Nullable
     private MessageSink messageSink;
@@ -95,11 +105,19 @@ public abstract class AbstractIncrementalMojo extends AbstractMojo {
             }
         };
 
-        EnforcerConfig enforcerConfig = getEnforcerConfig();
+        EnforcerConfig enforcerConfig = enforcerConfigProvider.getConfig(__internal_session);
+
+        // local repository artifacts are read by most builders and are not expected to be symlinks
+        CanonicalPathCache.get()
+                .addRoot(__internal_session
+                        .getRepositorySession()
+                        .getLocalRepository()
+                        .getBasedir()
+                        .toPath());
 
         MavenClasspathDigester classpathDigester = new MavenClasspathDigester(__internal_session);
 
-        BuilderRunner.create(log, builderType, __internal_execution.getGoal()) //
+        BuilderRunner runner = BuilderRunner.create(log, builderType, __internal_execution.getGoal()) //
                 .setBuilderId(getBuilderId()) //
                 .setSessionBasedir(getSessionBasedir()) //
                 .setProjectBasedir(__internal_project.getBasedir().toPath()) //
@@ -108,10 +126,17 @@ public abstract class AbstractIncrementalMojo extends AbstractMojo {
                         __internal_session.getSystemProperties(), __internal_session.getUserProperties()) //
                 .setSessionClasspathMatcher(classpathMatcher.getMatcher()) //
                 .setStateFile(getExecutionStateLocation(__internal_project, __internal_execution)) //
+                .setMetricsSession(MetricsRegistry.getSession(
+                        __internal_session.getUserProperties(),
+                        __internal_session.getSystemProperties(),
+                        __internal_session.getRequest().getStartTime(),
+                        __internal_session)) //
+                .setOutputCache(
+                        getOutputCacheStore(), !"false".equals(getSessionProperty(OutputCacheStore.PROPERTY_PUSH))) //
                 .setClasspath(
                         classpath.stream().map(a -> a.getFile().toPath()).collect(Collectors.toList()),
                         classpathDigester) //
-                .setDependencyResolver(resolverProvider.getResolver(__internal_project)) //
+                .setDependencyResolver(resolverProvider.getResolver(__internal_project, getResolvedScope())) //
                 .setProjectResourcesConsumer(resourceConsumer) //
                 .setProjectCompileSourceRoots(__internal_project.getCompileSourceRoots()) //
                 .setProjectTestCompileSourceRoots(__internal_project.getTestCompileSourceRoots()) //
@@ -119,8 +144,50 @@ public abstract class AbstractIncrementalMojo extends AbstractMojo {
                 .setDefaultMessageLocation(__internal_project.getFile().toPath(), -1, -1) //
                 .setBuilderEnforcerConfig(enforcerConfig) //
                 .setWorkspace(workspace) //
-                .setMessageSink(messageSink) //
-                .execute((m, c) -> c != null ? new MojoExecutionException(m, c) : new MojoExecutionException(m));
+                .setMessageSink(messageSink);
+
+        ExceptionFactory<MojoExecutionException> efactory =
+                (m, c) -> c != null ? new MojoExecutionException(m, c) : new MojoExecutionException(m);
+
+        if (scheduler.isEnabled(__internal_session, __internal_execution)) {
+            scheduler.submit(__internal_project, __internal_execution, () -> runner.prepare(efactory));
+        } else {
+            scheduler.join(__internal_project);
+            runner.execute(efactory);
+        }
+    }
+
+    /**
+     * Returns dependency scope resolved by Maven for this mojo execution, {@code null} if the mojo
+     * does not require dependency resolution.
+     */
+    private ResolutionScope getResolvedScope() {
+        String scope = __internal_execution.getMojoDescriptor().getDependencyResolutionRequired();
+        if (scope == null) {
+            return null;
+        }
+        switch (scope) {
+            case Artifact.SCOPE_COMPILE:
+                return ResolutionScope.COMPILE;
+            case Artifact.SCOPE_RUNTIME:
+                return ResolutionScope.RUNTIME;
+            case Artifact.SCOPE_COMPILE_PLUS_RUNTIME:
+                return ResolutionScope.COMPILE_PLUS_RUNTIME;
+            case Artifact.SCOPE_TEST:
+                return ResolutionScope.TEST;
+            default:
+                return null;
+        }
+    }
+
+    private OutputCacheStore getOutputCacheStore() {
+        String location = getSessionProperty(OutputCacheStore.PROPERTY_LOCATION);
+        return location != null && !location.isEmpty() ? OutputCacheStore.create(location) : null;
+    }
+
+    private String getSessionProperty(String name) {
+        String value = __internal_session.getUserProperties().getProperty(name);
+        return value != null ? value : __internal_session.getSystemProperties().getProperty(name);
     }
 
     private Path getSessionBasedir() {
@@ -130,11 +197,6 @@ public abstract class AbstractIncrementalMojo extends AbstractMojo {
         return __internal_session.getRequest().getMultiModuleProjectDirectory().toPath();
     }
 
-    private EnforcerConfig getEnforcerConfig() {
-        return EnforcerConfig.fromFile(
-                getSessionBasedir() == null ? null : getSessionBasedir().resolve(ENFORCER_CONFIG_FILE_LOCATION));
-    }
-
     private String getBuilderId() {
         PluginDescriptor descriptor = __internal_execution.getMojoDescriptor().getPluginDescriptor();
         return String.format(
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.internal.maven;
+
+import io.takari.builder.enforcer.internal.EnforcerConfig;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Reads {@code .mvn/builder-enforcer.config} and keeps the last read config for as long as the file
+ * location and last modified timestamp do not change. Exceptions matchers compiled by the config are
+ * reused by all builder executions that see the same config.
+ */
+@Named
+@Singleton
+public class EnforcerConfigProvider {
+
+    private static final String ENFORCER_CONFIG_FILE_LOCATION = ".mvn/builder-enforcer.config";
+
+    private static class CachedConfig {
+        final Path location;
+        final long lastModified;
+        final EnforcerConfig config;
+
+        CachedConfig(Path location, long lastModified, EnforcerConfig config) {
+            this.location = location;
+            this.lastModified = lastModified;
+            this.config = config;
+        }
+    }
+
+    private CachedConfig cached;
+
+    public synchronized EnforcerConfig getConfig(MavenSession session) {
+        File basedir = session.getRequest().getMultiModuleProjectDirectory();
+        Path location = basedir != null ? basedir.toPath().resolve(ENFORCER_CONFIG_FILE_LOCATION) : null;
+        long lastModified = getLastModified(location);
+        if (cached == null || !Objects.equals(cached.location, location) || cached.lastModified != lastModified) {
+            cached = new CachedConfig(location, lastModified, EnforcerConfig.fromFile(location));
+        }
+        return cached.config;
+    }
+
+    private static long getLastModified(Path location) {
+        if (location == null) {
+            return 0;
+        }
+        try {
+            return Files.getLastModifiedTime(location).toMillis();
+        } catch (IOException e) {
+            // missing or unreadable config, let EnforcerConfig.fromFile deal with it
+            return -1;
+        }
+    }
+}
@@ -7,9 +7,11 @@
  */
 package io.takari.builder.internal.maven;
 
+import io.takari.builder.ResolutionScope;
 import io.takari.builder.internal.cache.ScopedProjectDependencyCache;
 import io.takari.builder.internal.resolver.ArtifactResolverProvider;
 import io.takari.builder.internal.resolver.DependencyResolver;
+import java.util.ArrayList;
 import javax.inject.Inject;
 import javax.inject.Named;
 import org.apache.maven.SessionScoped;
@@ -39,4 +41,19 @@ public class MavenArtifactResolverProvider implements ArtifactResolverProvider<M
     public DependencyResolver getResolver(MavenProject project) {
         return new MavenDependencyResolver(project, session.getRepositorySession(), repositorySystem, dependencyCache);
     }
+
+    @Override
+    public DependencyResolver getResolver(MavenProject project, ResolutionScope resolvedScope) {
+        if (resolvedScope == null) {
+            return getResolver(project);
+        }
+        // snapshot, project artifacts are filtered according to the currently executing mojo
+        return new MavenDependencyResolver(
+                project,
+                session.getRepositorySession(),
+                repositorySystem,
+                dependencyCache,
+                resolvedScope,
+                new ArrayList<>(project.getArtifacts()));
+    }
 }
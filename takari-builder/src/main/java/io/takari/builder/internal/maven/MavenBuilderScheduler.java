@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2014-2024 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.builder.internal.maven;
+
+import io.takari.builder.enforcer.modularity.internal.DefaultProjectBasedirEnforcer;
+import io.takari.builder.internal.BuilderScheduler;
+import io.takari.builder.internal.BuilderScheduler.Preparation;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.execution.MojoExecutionEvent;
+import org.apache.maven.execution.MojoExecutionListener;
+import org.apache.maven.execution.ProjectExecutionEvent;
+import org.apache.maven.execution.ProjectExecutionListener;
+import org.apache.maven.lifecycle.LifecycleExecutionException;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Runs independent builders bound to the same lifecycle phase of a project concurrently. Enabled
+ * with {@code -Dtakari.builder.parallel=true}.
+ *
+ * Builder mojos submit their executions and return immediately. Submitted executions are joined,
+ * in mojo execution order, before any other mojo or a builder mojo bound to a different phase
+ * executes in the project, and when the project build finishes. Builder failures are reported by
+ * the mojo or project that joins the executions.
+ */
+@Named
+@Singleton
+public class MavenBuilderScheduler implements MojoExecutionListener, ProjectExecutionListener {
+
+    public static final String PROPERTY_PARALLEL = "takari.builder.parallel";
+
+    private static final ThreadPoolExecutor EXECUTOR;
+
+    static {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "takari-builder parallel");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        EXECUTOR = executor;
+    }
+
+    private static class ProjectExecutions {
+        final String phase;
+
+        final BuilderScheduler<MojoExecutionException> scheduler = new BuilderScheduler<>(EXECUTOR);
+
+        ProjectExecutions(String phase) {
+            this.phase = phase;
+        }
+    }
+
+    // projects can be built concurrently by maven multithreaded builder
+    // MavenProject instances are unique per session, so executions of different sessions do not mix
+    private final Map<MavenProject, ProjectExecutions> projects = new ConcurrentHashMap<>();
+
+    /**
+     * Returns {@code true} if the builder mojo execution can be submitted.
+     */
+    public boolean isEnabled(MavenSession session, MojoExecution execution) {
+        // modularity violations are reported when the mojo execution finishes
+        return isEnabled(session)
+                && execution.getLifecyclePhase() != null
+                && !DefaultProjectBasedirEnforcer.isProjectContextActive();
+    }
+
+    private static boolean isEnabled(MavenSession session) {
+        String parallel = session.getUserProperties().getProperty(PROPERTY_PARALLEL);
+        if (parallel == null) {
+            parallel = session.getSystemProperties().getProperty(PROPERTY_PARALLEL);
+        }
+        return Boolean.parseBoolean(parallel);
+    }
+
+    public void submit(MavenProject project, MojoExecution execution, Preparation<MojoExecutionException> preparation)
+            throws MojoExecutionException {
+        String phase = execution.getLifecyclePhase();
+        ProjectExecutions executions = projects.get(project);
+        if (executions != null && !executions.phase.equals(phase)) {
+            join(project);
+            executions = null;
+        }
+        if (executions == null) {
+            executions = new ProjectExecutions(phase);
+            projects.put(project, executions);
+        }
+        executions.scheduler.submit(preparation);
+    }
+
+    /**
+     * Waits for and completes all submitted builder executions of the project.
+     */
+    public void join(MavenProject project) throws MojoExecutionException {
+        ProjectExecutions executions = projects.remove(project);
+        if (executions != null) {
+            executions.scheduler.join();
+        }
+    }
+
+    private void discard(MavenProject project) {
+        ProjectExecutions executions = projects.remove(project);
+        if (executions != null) {
+            executions.scheduler.discard();
+        }
+    }
+
+    @Override
+    public void beforeMojoExecution(MojoExecutionEvent event) throws MojoExecutionException {
+        if (!(event.getMojo() instanceof AbstractIncrementalMojo)) {
+            join(event.getProject());
+        }
+    }
+
+    @Override
+    public void afterMojoExecutionSuccess(MojoExecutionEvent event) throws MojoExecutionException {}
+
+    @Override
+    public void afterExecutionFailure(MojoExecutionEvent event) {
+        discard(event.getProject());
+    }
+
+    @Override
+    public void beforeProjectExecution(ProjectExecutionEvent event) throws LifecycleExecutionException {}
+
+    @Override
+    public void beforeProjectLifecycleExecution(ProjectExecutionEvent event) throws LifecycleExecutionException {}
+
+    @Override
+    public void afterProjectExecutionSuccess(ProjectExecutionEvent event) throws LifecycleExecutionException {
+        try {
+            join(event.getProject());
+        } catch (MojoExecutionException e) {
+            throw new LifecycleExecutionException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void afterProjectExecutionFailure(ProjectExecutionEvent event) {
+        discard(event.getProject());
+    }
+}
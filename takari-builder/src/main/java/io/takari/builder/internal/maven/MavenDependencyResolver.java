@@ -28,7 +28,6 @@ import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.ArtifactUtils;
 import org.apache.maven.model.DependencyManagement;
 import org.apache.maven.project.DependencyResolutionException;
-import org.apache.maven.project.DependencyResolutionResult;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.StringUtils;
 import org.eclipse.aether.RepositorySystem;
@@ -63,11 +62,47 @@ public class MavenDependencyResolver implements DependencyResolver {
             org.eclipse.aether.graph.Dependency dependency = node.getDependency();
             if (dependency != null) {
                 org.eclipse.aether.artifact.Artifact a = dependency.getArtifact();
-                String key = ArtifactUtils.key(a.getGroupId(), a.getArtifactId(), a.getVersion());
-                return keys.contains(key);
+                return accept(a.getGroupId(), a.getArtifactId(), a.getVersion());
             }
             return false;
         }
+
+        public boolean accept(String groupId, String artifactId, String version) {
+            return keys.contains(ArtifactUtils.key(groupId, artifactId, version));
+        }
+    }
+
+    /**
+     * Project dependency graph shared by all scoped dependency lookups of the project. The graph is
+     * collected once, for all scopes, and its nodes are resolved on demand, once per requested
+     * scope. Scopes implied by already resolved wider scopes, for example compile scope after test
+     * scope, are not resolved again.
+     */
+    static class ProjectDependencyGraph {
+        final ScopeBasedDependencyResolutionResult result;
+
+        // false if the graph is incomplete, incomplete graphs are not resolved
+        final boolean collected;
+
+        // guarded by this
+
+        private final Set<String> resolvedScopes = new HashSet<>();
+
+        private final Set<String> resolvedDirectScopes = new HashSet<>();
+
+        ProjectDependencyGraph(ScopeBasedDependencyResolutionResult result, boolean collected) {
+            this.result = result;
+            this.collected = collected;
+        }
+
+        boolean isResolved(ResolutionScope scope, boolean transitive) {
+            Collection<String> scopes = impliedScopes(scope);
+            return resolvedScopes.containsAll(scopes) || (!transitive && resolvedDirectScopes.containsAll(scopes));
+        }
+
+        void setResolved(ResolutionScope scope, boolean transitive) {
+            (transitive ? resolvedScopes : resolvedDirectScopes).addAll(impliedScopes(scope));
+        }
     }
 
     private final MavenProject project;
@@ -75,15 +110,36 @@ public class MavenDependencyResolver implements DependencyResolver {
     private final RepositorySystem repositorySystem;
     private final ScopedProjectDependencyCache dependencyCache;
 
+    // scope and artifacts already resolved by maven, null if maven did not resolve project dependencies
+    private final ResolutionScope resolvedScope;
+    private final Collection<Artifact> resolvedArtifacts;
+
     public MavenDependencyResolver(
             MavenProject project,
             RepositorySystemSession repoSession,
             RepositorySystem repositorySystem,
             ScopedProjectDependencyCache dependencyCache) {
+        this(project, repoSession, repositorySystem, dependencyCache, null, null);
+    }
+
+    /**
+     * Creates resolver that derives dependencies of {@code resolvedScope} and narrower scopes from
+     * {@code resolvedArtifacts} already resolved by Maven. Dependencies of other scopes are resolved
+     * using the repository system.
+     */
+    public MavenDependencyResolver(
+            MavenProject project,
+            RepositorySystemSession repoSession,
+            RepositorySystem repositorySystem,
+            ScopedProjectDependencyCache dependencyCache,
+            ResolutionScope resolvedScope,
+            Collection<Artifact> resolvedArtifacts) {
         this.project = project;
         this.repoSession = repoSession;
         this.repositorySystem = repositorySystem;
         this.dependencyCache = dependencyCache;
+        this.resolvedScope = resolvedScope;
+        this.resolvedArtifacts = resolvedArtifacts;
     }
 
     @Override
@@ -113,7 +169,10 @@ public class MavenDependencyResolver implements DependencyResolver {
                 project.getGroupId(), project.getArtifactId(), project.getVersion(), scope, transitive);
 
         return dependencyCache.getDependencies(key, () -> {
-            Set<Artifact> artifacts = resolveArtifacts(scope, transitive);
+            Set<Artifact> artifacts = getResolvedArtifacts(scope, transitive);
+            if (artifacts == null) {
+                artifacts = resolveArtifacts(scope, transitive);
+            }
             Map<IArtifactMetadata, Path> results = new LinkedHashMap<>();
 
             artifacts.forEach(a -> {
@@ -124,27 +183,63 @@ public class MavenDependencyResolver implements DependencyResolver {
         });
     }
 
+    /**
+     * Returns dependencies derived from artifacts resolved by Maven, or {@code null} if Maven did not
+     * resolve the scope.
+     */
+    private Set<Artifact> getResolvedArtifacts(ResolutionScope scope, boolean transitive) {
+        if (resolvedScope == null || !impliedScopes(resolvedScope).containsAll(impliedScopes(scope))) {
+            return null;
+        }
+        Collection<String> scopes = impliedScopes(scope);
+        TransitiveDependencyFilter direct =
+                transitive ? null : new TransitiveDependencyFilter(project.getDependencies());
+        Set<Artifact> artifacts = new LinkedHashSet<>();
+        for (Artifact artifact : resolvedArtifacts) {
+            if (!scopes.contains(artifact.getScope())
+                    || (direct != null
+                            && !direct.accept(
+                                    artifact.getGroupId(), artifact.getArtifactId(), artifact.getBaseVersion()))) {
+                continue;
+            }
+            if (artifact.getFile() == null) {
+                return null; // not actually resolved, let the repository system report the problem
+            }
+            artifacts.add(artifact);
+        }
+        return artifacts;
+    }
+
     private Set<Artifact> resolveArtifacts(ResolutionScope scope, boolean transitive) {
+        ProjectDependencyGraph graph = dependencyCache.getProjectState(
+                ScopedProjectDependencyCache.key(project.getGroupId(), project.getArtifactId(), project.getVersion()),
+                ProjectDependencyGraph.class,
+                this::collectDependencies);
 
-        DependencyResolutionResult result;
         DependencyFilter resolutionFilter = getResolutionFilter(scope, transitive);
 
-        try {
-            result = resolveDependencies(scope, resolutionFilter);
-        } catch (DependencyResolutionException e) {
-            result = e.getResult();
-        }
+        // resolution updates graph nodes in place
+        synchronized (graph) {
+            if (graph.collected && !graph.isResolved(scope, transitive)) {
+                try {
+                    resolveDependencies(graph, scope, resolutionFilter);
+                    graph.setResolved(scope, transitive);
+                } catch (DependencyResolutionException e) {
+                    // best effort, same as partially collected graph
+                }
+            }
 
-        Set<Artifact> artifacts = new LinkedHashSet<>();
-        if (result.getDependencyGraph() != null
-                && !result.getDependencyGraph().getChildren().isEmpty()) {
-            RepositoryUtils.toArtifacts(
-                    artifacts,
-                    result.getDependencyGraph().getChildren(),
-                    Collections.singletonList(project.getArtifact().getId()),
-                    resolutionFilter);
+            Set<Artifact> artifacts = new LinkedHashSet<>();
+            DependencyNode root = graph.result.getDependencyGraph();
+            if (root != null && !root.getChildren().isEmpty()) {
+                RepositoryUtils.toArtifacts(
+                        artifacts,
+                        root.getChildren(),
+                        Collections.singletonList(project.getArtifact().getId()),
+                        resolutionFilter);
+            }
+            return artifacts;
         }
-        return artifacts;
     }
 
     private DependencyFilter getResolutionFilter(ResolutionScope scope, boolean transitive) {
@@ -175,8 +270,7 @@ public class MavenDependencyResolver implements DependencyResolver {
         return Collections.emptyList();
     }
 
-    private DependencyResolutionResult resolveDependencies(ResolutionScope scope, DependencyFilter resolutionFilter)
-            throws DependencyResolutionException {
+    private ProjectDependencyGraph collectDependencies() {
         ClassLoader tccl = Thread.currentThread().getContextClassLoader();
         try {
             ClassLoader projectRealm = project.getClassRealm();
@@ -184,7 +278,7 @@ public class MavenDependencyResolver implements DependencyResolver {
                 Thread.currentThread().setContextClassLoader(projectRealm);
             }
 
-            RequestTrace trace = RequestTrace.newChild(null, resolutionFilter);
+            RequestTrace trace = RequestTrace.newChild(null, project);
             ScopeBasedDependencyResolutionResult result = new ScopeBasedDependencyResolutionResult();
             ArtifactTypeRegistry stereotypes = repoSession.getArtifactTypeRegistry();
             CollectRequest collect = new CollectRequest();
@@ -209,30 +303,39 @@ public class MavenDependencyResolver implements DependencyResolver {
                 }
             }
 
-            DependencyRequest depRequest = new DependencyRequest(collect, resolutionFilter);
-            depRequest.setTrace(trace);
-
-            collect.setTrace(RequestTrace.newChild(trace, depRequest));
+            collect.setTrace(trace);
 
-            DependencyNode node;
+            // dependency graph is collected for all scopes, scoped lookups filter the graph
             try {
-                node = repositorySystem
+                DependencyNode node = repositorySystem
                         .collectDependencies(repoSession, collect)
                         .getRoot();
                 result.setDependencyGraph(node);
+                return new ProjectDependencyGraph(result, true);
             } catch (DependencyCollectionException e) {
                 result.setDependencyGraph(e.getResult().getRoot());
                 e.printStackTrace();
                 result.setCollectionErrors(e.getResult().getExceptions());
+                return new ProjectDependencyGraph(result, false);
+            }
+        } finally {
+            Thread.currentThread().setContextClassLoader(tccl);
+        }
+    }
 
-                throw new DependencyResolutionException(
-                        result,
-                        "Could not resolve dependencies for project " + project.getId() + ", with scope " + scope + ": "
-                                + e.getMessage(),
-                        e);
+    private void resolveDependencies(
+            ProjectDependencyGraph graph, ResolutionScope scope, DependencyFilter resolutionFilter)
+            throws DependencyResolutionException {
+        ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+        try {
+            ClassLoader projectRealm = project.getClassRealm();
+            if (projectRealm != null && projectRealm != tccl) {
+                Thread.currentThread().setContextClassLoader(projectRealm);
             }
 
-            depRequest.setRoot(node);
+            ScopeBasedDependencyResolutionResult result = graph.result;
+            DependencyRequest depRequest = new DependencyRequest(result.getDependencyGraph(), resolutionFilter);
+            depRequest.setTrace(RequestTrace.newChild(null, resolutionFilter));
 
             try {
                 process(
@@ -250,8 +353,6 @@ public class MavenDependencyResolver implements DependencyResolver {
                                 + e.getMessage(),
                         e);
             }
-
-            return result;
         } finally {
             Thread.currentThread().setContextClassLoader(tccl);
         }
@@ -10,6 +10,7 @@ package io.takari.builder.internal.model;
 import io.takari.builder.IArtifactMetadata;
 import io.takari.builder.IArtifactResources;
 import io.takari.builder.IDirectoryFiles;
+import io.takari.builder.IIncrementalDirectoryFiles;
 import io.takari.builder.Parameter;
 import java.io.File;
 import java.lang.annotation.Annotation;
@@ -226,7 +227,15 @@ public abstract class BuilderValidationVisitor implements BuilderMetadataVisitor
         if (type.isArray() || type.isIterable()) {
             type = metadata.originatingElement().getParameterTypes().get(0);
         }
-        if (!type.isSameType(IDirectoryFiles.class) && !type.isSameType(File.class) && !type.isSameType(Path.class)) {
+        if (metadata.annotation().incremental()) {
+            if (!type.isSameType(IIncrementalDirectoryFiles.class)) {
+                error(
+                        metadata,
+                        "@InputDirectoryFiles(incremental=true) parameter must be of type IncrementalDirectoryFiles");
+            }
+        } else if (!type.isSameType(IDirectoryFiles.class)
+                && !type.isSameType(File.class)
+                && !type.isSameType(Path.class)) {
             error(metadata, "@InputDirectoryFiles paramerer must be of type DirectoryFiles, File, or Path");
         }
 
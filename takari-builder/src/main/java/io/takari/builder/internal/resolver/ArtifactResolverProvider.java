@@ -7,9 +7,19 @@
  */
 package io.takari.builder.internal.resolver;
 
+import io.takari.builder.ResolutionScope;
 import javax.inject.Named;
 
 @Named
 public interface ArtifactResolverProvider<T> {
     public DependencyResolver getResolver(T project);
+
+    /**
+     * Returns dependency resolver that can reuse project dependencies already resolved by the build
+     * tool for the current build step. {@code resolvedScope} is the scope resolved by the build tool,
+     * {@code null} if project dependencies were not resolved.
+     */
+    public default DependencyResolver getResolver(T project, ResolutionScope resolvedScope) {
+        return getResolver(project);
+    }
 }
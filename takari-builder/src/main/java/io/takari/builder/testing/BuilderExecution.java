@@ -18,6 +18,7 @@ import io.takari.builder.internal.ClasspathMatcher;
 import io.takari.builder.internal.JvmClasspathEntriesSupplier;
 import io.takari.builder.internal.Reflection;
 import io.takari.builder.internal.ResourceRoot;
+import io.takari.builder.internal.cache.OutputCacheStore;
 import io.takari.builder.internal.digest.ClasspathDigester;
 import io.takari.builder.internal.model.BuilderMethod;
 import io.takari.builder.internal.resolver.DependencyResolver;
@@ -108,6 +109,10 @@ public class BuilderExecution {
 
     private File stateFile;
 
+    private String metricsSession;
+
+    private OutputCacheStore outputCache;
+
     final List<ResourceRoot> projectResources = new ArrayList<ResourceRoot>();
 
     final List<String> compileSourceRoots = new ArrayList<>();
@@ -166,6 +171,26 @@ public class BuilderExecution {
         return this;
     }
 
+    /**
+     * @noreference this method is provided to test {@link BuilderRunner}, it is not useful for testing of builder
+     *              implementations.
+     */
+    BuilderExecution withMetricsSession(String metricsSession) {
+        this.metricsSession = metricsSession;
+
+        return this;
+    }
+
+    /**
+     * @noreference this method is provided to test {@link BuilderRunner}, it is not useful for testing of builder
+     *              implementations.
+     */
+    BuilderExecution withOutputCache(OutputCacheStore outputCache) {
+        this.outputCache = outputCache;
+
+        return this;
+    }
+
     /**
      * @noreference this method is provided to test {@link BuilderRunner}, it is not useful for testing of builder
      *              implementations.
@@ -197,6 +222,8 @@ public class BuilderExecution {
         BuilderContext context = BuilderRunner.create(log, builderType, goal) //
                 .setProjectBasedir(projectBasedir != null ? projectBasedir.toPath() : null) //
                 .setStateFile(stateFile != null ? stateFile.toPath() : null) //
+                .setMetricsSession(metricsSession) //
+                .setOutputCache(outputCache, true) //
                 .setProjectProperties(p -> properties.get(p)) //
                 .setSessionClasspathMatcher(classpathMatcher.getMatcher()) //
                 .setConfiguration(configuration) //
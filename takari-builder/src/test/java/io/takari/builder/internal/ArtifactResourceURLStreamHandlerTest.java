@@ -7,6 +7,7 @@ import io.takari.builder.internal.TestInputBuilder.TestArtifactMetadata;
 import io.takari.builder.internal.utils.JarBuilder;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.Files;
 import org.junit.Rule;
@@ -47,4 +48,19 @@ public class ArtifactResourceURLStreamHandlerTest {
         URL urlB = ArtifactResourceURLStreamHandler.newURL(artifactB, relpath, resourceB);
         assertThat(urlA.equals(urlB)).isFalse();
     }
+
+    @Test
+    public void testJarEntry() throws Exception {
+        File jar = JarBuilder.create(temp.newFile())
+                .withEntry("dir/file.txt", "content")
+                .build();
+        URL resource = new URL("jar:" + jar.toURI() + "!/dir/file.txt");
+
+        URL url = ArtifactResourceURLStreamHandler.newURL(
+                new TestArtifactMetadata("g:a:1"), "dir/file.txt", resource, jar.toPath());
+        assertThat(url.getPath()).isEqualTo("dir/file.txt");
+        try (InputStream is = url.openStream()) {
+            assertThat(is).hasContent("content");
+        }
+    }
 }
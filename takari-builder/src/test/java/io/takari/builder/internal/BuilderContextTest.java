@@ -1,6 +1,7 @@
 package io.takari.builder.internal;
 
 import static io.takari.maven.testing.TestResources.create;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -282,6 +283,76 @@ public class BuilderContextTest {
         // elapsed / (fileCount * threadCount));
     }
 
+    @Test
+    public void testConcurrentCheckContention() throws Exception {
+        // read checks of inputs and non-existing files, interleaved with writes of distinct outputs,
+        // from many threads. mostly useful as contention benchmark, uncomment timing to see the rate.
+
+        final File inputs = temp.newFolder().getCanonicalFile();
+        final File outputs = temp.newFolder().getCanonicalFile();
+
+        final int fileCount = 100;
+        final int checkCount = 10000;
+        final int threadCount = 16;
+
+        for (int i = 0; i < fileCount; i++) {
+            new File(inputs, Integer.toString(i)).createNewFile();
+        }
+
+        final BuilderContext ctx = newBuilder()
+                .addInputDirectory(inputs.toPath())
+                .addOutputDirectory(outputs.toPath())
+                .build();
+
+        final AtomicReference<String> failed = new AtomicReference<>();
+        final CyclicBarrier barrier = new CyclicBarrier(threadCount);
+
+        // Stopwatch sw = Stopwatch.createStarted();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            final int threadNo = i;
+            Thread thread = new Thread(
+                    () -> {
+                        try {
+                            barrier.await();
+                            for (int no = 0; no < checkCount; no++) {
+                                String name = Integer.toString(no % fileCount);
+                                if (!ctx.checkRead(new File(inputs, name).getPath())) {
+                                    failed.set("!ctx.checkRead input " + name);
+                                }
+                                if (!ctx.checkRead(new File(outputs, name).getPath())) {
+                                    failed.set("!ctx.checkRead output " + name);
+                                }
+                                if (no % fileCount == threadNo) {
+                                    File output = new File(outputs, name);
+                                    if (!ctx.checkAndRecordWrite(output.getPath())) {
+                                        failed.set("!ctx.checkAndRecordWrite " + name);
+                                    }
+                                    output.createNewFile();
+                                }
+                            }
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                            failed.set(e.getMessage());
+                        }
+                    },
+                    "test worker #" + i);
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failed.get());
+        assertEquals(threadCount, ctx.getWrittenFiles().size());
+
+        // double elapsed = sw.elapsed(TimeUnit.MILLISECONDS);
+        // System.out.printf("threads %d, rate %f checks/ms\n", threadCount,
+        // threadCount * checkCount * 2 / elapsed);
+    }
+
     @Test
     public void testStaleContext() throws Exception {
         ComposableSecurityManagerPolicy.setSystemSecurityManager();
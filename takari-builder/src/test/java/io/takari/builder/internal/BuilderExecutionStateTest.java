@@ -1,13 +1,33 @@
 package io.takari.builder.internal;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 import com.google.common.collect.ImmutableSet;
+import io.takari.builder.internal.Message.MessageSeverity;
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OptionalDataException;
+import java.io.StreamCorruptedException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import org.codehaus.plexus.util.xml.CompactXMLWriter;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -30,4 +50,242 @@ public class BuilderExecutionStateTest {
         BuilderExecutionState state = BuilderExecutionState.load(file.toPath());
         assertThat(state.outputPaths).isEqualTo(paths);
     }
+
+    @Test
+    public void testOlderReaders() throws Exception {
+        File file = temp.newFile();
+
+        Set<String> paths = ImmutableSet.of("a", "b", "<c> & d");
+        try (ObjectOutputStream os = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            BuilderExecutionState.writeOutputPaths(os, paths);
+            os.writeObject(BuilderInputs.emptyDigest());
+        }
+
+        // older readers see all output paths and fail to read the rest of the state
+        try (ObjectInputStream is = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int size = is.readInt();
+            Set<String> legacyPaths = new HashSet<>();
+            for (int i = 0; i < size; i++) {
+                legacyPaths.add(
+                        Xpp3DomBuilder.build(new StringReader(is.readUTF())).getValue());
+            }
+            assertThat(legacyPaths).isEqualTo(paths);
+            try {
+                is.readObject();
+                fail();
+            } catch (OptionalDataException expected) {
+                // older readers treat the state as escalated
+            }
+        }
+    }
+
+    @Test
+    public void testCorruptedOutputPath() throws Exception {
+        File file = temp.newFile();
+
+        try (ObjectOutputStream os = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            os.writeInt(1);
+            os.writeUTF("<o>a &bogus; b</o>");
+        }
+
+        try (ObjectInputStream is = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            BuilderExecutionState.readOutputPaths(is);
+            fail();
+        } catch (StreamCorruptedException expected) {
+            assertThat(expected.getMessage()).contains("invalid output path");
+        }
+    }
+
+    @Test
+    public void testUnsupportedVersion() throws Exception {
+        File file = temp.newFile();
+
+        try (ObjectOutputStream os = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            BuilderExecutionState.writeLegacyOutputPaths(os, Collections.singleton("a"));
+            os.writeInt(BuilderExecutionState.OUTPUT_PATHS_MARKER);
+            os.writeByte(BuilderExecutionState.STATE_VERSION + 1);
+        }
+
+        try (ObjectInputStream is = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            BuilderExecutionState.readOutputPaths(is);
+            fail();
+        } catch (StreamCorruptedException expected) {
+            assertThat(expected.getMessage()).contains("unsupported state format version");
+        }
+    }
+
+    @Test
+    public void testPortablePath() throws Exception {
+        List<String> paths = Arrays.asList("a", "", "<b> & 'c' \"d\"", "e\r\nf", " g\t", "h\u00e9\u20ac\uD83D\uDE00");
+        for (String path : paths) {
+            String portable = BuilderExecutionState.toLegacyPortablePath(path);
+            assertThat(BuilderExecutionState.fromLegacyPortablePath(portable)).isEqualTo(path);
+            // as read by older versions, which trim the value
+            assertThat(Xpp3DomBuilder.build(new StringReader(portable)).getValue())
+                    .isEqualTo(path.trim());
+
+            // as written by older versions, which do not escape '\r'
+            StringWriter buf = new StringWriter();
+            CompactXMLWriter w = new CompactXMLWriter(buf);
+            w.startElement("o");
+            w.writeText(path);
+            w.endElement();
+            assertThat(BuilderExecutionState.fromLegacyPortablePath(buf.toString()))
+                    .isEqualTo(path.replace("\r\n", "\n").replace('\r', '\n'));
+        }
+        assertThat(BuilderExecutionState.fromLegacyPortablePath("<o>&#97;&#x62;</o>"))
+                .isEqualTo("ab");
+    }
+
+    @Test
+    public void testLegacyFormat() throws Exception {
+        File file = temp.newFile();
+
+        Set<String> paths = ImmutableSet.of("a", "b", "<c> & d");
+        try (ObjectOutputStream os = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            BuilderExecutionState.writeLegacyOutputPaths(os, paths);
+            os.writeObject(BuilderInputs.emptyDigest());
+        }
+
+        BuilderExecutionState state = BuilderExecutionState.load(file.toPath());
+        assertThat(state.outputPaths).isEqualTo(paths);
+    }
+
+    @Test
+    public void testLegacyFormatNoOutputs() throws Exception {
+        File file = temp.newFile();
+
+        try (ObjectOutputStream os = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            BuilderExecutionState.writeLegacyOutputPaths(os, Collections.emptySet());
+            os.writeObject(BuilderInputs.emptyDigest());
+        }
+
+        BuilderExecutionState state = BuilderExecutionState.load(file.toPath());
+        assertThat(state.outputPaths).isEmpty();
+        assertThat(state.isEscalated()).isTrue();
+    }
+
+    @Test
+    public void testInprogressOutputPaths() throws Exception {
+        Path file = temp.getRoot().toPath().resolve("undo");
+
+        try (BuilderExecutionState.InprogressStateWriter writer = BuilderExecutionState.newInprogressWriter(file)) {
+            writer.writePath("a");
+            writer.writePath("<b> & c");
+        }
+        assertThat(BuilderExecutionState.readInprogressOutputPaths(file)).containsOnly("a", "<b> & c");
+
+        // last record is partially written when jvm crashes
+        Files.write(file, new byte[] {0, 0, 0, 10, 'd'}, StandardOpenOption.APPEND);
+        assertThat(BuilderExecutionState.readInprogressOutputPaths(file)).containsOnly("a", "<b> & c");
+    }
+
+    @Test
+    public void testLegacyInprogressOutputPaths() throws Exception {
+        Path file = temp.getRoot().toPath().resolve("undo");
+
+        Files.write(
+                file,
+                Arrays.asList(
+                        BuilderExecutionState.toLegacyPortablePath("a"),
+                        BuilderExecutionState.toLegacyPortablePath("<b> & c"),
+                        "<o>d"),
+                StandardCharsets.UTF_8);
+        assertThat(BuilderExecutionState.readInprogressOutputPaths(file)).containsOnly("a", "<b> & c");
+    }
+
+    @Test
+    public void testMessages() throws Exception {
+        Path file = temp.getRoot().toPath().resolve("state");
+        List<Message> messages = Arrays.asList(
+                new Message("a", 1, 2, "error", MessageSeverity.ERROR, new IllegalStateException("cause")),
+                new Message("b", 3, 4, null, MessageSeverity.WARNING, null),
+                new Message("a", 5, 6, "info", MessageSeverity.INFO, null));
+        store(file, messages);
+
+        BuilderExecutionState state = BuilderExecutionState.load(file);
+        assertThat(state.isEscalated()).isFalse();
+        List<Message> loaded = state.getMessages();
+        assertThat(loaded).hasSize(3);
+        assertThat(loaded.get(0).cause).hasToString("java.lang.IllegalStateException: cause");
+        assertThat(loaded.get(1)).isEqualTo(messages.get(1));
+        assertThat(loaded.get(2)).isEqualTo(messages.get(2));
+        assertThat(loaded.get(0).file).isSameAs(loaded.get(2).file);
+
+        // messages file is required
+        Files.delete(BuilderExecutionState.getMessagesFile(file));
+        assertThat(BuilderExecutionState.load(file).isEscalated()).isTrue();
+
+        // no messages, no messages file
+        store(file, Collections.emptyList());
+        assertThat(BuilderExecutionState.load(file).getMessages()).isEmpty();
+        assertThat(BuilderExecutionState.getMessagesFile(file)).doesNotExist();
+    }
+
+    @Test
+    public void testStaleMessages() throws Exception {
+        Path file = temp.getRoot().toPath().resolve("state");
+        Path messagesFile = BuilderExecutionState.getMessagesFile(file);
+        List<Message> messages =
+                Collections.singletonList(new Message("a", 1, 2, "error", MessageSeverity.ERROR, null));
+        store(file, messages);
+        byte[] state = Files.readAllBytes(file);
+
+        // new messages next to old state, as if the state file was not written
+        store(file, Collections.singletonList(new Message("b", 1, 2, "error", MessageSeverity.ERROR, null)));
+        Files.write(file, state);
+        try {
+            BuilderExecutionState.load(file).getMessages();
+            fail();
+        } catch (StreamCorruptedException expected) {
+        }
+
+        // truncated messages
+        store(file, messages);
+        Files.write(messagesFile, Arrays.copyOf(Files.readAllBytes(messagesFile), 12));
+        try {
+            BuilderExecutionState.load(file).getMessages();
+            fail();
+        } catch (EOFException expected) {
+        }
+    }
+
+    @Test
+    public void testLegacyMessages() throws Exception {
+        File file = temp.newFile();
+        List<Message> messages =
+                Collections.singletonList(new Message("a", 1, 2, "error", MessageSeverity.ERROR, null));
+
+        // state written before messages were moved to the messages file
+        try (ObjectOutputStream os = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            BuilderExecutionState.writeLegacyOutputPaths(os, Collections.singleton("a"));
+            os.writeObject(BuilderInputs.emptyDigest());
+            os.writeObject(Collections.emptyMap());
+            os.writeObject("");
+            os.writeObject(Collections.emptySet());
+            os.writeObject(Collections.emptySet());
+            os.writeObject(messages);
+            os.writeObject(Collections.emptyMap());
+        }
+
+        BuilderExecutionState state = BuilderExecutionState.load(file.toPath());
+        assertThat(state.isEscalated()).isFalse();
+        assertThat(state.outputPaths).containsOnly("a");
+        assertThat(state.getMessages()).isEqualTo(messages);
+    }
+
+    private static void store(Path file, List<Message> messages) throws Exception {
+        BuilderExecutionState.store(
+                file,
+                BuilderInputs.emptyDigest(),
+                Collections.emptyMap(),
+                "",
+                Collections.emptySet(),
+                Collections.emptySet(),
+                Collections.emptySet(),
+                messages,
+                Collections.emptyMap(),
+                null,
+                null);
+    }
 }
@@ -0,0 +1,134 @@
+package io.takari.builder.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.takari.builder.Builder;
+import io.takari.builder.InputDirectory;
+import io.takari.builder.Parameter;
+import java.io.File;
+import java.lang.reflect.Field;
+import org.junit.Test;
+
+public class BuilderModelTest {
+
+    private static class FieldsBuilder {
+        @Parameter
+        private String string;
+
+        @Parameter
+        private int primitive;
+
+        @Parameter
+        private final long finalPrimitive = 0;
+
+        @Builder(name = "build")
+        private void build() {}
+    }
+
+    private static class InvalidBuilder {
+        @Parameter
+        @InputDirectory(includes = "**/*")
+        File ambiguous;
+
+        @Builder(name = "build")
+        public void build() {}
+    }
+
+    static class InjectedBuilder {
+        static int instances;
+
+        @Parameter
+        String injected;
+
+        @Parameter
+        private String reflective;
+
+        InjectedBuilder() {
+            instances++;
+        }
+
+        @Builder(name = "build")
+        public void build() {}
+
+        // binary name InjectedBuilder$GeneratedInjector, same as takari-builder-apt generated injector
+        public static class GeneratedInjector implements BuilderInjector {
+            static int injections;
+
+            @Override
+            public Object newInstance() {
+                return new InjectedBuilder();
+            }
+
+            @Override
+            public boolean setField(Object builder, String field, Object value) {
+                switch (field) {
+                    case "io.takari.builder.internal.BuilderModelTest$InjectedBuilder#injected":
+                        ((InjectedBuilder) builder).injected = (String) value;
+                        injections++;
+                        return true;
+                    default:
+                        return false;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testModelIsCachedPerClass() throws Exception {
+        BuilderModel model = BuilderModel.get(FieldsBuilder.class);
+        assertSame(model, BuilderModel.get(FieldsBuilder.class));
+        assertSame(model.metadata(), BuilderModel.get(FieldsBuilder.class).metadata());
+        assertSame(model.getBuilderMethod("build"), model.getBuilderMethod("build"));
+        assertNull(model.getBuilderMethod("missing"));
+        assertTrue(model.isValid());
+        assertFalse(BuilderModel.get(InvalidBuilder.class).isValid());
+    }
+
+    @Test
+    public void testSetField() throws Exception {
+        BuilderModel model = BuilderModel.get(FieldsBuilder.class);
+        FieldsBuilder builder = (FieldsBuilder) model.newInstance();
+
+        model.setField(builder, FieldsBuilder.class.getDeclaredField("string"), "value");
+        model.setField(builder, FieldsBuilder.class.getDeclaredField("primitive"), 1);
+        model.setField(builder, FieldsBuilder.class.getDeclaredField("finalPrimitive"), 2);
+
+        assertEquals("value", builder.string);
+        assertEquals(1, builder.primitive);
+        Field finalPrimitive = FieldsBuilder.class.getDeclaredField("finalPrimitive");
+        finalPrimitive.setAccessible(true);
+        assertEquals(2L, finalPrimitive.getLong(builder));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetField_incompatibleValue() throws Exception {
+        BuilderModel model = BuilderModel.get(FieldsBuilder.class);
+        model.setField(model.newInstance(), FieldsBuilder.class.getDeclaredField("primitive"), new File("file"));
+    }
+
+    @Test
+    public void testGeneratedInjector() throws Exception {
+        BuilderModel model = BuilderModel.get(InjectedBuilder.class);
+        int instances = InjectedBuilder.instances;
+        int injections = InjectedBuilder.GeneratedInjector.injections;
+
+        InjectedBuilder builder = (InjectedBuilder) model.newInstance();
+        model.setField(builder, InjectedBuilder.class.getDeclaredField("injected"), "injected");
+        model.setField(builder, InjectedBuilder.class.getDeclaredField("reflective"), "reflective");
+
+        assertEquals(instances + 1, InjectedBuilder.instances);
+        assertEquals(injections + 1, InjectedBuilder.GeneratedInjector.injections);
+        assertEquals("injected", builder.injected);
+        assertEquals("reflective", builder.reflective);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGeneratedInjector_incompatibleValue() throws Exception {
+        BuilderModel model = BuilderModel.get(InjectedBuilder.class);
+        model.setField(model.newInstance(), InjectedBuilder.class.getDeclaredField("injected"), new File("file"));
+    }
+}
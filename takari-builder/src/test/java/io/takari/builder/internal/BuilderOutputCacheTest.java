@@ -0,0 +1,60 @@
+package io.takari.builder.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.takari.builder.internal.BuilderOutputCache.Execution;
+import io.takari.builder.internal.Message.MessageSeverity;
+import io.takari.builder.internal.digest.SHA1Digester;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Test;
+
+public class BuilderOutputCacheTest {
+
+    @Test
+    public void testExecutionRoundtrip() throws Exception {
+        Map<String, Object> properties = new TreeMap<>();
+        properties.put("a", SHA1Digester.digest("value"));
+        properties.put("b", SHA1Digester.digest((String) null));
+        Message message =
+                new Message("src/file.txt", 1, 2, "message", MessageSeverity.ERROR, new IllegalStateException("cause"));
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (DataOutputStream os = new DataOutputStream(buf)) {
+            BuilderOutputCache.writeExecution(os, new Execution(properties, Arrays.asList(message)));
+        }
+        Execution execution = BuilderOutputCache.readExecution(
+                new DataInputStream(new ByteArrayInputStream(buf.toByteArray())), "key");
+
+        assertThat(execution.properties).isEqualTo(properties);
+        assertThat(execution.messages).hasSize(1);
+        Message restored = execution.messages.get(0);
+        assertThat(restored.file).isEqualTo("src/file.txt");
+        assertThat(restored.line).isEqualTo(1);
+        assertThat(restored.column).isEqualTo(2);
+        assertThat(restored.message).isEqualTo("message");
+        assertThat(restored.severity).isEqualTo(MessageSeverity.ERROR);
+        assertThat(restored.cause).hasToString("java.lang.IllegalStateException: cause");
+    }
+
+    @Test
+    public void testCorruptedExecution() throws Exception {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (DataOutputStream os = new DataOutputStream(buf)) {
+            os.writeByte(1);
+            os.writeInt(1);
+            BuilderExecutionState.writePath(os, "a");
+            BuilderExecutionState.writePath(os, "not a digest");
+        }
+        assertThatThrownBy(() -> BuilderOutputCache.readExecution(
+                        new DataInputStream(new ByteArrayInputStream(buf.toByteArray())), "key"))
+                .isInstanceOf(StreamCorruptedException.class);
+    }
+}
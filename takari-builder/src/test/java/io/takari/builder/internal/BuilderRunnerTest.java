@@ -15,7 +15,10 @@ import io.takari.builder.Dependencies;
 import io.takari.builder.GeneratedResourcesDirectory;
 import io.takari.builder.GeneratedSourcesDirectory;
 import io.takari.builder.IArtifactMetadata;
+import io.takari.builder.IIncrementalDirectoryFiles;
+import io.takari.builder.IIncrementalDirectoryFiles.InputScope;
 import io.takari.builder.InputDirectory;
+import io.takari.builder.InputDirectoryFiles;
 import io.takari.builder.InputFile;
 import io.takari.builder.NonDeterministic;
 import io.takari.builder.OutputDirectory;
@@ -24,6 +27,12 @@ import io.takari.builder.Parameter;
 import io.takari.builder.ResolutionScope;
 import io.takari.builder.ResourceType;
 import io.takari.builder.enforcer.internal.EnforcerConfig;
+import io.takari.builder.internal.cache.DirectoryOutputCacheStore;
+import io.takari.builder.internal.cache.OutputCacheStore;
+import io.takari.builder.internal.metrics.ExecutionMetrics;
+import io.takari.builder.internal.metrics.ExecutionMetrics.Counter;
+import io.takari.builder.internal.metrics.ExecutionMetrics.Timer;
+import io.takari.builder.internal.metrics.MetricsRegistry;
 import io.takari.builder.internal.utils.JarBuilder;
 import io.takari.builder.internal.workspace.FilesystemWorkspace;
 import io.takari.builder.testing.BuilderExecution;
@@ -42,13 +51,16 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -1271,4 +1283,318 @@ public class BuilderRunnerTest {
         assertThat(workspace.files).contains(target.getCanonicalFile());
         assertThat(workspace.files).contains(targetFile.getCanonicalFile().getParentFile());
     }
+
+    //
+    //
+    //
+
+    static class InputDirectoryCounterBuilder {
+        static final AtomicInteger COUNTER = new AtomicInteger();
+
+        @InputDirectory(defaultValue = "src", includes = "**/*.txt")
+        List<File> files;
+
+        @Parameter(defaultValue = "${message}")
+        String message;
+
+        @Builder(name = "input-directory-counter")
+        public void count() {
+            COUNTER.incrementAndGet();
+        }
+    }
+
+    private static void setLastModifiedInPast(File dir) throws IOException {
+        long lastModified = System.currentTimeMillis() - InputFingerprint.RACY_MILLIS * 10;
+        Files.walk(dir.toPath()).forEach(p -> p.toFile().setLastModified(lastModified));
+    }
+
+    private void executeInputDirectoryCounter(File basedir, File stateFile, String message) throws Exception {
+        InternalBuilderExecution.builderExecution(basedir, InputDirectoryCounterBuilder.class) //
+                .withStateFile(stateFile) //
+                .withProperty("message", message) //
+                .execute();
+    }
+
+    @Test
+    public void testInputFingerprint() throws Exception {
+        File basedir = temp.newFolder().getCanonicalFile();
+        File stateFile = temp.newFile();
+        File src = new File(basedir, "src");
+        create(src, "a.txt", "b.txt");
+        new File(src, "empty").mkdirs();
+        setLastModifiedInPast(src);
+        InputDirectoryCounterBuilder.COUNTER.set(0);
+
+        // initial build
+        executeInputDirectoryCounter(basedir, stateFile, "hello");
+        assertEquals(1, InputDirectoryCounterBuilder.COUNTER.get());
+        assertNotNull(BuilderExecutionState.load(stateFile.toPath()).inputFingerprint);
+
+        // no-change rebuild
+        executeInputDirectoryCounter(basedir, stateFile, "hello");
+        assertEquals(1, InputDirectoryCounterBuilder.COUNTER.get());
+
+        // property change rebuild
+        executeInputDirectoryCounter(basedir, stateFile, "bye");
+        assertEquals(2, InputDirectoryCounterBuilder.COUNTER.get());
+
+        // file change rebuild
+        Files.write(new File(src, "a.txt").toPath(), "changed".getBytes());
+        setLastModifiedInPast(src);
+        executeInputDirectoryCounter(basedir, stateFile, "bye");
+        assertEquals(3, InputDirectoryCounterBuilder.COUNTER.get());
+
+        // new file in previously empty subdirectory rebuild
+        create(new File(src, "empty"), "c.txt");
+        setLastModifiedInPast(new File(src, "empty"));
+        executeInputDirectoryCounter(basedir, stateFile, "bye");
+        assertEquals(4, InputDirectoryCounterBuilder.COUNTER.get());
+
+        // non-matching new file does not change inputs, the fingerprint is recorded again
+        create(src, "d.bin");
+        setLastModifiedInPast(new File(src, "d.bin"));
+        src.setLastModified(System.currentTimeMillis() - InputFingerprint.RACY_MILLIS * 10);
+        executeInputDirectoryCounter(basedir, stateFile, "bye");
+        executeInputDirectoryCounter(basedir, stateFile, "bye");
+        assertEquals(4, InputDirectoryCounterBuilder.COUNTER.get());
+        assertNotNull(BuilderExecutionState.load(stateFile.toPath()).inputFingerprint);
+    }
+
+    static class WarningBuilder {
+        static final AtomicInteger COUNTER = new AtomicInteger();
+
+        @InputFile(defaultValue = "input.txt")
+        File input;
+
+        @Builder(name = "warning")
+        public void warn() {
+            COUNTER.incrementAndGet();
+            io.takari.builder.BuilderContext.getMessages().warn(input, 1, 1, "warning", null);
+        }
+    }
+
+    @Test
+    public void testTruncatedMessages() throws Exception {
+        File basedir = temp.newFolder().getCanonicalFile();
+        File stateFile = new File(basedir, "target/incremental/state");
+        create(basedir, "input.txt");
+        WarningBuilder.COUNTER.set(0);
+
+        for (int i = 0; i < 2; i++) {
+            InternalBuilderExecution.builderExecution(basedir, WarningBuilder.class) //
+                    .withStateFile(stateFile) //
+                    .execute();
+        }
+        assertEquals(1, WarningBuilder.COUNTER.get());
+
+        // truncated messages file, e.g. after a crash, makes the builder run again
+        Path messagesFile = BuilderExecutionState.getMessagesFile(stateFile.toPath());
+        Files.write(messagesFile, Arrays.copyOf(Files.readAllBytes(messagesFile), 12));
+        InternalBuilderExecution.builderExecution(basedir, WarningBuilder.class) //
+                .withStateFile(stateFile) //
+                .execute();
+        assertEquals(2, WarningBuilder.COUNTER.get());
+        assertThat(BuilderExecutionState.load(stateFile.toPath()).getMessages()).hasSize(1);
+    }
+
+    static class IncrementalCopyBuilder {
+        static final List<String> PROCESSED = new ArrayList<>();
+
+        @InputDirectoryFiles(defaultValue = "src", includes = "**/*.txt", incremental = true)
+        IIncrementalDirectoryFiles files;
+
+        @OutputDirectory(defaultValue = "target")
+        File outputDirectory;
+
+        @Builder(name = "incremental-copy")
+        public void copy() throws IOException {
+            for (Path input : files.changedFilePaths()) {
+                try (InputScope scope = files.processInput(input)) {
+                    PROCESSED.add(input.getFileName().toString());
+                    Files.copy(input, outputDirectory.toPath().resolve(input.getFileName()));
+                }
+            }
+        }
+    }
+
+    private void executeIncrementalCopy(File basedir, File stateFile) throws Exception {
+        IncrementalCopyBuilder.PROCESSED.clear();
+        InternalBuilderExecution.builderExecution(basedir, IncrementalCopyBuilder.class) //
+                .withStateFile(stateFile) //
+                .execute();
+    }
+
+    @Test
+    public void testIncrementalInputs() throws Exception {
+        File basedir = temp.newFolder().getCanonicalFile();
+        File stateFile = temp.newFile();
+        File src = new File(basedir, "src");
+        create(src, "a.txt", "b.txt");
+
+        // initial build processes all inputs
+        executeIncrementalCopy(basedir, stateFile);
+        assertThat(IncrementalCopyBuilder.PROCESSED).containsExactlyInAnyOrder("a.txt", "b.txt");
+        assertThat(new File(basedir, "target").list()).containsExactlyInAnyOrder("a.txt", "b.txt");
+
+        // changed input is processed, output of unchanged input is kept
+        Files.write(new File(src, "a.txt").toPath(), "changed".getBytes());
+        executeIncrementalCopy(basedir, stateFile);
+        assertThat(IncrementalCopyBuilder.PROCESSED).containsExactly("a.txt");
+        assertThat(new File(basedir, "target").list()).containsExactlyInAnyOrder("a.txt", "b.txt");
+        assertEquals("changed", new String(Files.readAllBytes(new File(basedir, "target/a.txt").toPath())));
+
+        // output of removed input is deleted
+        new File(src, "b.txt").delete();
+        create(src, "c.txt");
+        executeIncrementalCopy(basedir, stateFile);
+        assertThat(IncrementalCopyBuilder.PROCESSED).containsExactly("c.txt");
+        assertThat(new File(basedir, "target").list()).containsExactlyInAnyOrder("a.txt", "c.txt");
+        assertThat(BuilderExecutionState.load(stateFile.toPath()).outputPaths)
+                .containsExactlyInAnyOrder(
+                        normalize0(new File(basedir, "target/a.txt").toPath()),
+                        normalize0(new File(basedir, "target/c.txt").toPath()));
+    }
+
+    static class IncrementalIndexBuilder {
+        @InputDirectoryFiles(defaultValue = "src", includes = "**/*.txt", incremental = true)
+        IIncrementalDirectoryFiles files;
+
+        @OutputDirectory(defaultValue = "target")
+        File outputDirectory;
+
+        @Builder(name = "incremental-index")
+        public void index() throws IOException {
+            Path index = outputDirectory.toPath().resolve("index");
+            for (Path input : files.changedFilePaths()) {
+                try (InputScope scope = files.processInput(input)) {
+                    Files.write(
+                            index,
+                            (input.getFileName() + "\n").getBytes(StandardCharsets.UTF_8),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.APPEND);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalInputsSharedOutput() throws Exception {
+        File basedir = temp.newFolder().getCanonicalFile();
+        File stateFile = temp.newFile();
+        File src = new File(basedir, "src");
+        create(src, "a.txt", "b.txt");
+
+        InternalBuilderExecution.builderExecution(basedir, IncrementalIndexBuilder.class) //
+                .withStateFile(stateFile) //
+                .execute();
+
+        // the output is associated with both inputs that wrote it
+        String index = normalize0(new File(basedir, "target/index").toPath());
+        Map<String, Collection<String>> inputOutputs = BuilderExecutionState.load(stateFile.toPath()).inputOutputs;
+        assertThat(inputOutputs.get(normalize0(new File(src, "a.txt").toPath())))
+                .containsExactly(index);
+        assertThat(inputOutputs.get(normalize0(new File(src, "b.txt").toPath())))
+                .containsExactly(index);
+    }
+
+    @Test
+    public void testExecutionMetrics() throws Exception {
+        File basedir = temp.newFolder().getCanonicalFile();
+        File stateFile = new File(basedir, "target/incremental/counter");
+        create(new File(basedir, "src"), "a.txt", "b.txt");
+
+        for (int i = 0; i < 2; i++) {
+            InternalBuilderExecution.builderExecution(basedir, IncrementalCopyBuilder.class) //
+                    .withStateFile(stateFile) //
+                    .withMetricsSession("test-session") //
+                    .execute();
+        }
+
+        Path directory = stateFile.getParentFile().toPath();
+        List<ExecutionMetrics> metrics = MetricsRegistry.get().getMetrics(directory);
+        assertThat(metrics).extracting(ExecutionMetrics::getId).containsExactly("counter", "counter");
+        assertThat(metrics.get(0).getOutcome()).isEqualTo("executed: no previous state");
+        assertThat(metrics.get(0).getCount(Counter.INPUTS)).isEqualTo(2);
+        assertThat(metrics.get(0).getCount(Counter.OUTPUTS)).isEqualTo(2);
+        assertThat(metrics.get(0).getNanos(Timer.INPUTS)).isGreaterThan(0);
+        assertThat(metrics.get(0).getNanos(Timer.WALK)).isGreaterThan(0);
+        assertThat(metrics.get(0).getNanos(Timer.EXECUTION)).isGreaterThan(0);
+        assertThat(metrics.get(0).getCount(Counter.ENFORCEMENT_CHECKS)).isGreaterThan(0);
+        assertThat(metrics.get(1).getOutcome()).startsWith("skipped: up-to-date");
+        assertThat(metrics.get(1).getNanos(Timer.EXECUTION)).isEqualTo(0);
+        MetricsRegistry.get().flush("test-session");
+        assertThat(directory.resolve(MetricsRegistry.REPORT_JSON)).exists();
+        assertThat(directory.resolve(MetricsRegistry.REPORT_CSV)).exists();
+    }
+
+    //
+    //
+    //
+
+    static class CachedCopyBuilder {
+        static final AtomicInteger COUNTER = new AtomicInteger();
+
+        @InputDirectoryFiles(defaultValue = "src", includes = "**/*.txt")
+        List<File> files;
+
+        @OutputDirectory(defaultValue = "target/generated")
+        File outputDirectory;
+
+        @Builder(name = "cached-copy")
+        public void copy() throws IOException {
+            COUNTER.incrementAndGet();
+            for (File file : files) {
+                Files.copy(file.toPath(), outputDirectory.toPath().resolve(file.getName()));
+            }
+        }
+    }
+
+    private static File newCachedCopyProject(File basedir, String content) throws IOException {
+        File src = new File(basedir, "src");
+        src.mkdirs();
+        Files.write(new File(src, "a.txt").toPath(), content.getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(src, "b.txt").toPath(), "b".getBytes(StandardCharsets.UTF_8));
+        return basedir;
+    }
+
+    private static void executeCachedCopy(File basedir, OutputCacheStore cache) throws Exception {
+        InternalBuilderExecution.builderExecution(basedir, CachedCopyBuilder.class) //
+                .withStateFile(new File(basedir, "target/incremental/state")) //
+                .withOutputCache(cache) //
+                .execute();
+    }
+
+    @Test
+    public void testOutputCache() throws Exception {
+        OutputCacheStore cache = new DirectoryOutputCacheStore(temp.newFolder().toPath());
+        File basedir = newCachedCopyProject(temp.newFolder().getCanonicalFile(), "a");
+        File other = newCachedCopyProject(temp.newFolder().getCanonicalFile(), "a");
+        CachedCopyBuilder.COUNTER.set(0);
+
+        // outputs of the first execution are stored in the cache
+        executeCachedCopy(basedir, cache);
+        assertThat(CachedCopyBuilder.COUNTER.get()).isEqualTo(1);
+
+        // same inputs in another workspace, outputs are restored from the cache
+        executeCachedCopy(other, cache);
+        assertThat(CachedCopyBuilder.COUNTER.get()).isEqualTo(1);
+        assertThat(new File(other, "target/generated/a.txt")).hasContent("a");
+        assertThat(new File(other, "target/generated/b.txt")).hasContent("b");
+
+        // restored execution state is up-to-date
+        executeCachedCopy(other, cache);
+        assertThat(CachedCopyBuilder.COUNTER.get()).isEqualTo(1);
+
+        // changed input content is a cache miss
+        Files.write(new File(other, "src/a.txt").toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+        executeCachedCopy(other, cache);
+        assertThat(CachedCopyBuilder.COUNTER.get()).isEqualTo(2);
+        assertThat(new File(other, "target/generated/a.txt")).hasContent("changed");
+
+        // changed back, the original outputs are restored from the cache
+        Files.write(new File(other, "src/a.txt").toPath(), "a".getBytes(StandardCharsets.UTF_8));
+        executeCachedCopy(other, cache);
+        assertThat(CachedCopyBuilder.COUNTER.get()).isEqualTo(2);
+        assertThat(new File(other, "target/generated/a.txt")).hasContent("a");
+    }
 }
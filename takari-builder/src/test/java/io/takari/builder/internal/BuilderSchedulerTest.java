@@ -0,0 +1,185 @@
+package io.takari.builder.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.takari.builder.internal.BuilderRunner.Execution;
+import io.takari.builder.internal.BuilderScheduler.PathIndex;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class BuilderSchedulerTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private class TestExecution extends Execution<Exception> {
+        final String name;
+        final Runnable action;
+        volatile Exception failure;
+
+        TestExecution(String name, Set<Path> reads, Set<Path> writes, Runnable action) {
+            super(reads, writes, false);
+            this.name = name;
+            this.action = action;
+        }
+
+        @Override
+        public void updateProject() {
+            events.add("update " + name);
+        }
+
+        @Override
+        public void run() {
+            try {
+                action.run();
+                events.add("run " + name);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        @Override
+        public boolean isFailed() {
+            return failure != null;
+        }
+
+        @Override
+        public BuilderContext complete() throws Exception {
+            events.add("complete " + name);
+            if (failure != null) {
+                throw failure;
+            }
+            return null;
+        }
+    }
+
+    private static Set<Path> paths(String... paths) {
+        Set<Path> result = new LinkedHashSet<>();
+        Arrays.stream(paths).forEach(path -> result.add(Paths.get(path)));
+        return result;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("timeout");
+            }
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testIndependentExecutions() throws Exception {
+        BuilderScheduler<Exception> scheduler = new BuilderScheduler<>(executor);
+
+        // each execution waits for the other one to start, i.e. they must run concurrently
+        CountDownLatch started = new CountDownLatch(2);
+        Runnable action = () -> {
+            started.countDown();
+            await(started);
+        };
+        scheduler.submit(() -> new TestExecution("a", paths("/src/a"), paths("/target/a"), action));
+        scheduler.submit(() -> new TestExecution("b", paths("/src/b"), paths("/target/b"), action));
+        scheduler.join();
+
+        assertThat(events).containsSubsequence("update a", "update b", "complete a", "complete b");
+        assertThat(events).contains("run a", "run b");
+    }
+
+    @Test
+    public void testReadAfterWrite() throws Exception {
+        BuilderScheduler<Exception> scheduler = new BuilderScheduler<>(executor);
+
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(() -> new TestExecution("a", paths("/src"), paths("/target/a"), () -> await(release)));
+
+        // b reads a output and must be prepared again after a completes
+        AtomicInteger preparations = new AtomicInteger();
+        executor.submit(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                // ignore
+            }
+            release.countDown();
+        });
+        scheduler.submit(() -> {
+            preparations.incrementAndGet();
+            return new TestExecution("b", paths("/target/a/file"), paths("/target/b"), () -> {});
+        });
+        scheduler.join();
+
+        assertThat(preparations.get()).isEqualTo(2);
+        assertThat(events).containsSubsequence("update a", "run a", "update b", "run b", "complete b");
+        assertThat(events).containsSubsequence("complete a", "complete b");
+    }
+
+    @Test
+    public void testWriteAfterRead() throws Exception {
+        BuilderScheduler<Exception> scheduler = new BuilderScheduler<>(executor);
+
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(() -> new TestExecution("a", paths("/src"), paths("/target/a"), () -> await(release)));
+        // b writes a input and must run after a
+        scheduler.submit(() -> new TestExecution("b", Collections.emptySet(), paths("/src/generated"), () -> {}));
+        release.countDown();
+        scheduler.join();
+
+        assertThat(events).containsSubsequence("run a", "run b");
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        BuilderScheduler<Exception> scheduler = new BuilderScheduler<>(executor);
+
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(() -> new TestExecution("a", paths("/src"), paths("/target/a"), () -> {
+            await(release);
+            throw new IllegalStateException("a failed");
+        }));
+        scheduler.submit(() -> new TestExecution("b", paths("/src"), paths("/target/a/b"), () -> {}));
+        release.countDown();
+        try {
+            scheduler.join();
+            throw new AssertionError();
+        } catch (IllegalStateException expected) {
+            assertThat(expected.getMessage()).isEqualTo("a failed");
+        }
+
+        // b depends on failed a and did not run
+        assertThat(events).containsExactly("update a", "update b", "complete a");
+    }
+
+    @Test
+    public void testPathIndex() {
+        PathIndex index = new PathIndex(paths("/a/b", "/c/d/e"));
+
+        assertThat(index.overlaps(Paths.get("/a/b"))).isTrue();
+        assertThat(index.overlaps(Paths.get("/a/b/c"))).isTrue();
+        assertThat(index.overlaps(Paths.get("/a"))).isTrue();
+        assertThat(index.overlaps(Paths.get("/c/d"))).isTrue();
+        assertThat(index.overlaps(Paths.get("/a/bb"))).isFalse();
+        assertThat(index.overlaps(Paths.get("/c/x"))).isFalse();
+        assertThat(index.overlaps(paths("/x", "/c/d/e/f"))).isTrue();
+    }
+}
@@ -1,7 +1,9 @@
 package io.takari.builder.internal;
 
 import io.takari.builder.Builder;
+import io.takari.builder.IDirectoryFiles;
 import io.takari.builder.InputDirectory;
+import io.takari.builder.InputDirectoryFiles;
 import io.takari.builder.Messages;
 import io.takari.builder.Parameter;
 import io.takari.builder.internal.model.AbstractParameter;
@@ -113,6 +115,25 @@ public class BuilderValidationVisitorTest {
     //
     //
 
+    static class _UnsupportedIncrementalInputDirectoryFilesType {
+        @InputDirectoryFiles(includes = "**/*", incremental = true)
+        IDirectoryFiles files;
+    }
+
+    @Test
+    public void testUnsupportedIncrementalInputDirectoryFilesType() throws Exception {
+
+        thrown.expect(ParameterValidationException.class);
+        thrown.expectMessage(
+                "@InputDirectoryFiles(incremental=true) parameter must be of type IncrementalDirectoryFiles");
+
+        validate(_UnsupportedIncrementalInputDirectoryFilesType.class);
+    }
+
+    //
+    //
+    //
+
     static class _UnsupportedBuilderMethodParameters {
         @Builder(name = "builder")
         public void method(Messages message) {}
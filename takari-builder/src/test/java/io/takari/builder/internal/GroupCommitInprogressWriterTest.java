@@ -0,0 +1,136 @@
+package io.takari.builder.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.takari.builder.internal.BuilderExecutionState.InprogressStateWriter;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GroupCommitInprogressWriterTest {
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        Path undo = temp.getRoot().toPath().resolve("state-undo");
+
+        final int threadCount = 16;
+        final int pathCount = 500;
+
+        Set<String> expected = new TreeSet<>();
+        InprogressStateWriter writer = BuilderExecutionState.newInprogressWriter(undo);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            final int threadNo = i;
+            for (int j = 0; j < pathCount; j++) {
+                expected.add(String.format("/output/<%d>/%d & more", threadNo, j));
+            }
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < pathCount; j++) {
+                    writer.writePath(String.format("/output/<%d>/%d & more", threadNo, j));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        writer.close();
+
+        assertThat(new TreeSet<>(BuilderExecutionState.readInprogressOutputPaths(undo)))
+                .isEqualTo(expected);
+    }
+
+    @Test
+    public void testWriteAfterClose() throws Exception {
+        InprogressStateWriter writer = BuilderExecutionState.newInprogressWriter(
+                temp.getRoot().toPath().resolve("state-undo"));
+        writer.close();
+        try {
+            writer.writePath("/output");
+            throw new AssertionError();
+        } catch (IncrementalBuildException expected) {
+            // the log is closed
+        }
+    }
+
+    @Test
+    public void testKilledJvm() throws Exception {
+        // every output file created by the killed jvm must be recorded in the undo log
+        Path undo = temp.getRoot().toPath().resolve("state-undo");
+        Path outputs = temp.newFolder("outputs").toPath();
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(
+                        java,
+                        "-cp",
+                        System.getProperty("java.class.path"),
+                        CrashingBuilder.class.getName(),
+                        undo.toString(),
+                        outputs.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(new File(temp.getRoot(), "builder.log"))
+                .start();
+        try {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+            while (countFiles(outputs) < 1000 && System.currentTimeMillis() < deadline) {
+                assertThat(process.isAlive()).isTrue();
+                Thread.sleep(10);
+            }
+        } finally {
+            process.destroyForcibly();
+            process.waitFor();
+        }
+
+        Collection<String> created;
+        try (Stream<Path> files = Files.list(outputs)) {
+            created = files.map(Path::toString).collect(Collectors.toList());
+        }
+        assertThat(created).hasSizeGreaterThanOrEqualTo(1000);
+        assertThat(BuilderExecutionState.readInprogressOutputPaths(undo)).containsAll(created);
+    }
+
+    private static long countFiles(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    /** writes output files on multiple threads until killed */
+    public static class CrashingBuilder {
+        public static void main(String[] args) throws Exception {
+            InprogressStateWriter writer = BuilderExecutionState.newInprogressWriter(Paths.get(args[0]));
+            Path outputs = Paths.get(args[1]);
+            for (int i = 0; i < 4; i++) {
+                final int threadNo = i;
+                new Thread(() -> {
+                            try {
+                                for (int j = 0; ; j++) {
+                                    Path output = outputs.resolve(threadNo + "-" + j);
+                                    writer.writePath(output.toString());
+                                    Files.write(output, new byte[] {1});
+                                }
+                            } catch (Exception e) {
+                                e.printStackTrace();
+                            }
+                        })
+                        .start();
+            }
+        }
+    }
+}
@@ -1,13 +1,25 @@
 package io.takari.builder.internal.cache;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 import io.takari.builder.IArtifactMetadata;
 import io.takari.builder.ResolutionScope;
 import io.takari.builder.internal.cache.ScopedProjectDependencyCache.Key;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import org.junit.Test;
 
 public class ScopedProjectDependencyCacheTest {
@@ -86,4 +98,65 @@ public class ScopedProjectDependencyCacheTest {
         });
         assertThat(results.equals(repeatResults));
     }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        ScopedProjectDependencyCache cache = new ScopedProjectDependencyCache();
+        Key key = ScopedProjectDependencyCache.key("test", "test", "1", ResolutionScope.COMPILE, true);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Map<IArtifactMetadata, Path> artifacts =
+                Collections.singletonMap(new SimpleArtifactMetadata("test", "test"), null);
+        Supplier<Map<IArtifactMetadata, Path>> supplier = () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return artifacts;
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Map<IArtifactMetadata, Path>>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> cache.getDependencies(key, supplier)));
+            }
+            started.await();
+            release.countDown();
+            for (Future<Map<IArtifactMetadata, Path>> result : results) {
+                assertEquals(artifacts, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testFailureNotCached() {
+        ScopedProjectDependencyCache cache = new ScopedProjectDependencyCache();
+        Key key = ScopedProjectDependencyCache.key("test", "test", "1", ResolutionScope.COMPILE, true);
+        try {
+            cache.getDependencies(key, () -> {
+                throw new IllegalStateException();
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertThat(cache.getDependencies(key, () -> null)).isEmpty();
+    }
+
+    @Test
+    public void testProjectState() {
+        ScopedProjectDependencyCache cache = new ScopedProjectDependencyCache();
+        Key key = ScopedProjectDependencyCache.key("test", "test", "1");
+        Object state = new Object();
+        assertSame(state, cache.getProjectState(key, Object.class, () -> state));
+        assertSame(state, cache.getProjectState(key, Object.class, Object::new));
+    }
 }
@@ -0,0 +1,141 @@
+package io.takari.builder.internal.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import io.takari.builder.internal.utils.JarBuilder;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.ZipFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ZipFilePoolTest {
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    private static String read(InputStream is) throws Exception {
+        byte[] buf = new byte[1024];
+        int len = is.read(buf);
+        return new String(buf, 0, Math.max(len, 0), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSharedHandles() throws Exception {
+        Path jar = JarBuilder.create(temp.newFile())
+                .withEntry("a.txt", "a")
+                .withEntry("b.txt", "b")
+                .build()
+                .toPath();
+        ZipFilePool testee = new ZipFilePool(100);
+
+        try (InputStream a = testee.getInputStream(jar, "a.txt");
+                InputStream b = testee.getInputStream(jar, "b.txt")) {
+            assertEquals("a", read(a));
+            assertEquals("b", read(b));
+            assertEquals(1, testee.size());
+        }
+
+        // idle handles are closed
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (testee.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, testee.size());
+
+        // and reopened on demand
+        try (InputStream a = testee.getInputStream(jar, "a.txt")) {
+            assertEquals("a", read(a));
+        }
+    }
+
+    @Test
+    public void testConcurrentOpen() throws Exception {
+        Path jar = JarBuilder.create(temp.newFile())
+                .withEntry("a.txt", "a")
+                .build()
+                .toPath();
+        int threads = 4;
+        CyclicBarrier opened = new CyclicBarrier(threads);
+        ZipFilePool testee = new ZipFilePool(0) {
+            @Override
+            ZipFile open(Path jar) throws IOException {
+                ZipFile zipFile = super.open(jar);
+                // make sure all threads open their own copy of the jar before any of them is pooled
+                try {
+                    opened.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+                    throw new AssertionError(e);
+                }
+                return zipFile;
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 3; round++) {
+                List<Future<String>> results = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    results.add(executor.submit(() -> {
+                        try (InputStream is = testee.getInputStream(jar, "a.txt")) {
+                            return read(is);
+                        }
+                    }));
+                }
+                for (Future<String> result : results) {
+                    assertEquals("a", result.get());
+                }
+
+                // all references are released, including those of concurrently opened duplicates
+                awaitEvicted(testee);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitEvicted(ZipFilePool testee) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (testee.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, testee.size());
+    }
+
+    @Test
+    public void testMissingEntry() throws Exception {
+        Path jar = JarBuilder.create(temp.newFile())
+                .withEntry("a.txt", "a")
+                .build()
+                .toPath();
+        ZipFilePool testee = new ZipFilePool(0);
+
+        try {
+            testee.getInputStream(jar, "missing.txt");
+            fail();
+        } catch (FileNotFoundException expected) {
+            assertThat(expected.getMessage()).contains("missing.txt");
+        }
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (testee.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, testee.size());
+    }
+}
@@ -18,6 +18,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import org.apache.maven.artifact.ArtifactUtils;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
 import org.eclipse.aether.DefaultRepositorySystemSession;
@@ -39,6 +41,9 @@ public class MavenDependencyResolverTest {
     public final TestResources resources = new TestResources();
 
     private DependencyResolver resolver;
+    private MavenProject project;
+    private RepositorySystem repoSystem;
+    private DefaultRepositorySystemSession repoSession;
     private File jarfile;
     private File dirfiledirect;
     private File dirfiletransitive;
@@ -52,10 +57,10 @@ public class MavenDependencyResolverTest {
         MavenProject transitiveProject = maven.readMavenProject(new File(basedir, "transitive"));
         dirfiledirect = new File(directProject.getBuild().getOutputDirectory());
         dirfiletransitive = new File(transitiveProject.getBuild().getOutputDirectory());
-        MavenProject project = maven.readMavenProject(projectfile);
-        RepositorySystem repoSystem = maven.lookup(RepositorySystem.class);
+        project = maven.readMavenProject(projectfile);
+        repoSystem = maven.lookup(RepositorySystem.class);
         LocalRepository localRepo = new LocalRepository(repodir);
-        DefaultRepositorySystemSession repoSession = MavenRepositorySystemUtils.newSession();
+        repoSession = MavenRepositorySystemUtils.newSession();
         WorkspaceReader reader = new TestWorkspaceReader(Arrays.asList(directProject, transitiveProject));
         repoSession.setWorkspaceReader(reader);
         LocalRepositoryManager lrm = repoSystem.newLocalRepositoryManager(repoSession, localRepo);
@@ -151,4 +156,62 @@ public class MavenDependencyResolverTest {
         assertThat(resolved).containsValue(jarfile.toPath());
         assertThat(resolved).containsValue(dirfiledirect.toPath());
     }
+
+    @Test
+    public void testNarrowerScopeFromResolvedGraph() throws Exception {
+        setup("mixed-scope");
+        Map<IArtifactMetadata, Path> test = resolver.getProjectDependencies(true, ResolutionScope.TEST);
+        assertThat(test).containsValue(jarfile.toPath());
+        assertThat(test).containsValue(dirfiledirect.toPath());
+
+        Map<IArtifactMetadata, Path> compile = resolver.getProjectDependencies(true, ResolutionScope.COMPILE);
+        assertThat(compile).doesNotContainValue(jarfile.toPath());
+        assertThat(compile).containsValue(dirfiledirect.toPath());
+
+        Map<IArtifactMetadata, Path> direct = resolver.getProjectDependencies(false, ResolutionScope.TEST);
+        assertThat(direct).containsValue(jarfile.toPath());
+        assertThat(direct).containsValue(dirfiledirect.toPath());
+    }
+
+    private static org.apache.maven.artifact.Artifact newArtifact(String artifactId, String scope, File file) {
+        org.apache.maven.artifact.Artifact artifact = new DefaultArtifact(
+                "takari-builder-dependency-resolution",
+                artifactId,
+                "1-SNAPSHOT",
+                scope,
+                "jar",
+                null,
+                new DefaultArtifactHandler("jar"));
+        artifact.setFile(file);
+        return artifact;
+    }
+
+    @Test
+    public void testMavenResolvedArtifacts() throws Exception {
+        setup("mixed-scope");
+        File direct = new File("maven-resolved-direct.jar");
+        File transitive = new File("maven-resolved-transitive.jar");
+        resolver = new MavenDependencyResolver(
+                project,
+                repoSession,
+                repoSystem,
+                new ScopedProjectDependencyCache(),
+                ResolutionScope.COMPILE,
+                Arrays.asList(
+                        newArtifact("takari-builder-dependency-resolution-direct", "compile", direct),
+                        newArtifact("takari-builder-dependency-resolution-transitive", "compile", transitive)));
+
+        // compile scope is derived from artifacts resolved by maven
+        assertThat(resolver.getProjectDependencies(true, ResolutionScope.COMPILE)
+                        .values())
+                .containsExactly(direct.toPath(), transitive.toPath());
+        assertThat(resolver.getProjectDependencies(false, ResolutionScope.COMPILE)
+                        .values())
+                .containsExactly(direct.toPath());
+
+        // test scope was not resolved by maven
+        Map<IArtifactMetadata, Path> resolved = resolver.getProjectDependencies(false, ResolutionScope.TEST);
+        assertThat(resolved).containsValue(jarfile.toPath());
+        assertThat(resolved).containsValue(dirfiledirect.toPath());
+    }
 }
@@ -1,6 +1,7 @@
 package io.takari.builder.testing;
 
 import io.takari.builder.internal.Reflection;
+import io.takari.builder.internal.cache.OutputCacheStore;
 import io.takari.builder.internal.model.BuilderMethod;
 import io.takari.incrementalbuild.workspace.Workspace;
 import java.io.File;
@@ -26,6 +27,18 @@ public class InternalBuilderExecution extends BuilderExecution {
         return this;
     }
 
+    @Override
+    public InternalBuilderExecution withMetricsSession(String metricsSession) {
+        super.withMetricsSession(metricsSession);
+        return this;
+    }
+
+    @Override
+    public InternalBuilderExecution withOutputCache(OutputCacheStore outputCache) {
+        super.withOutputCache(outputCache);
+        return this;
+    }
+
     @Override
     public InternalBuilderExecution withClasspath(List<File> classpath) {
         super.withClasspath(classpath);